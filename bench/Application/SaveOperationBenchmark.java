@@ -0,0 +1,46 @@
+package Application;
+
+import Benchmarks.Benchmark;
+import Images.ImageFileHistoryManager;
+import Images.ImageFileManager;
+import Images.SyntheticLibrary;
+import Tags.TagManager;
+
+import java.io.File;
+
+/**
+ * Measures saving and loading the ImageFileManager and the master log of synthetic libraries,
+ * through their SaveOperations.
+ */
+public class SaveOperationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        File saveFile = File.createTempFile("serializedImageData", ".ser");
+        File logFile = File.createTempFile("serializedLogData", ".ser");
+        saveFile.deleteOnExit();
+        logFile.deleteOnExit();
+
+        for (int size : Benchmark.sizes(args, 1000, 10000, 100000, 1000000)) {
+            SyntheticLibrary library = new SyntheticLibrary(size, 1000);
+            int iterations = Math.max(1, 10000 / size);
+            String suffix = " [n=" + size + "]";
+
+            Benchmark.measure("SaveOperation save" + suffix, iterations, i -> {
+                library.getImageFileManager().saveToFile(saveFile.getPath());
+                library.getMasterLog().saveToFile(logFile.getPath());
+                return saveFile;
+            });
+            library.getImageFileManager().saveToFile(saveFile.getPath());
+            library.getMasterLog().saveToFile(logFile.getPath());
+            Benchmark.measure("SaveOperation load" + suffix, iterations, i -> {
+                TagManager tagManager = new TagManager();
+                ImageFileHistoryManager masterLog = new ImageFileHistoryManager();
+                masterLog.readFromFile(logFile.getPath());
+                ImageFileManager manager = new ImageFileManager(tagManager, masterLog);
+                tagManager.addObserver(manager);
+                manager.readFromFile(saveFile.getPath());
+                return manager;
+            });
+        }
+    }
+}
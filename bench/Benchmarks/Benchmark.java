@@ -0,0 +1,136 @@
+package Benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A small harness for timing operations of this application. Every operation is warmed up
+ * before it is measured, and its best and average time per call are printed.
+ *
+ * Each operation is measured in a forked JVM running the same command, so that operations measured
+ * earlier cannot skew the JIT profile of the ones measured after them. Run with -Dbenchmark.fork=false
+ * to measure everything in a single JVM instead.
+ */
+public final class Benchmark {
+
+    /* Number of rounds run before and during measurement. */
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 5;
+
+    /* The name of the only operation measured by a forked JVM. */
+    private static final String ONLY_PROPERTY = "benchmark.only";
+
+    /* Keeps the result of every call alive so that the JIT cannot remove the work. */
+    private static volatile int sink;
+
+    /**
+     * A single operation being timed.
+     */
+    public interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @param iteration: The number of the call, within its round.
+         * @return Any result of the operation.
+         */
+        Object run(int iteration) throws Exception;
+    }
+
+    private Benchmark() {
+    }
+
+    /**
+     * Times an operation and prints the result.
+     *
+     * @param name: The name printed next to the result.
+     * @param iterations: The number of calls in every round.
+     * @param operation: The operation being timed.
+     */
+    public static void measure(String name, int iterations, Operation operation) throws Exception {
+        String only = System.getProperty(ONLY_PROPERTY);
+        if (only == null && !"false".equals(System.getProperty("benchmark.fork")) && fork(name)) {
+            return;
+        }
+        if (only != null && !only.equals(name)) {
+            return;
+        }
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            runRound(iterations, operation);
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            long elapsed = runRound(iterations, operation);
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        System.out.printf("%-60s %14.1f ns/op (best %.1f)%n", name,
+                (double) total / MEASURED_ROUNDS / iterations, (double) best / iterations);
+    }
+
+    /**
+     * Returns the library sizes given on the command line, or the defaults when there are none.
+     *
+     * @param args: The command line arguments, as sizes such as "1000" or "1m".
+     * @param defaults: The sizes used when none are given.
+     * @return The library sizes to benchmark.
+     */
+    public static int[] sizes(String[] args, int... defaults) {
+        if (args.length == 0) {
+            return defaults;
+        }
+        int[] sizes = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i].toLowerCase();
+            if (arg.endsWith("m")) {
+                sizes[i] = Integer.parseInt(arg.substring(0, arg.length() - 1)) * 1000000;
+            } else if (arg.endsWith("k")) {
+                sizes[i] = Integer.parseInt(arg.substring(0, arg.length() - 1)) * 1000;
+            } else {
+                sizes[i] = Integer.parseInt(arg);
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Helper that measures a single operation by re-running this JVM's command in a new process.
+     *
+     * @return Whether the operation was measured, which is false if the command is not available.
+     */
+    private static boolean fork(String name) throws Exception {
+        ProcessHandle.Info info = ProcessHandle.current().info();
+        Optional<String> command = info.command();
+        Optional<String[]> arguments = info.arguments();
+        if (!command.isPresent() || !arguments.isPresent()) {
+            return false;
+        }
+        List<String> forkedCommand = new ArrayList<>();
+        forkedCommand.add(command.get());
+        forkedCommand.add("-D" + ONLY_PROPERTY + "=" + name);
+        forkedCommand.addAll(Arrays.asList(arguments.get()));
+        int exitCode = new ProcessBuilder(forkedCommand).inheritIO().start().waitFor();
+        if (exitCode != 0) {
+            throw new IllegalStateException("Benchmark " + name + " failed with exit code " + exitCode);
+        }
+        return true;
+    }
+
+    /**
+     * Helper that runs one round of calls and returns the time it took, in nanoseconds.
+     */
+    private static long runRound(int iterations, Operation operation) throws Exception {
+        int hash = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            Object result = operation.run(i);
+            hash += result == null ? 0 : System.identityHashCode(result);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink += hash;
+        return elapsed;
+    }
+}
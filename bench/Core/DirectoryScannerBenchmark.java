@@ -0,0 +1,118 @@
+package Core;
+
+import Benchmarks.Benchmark;
+import Images.SyntheticLibrary;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Measures scanning a synthetic tree of image files on disk, as done every time a directory is
+ * displayed. Tree sizes can be given as arguments, such as "1k 100k" or "1m"; trees are kept in the
+ * temporary directory and re-used by later runs.
+ *
+ * The walk alone, without reading headers, is also measured against a walk with java.io.File, which
+ * reads the attributes of every entry one call at a time.
+ */
+public class DirectoryScannerBenchmark {
+
+    /* Number of sub-folders in every folder of the generated tree. */
+    private static final int FOLDERS_PER_LEVEL = 10;
+    /* Number of folder levels between the root and the files. */
+    private static final int DEPTH = 3;
+
+    public static void main(String[] args) throws Exception {
+        for (int size : Benchmark.sizes(args, 1000, 10000)) {
+            File root = createTree(size);
+            ImageLibrary library = new ImageLibrary(Files.createTempDirectory("library").toFile());
+            library.scanDirectory(root);
+
+            Benchmark.measure("ImageLibrary.scanDirectory [n=" + size + "]", 1,
+                    i -> library.scanDirectory(root));
+            Benchmark.measure("ImageLibrary.scanDirectory, reading all headers [n=" + size + "]", 1,
+                    i -> new ImageLibrary(root).scanDirectory(root));
+
+            int[] found = new int[1];
+            Benchmark.measure("Files.walkFileTree, attributes at once [n=" + size + "]", 1, i -> {
+                found[0] = 0;
+                Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                        if (attributes.isRegularFile() && DirectoryScanner.hasImageExtension(file.getFileName().toString())
+                                && attributes.size() + attributes.lastModifiedTime().toMillis() > 0) {
+                            found[0]++;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+                return found[0];
+            });
+            Benchmark.measure("File.listFiles, attributes one at a time [n=" + size + "]", 1,
+                    i -> walkWithFile(root));
+        }
+    }
+
+    /**
+     * Helper that walks a tree the way it was walked before attributes were read at once: asking whether
+     * every entry is a file, then a directory, then reading the length and modification time of every
+     * image, each with its own call.
+     */
+    private static int walkWithFile(File dir) {
+        int found = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    String name = file.getName();
+                    if ((name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png")
+                            || name.toLowerCase().endsWith(".bmp") || name.toLowerCase().endsWith(".gif")
+                            || name.toLowerCase().endsWith(".tiff") || name.toLowerCase().endsWith(".jpeg"))
+                            && file.length() + file.lastModified() > 0) {
+                        found++;
+                    }
+                } else if (file.isDirectory()) {
+                    found += walkWithFile(file);
+                }
+            }
+        }
+        return found;
+    }
+
+    /* The header of a 1x1 PNG image, which is all each image file of the tree holds. */
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n',
+            0, 0, 0, 13, 'I', 'H', 'D', 'R', 0, 0, 0, 1, 0, 0, 0, 1, 8, 6, 0, 0, 0};
+
+    /**
+     * Returns a tree of files holding only an image header, one in ten of which is not an image,
+     * creating it if needed.
+     *
+     * @param size: The number of files in the tree.
+     * @return The root of the tree.
+     */
+    static File createTree(int size) throws IOException {
+        File root = new File(System.getProperty("java.io.tmpdir"), "synthetic-tree-v2-" + size);
+        File complete = new File(root, ".complete");
+        if (complete.exists()) {
+            return root;
+        }
+        for (int i = 0; i < size; i++) {
+            File folder = root;
+            for (int level = 0, rest = i; level < DEPTH; level++, rest /= FOLDERS_PER_LEVEL) {
+                folder = new File(folder, "d" + rest % FOLDERS_PER_LEVEL);
+            }
+            folder.mkdirs();
+            if (i % 10 == 9) {
+                new File(folder, "notes" + i + ".txt").createNewFile();
+            } else {
+                Files.write(new File(folder, SyntheticLibrary.fileName(i, 1000)).toPath(), PNG_HEADER);
+            }
+        }
+        complete.createNewFile();
+        return root;
+    }
+}
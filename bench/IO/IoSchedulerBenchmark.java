@@ -0,0 +1,104 @@
+package IO;
+
+import Benchmarks.Benchmark;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading files through the IoScheduler on simulated mounts, against reading them one after
+ * another. Every simulated mount is a file server answering each request after a fixed latency, and
+ * serving only so many requests at once; requests beyond that wait their turn, as on a busy share.
+ * The parallelism each mount settles on is printed at the end, next to what its server can serve.
+ */
+public class IoSchedulerBenchmark {
+
+    /* The number of files read in every call. */
+    private static final int FILES = 500;
+
+    /**
+     * A file server behind a simulated mount.
+     */
+    private static class SimulatedMount {
+
+        /* The first part of the paths on this mount. */
+        final String name;
+        /* The time taken by every request, in microseconds. */
+        final long latencyMicros;
+        /* The number of requests served at once. */
+        final int capacity;
+        /* The requests being served. */
+        final Semaphore server;
+
+        SimulatedMount(String name, long latencyMicros, int capacity) {
+            this.name = name;
+            this.latencyMicros = latencyMicros;
+            this.capacity = capacity;
+            this.server = new Semaphore(capacity, true);
+        }
+
+        /**
+         * Reads a file, waiting for the server to have room for the request.
+         */
+        int read(int file) throws InterruptedException {
+            this.server.acquire();
+            try {
+                TimeUnit.MICROSECONDS.sleep(this.latencyMicros);
+            } finally {
+                this.server.release();
+            }
+            return file;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SimulatedMount[] mounts = {new SimulatedMount("local", 50, 4), new SimulatedMount("nfs", 2000, 16),
+                new SimulatedMount("smb", 5000, 8)};
+        for (SimulatedMount mount : mounts) {
+            String name = mount.name + " (" + mount.latencyMicros + "us, " + mount.capacity + " at once)";
+            Benchmark.measure("one after another, " + name + " [n=" + FILES + "]", 1, i -> {
+                int read = 0;
+                for (int file = 0; file < FILES; file++) {
+                    read += mount.read(file);
+                }
+                return read;
+            });
+            IoScheduler scheduler = new IoScheduler(path -> path.getName(0).toString(), 256);
+            Benchmark.measure("IoScheduler.submit, " + name + " [n=" + FILES + "]", 1,
+                    i -> readAll(scheduler, mount));
+        }
+
+        if (System.getProperty("benchmark.only") == null) {
+            IoScheduler scheduler = new IoScheduler(path -> path.getName(0).toString(), 256);
+            for (SimulatedMount mount : mounts) {
+                for (int round = 0; round < 5; round++) {
+                    readAll(scheduler, mount);
+                }
+                System.out.printf("%-6s parallelism learned: %d, served at once: %d%n", mount.name,
+                        scheduler.getParallelism(Paths.get(mount.name)), mount.capacity);
+            }
+        }
+    }
+
+    /**
+     * Helper that reads every file of a simulated mount through a scheduler, waiting for all of them.
+     */
+    private static int readAll(IoScheduler scheduler, SimulatedMount mount) throws Exception {
+        List<Future<Integer>> reads = new ArrayList<>(FILES);
+        for (int file = 0; file < FILES; file++) {
+            int read = file;
+            Path path = Paths.get(mount.name, "file" + file + ".jpg");
+            reads.add(scheduler.submit(path, () -> mount.read(read)));
+        }
+        int read = 0;
+        for (Future<Integer> future : reads) {
+            read += future.get();
+        }
+        return read;
+    }
+}
@@ -0,0 +1,55 @@
+package Images;
+
+import Benchmarks.Benchmark;
+import Tags.Tag;
+
+import java.io.File;
+
+/**
+ * Measures the ImageFileManager operations used while browsing and tagging, on synthetic libraries.
+ * Library sizes can be given as arguments, such as "1k 100k 1m".
+ */
+public class ImageFileManagerBenchmark {
+
+    /* Number of distinct tags in every library. */
+    private static final int TAG_COUNT = 1000;
+
+    public static void main(String[] args) throws Exception {
+        for (int size : Benchmark.sizes(args, 1000, 10000, 100000, 1000000)) {
+            SyntheticLibrary library = new SyntheticLibrary(size, TAG_COUNT);
+            ImageFileManager manager = library.getImageFileManager();
+            Tag benchmarkTag = library.getTagManager().createTag("benchmark");
+            int iterations = Math.max(100, 1000000 / size);
+            String suffix = " [n=" + size + "]";
+
+            Benchmark.measure("ImageFileManager.findImage" + suffix, iterations,
+                    i -> manager.findImage(library.pickFile(i)));
+            Benchmark.measure("ImageFileManager.updateFileAdd + updateFileRemove" + suffix, iterations, i -> {
+                File file = library.pickFile(i);
+                manager.updateFileAdd(file, benchmarkTag);
+                manager.updateFileRemove(manager.getCurrentFile(), benchmarkTag);
+                return manager.getCurrentFile();
+            });
+            Benchmark.measure("ImageFile.hasAllTags, 2 tags, every ImageFile" + suffix, Math.max(10, iterations / 100),
+                    i -> {
+                        int[] tagIds = library.getTagManager().getTagIds(
+                                new Tag[]{library.pickTag(i), library.pickTag(i + 1)});
+                        int matches = 0;
+                        for (int id = 0; id < size; id++) {
+                            if (manager.getImage(id).hasAllTags(tagIds)) {
+                                matches++;
+                            }
+                        }
+                        return matches;
+                    });
+            Benchmark.measure("ImageFileManager.gatherFilesWithTags, 1 tag" + suffix, Math.max(10, iterations / 100),
+                    i -> manager.gatherFilesWithTags(new Tag[]{library.pickTag(i)}, library.getRoot(), false));
+            Benchmark.measure("ImageFileManager.gatherFilesWithTags, 2 tags" + suffix, Math.max(10, iterations / 100),
+                    i -> manager.gatherFilesWithTags(new Tag[]{library.pickTag(i), library.pickTag(i + 1)},
+                            library.getRoot(), false));
+            Benchmark.measure("ImageFileManager.gatherFilesWithTags, 1 tag in folder" + suffix,
+                    Math.max(10, iterations / 100),
+                    i -> manager.gatherFilesWithTags(new Tag[]{library.pickTag(i)}, library.getFolder(), true));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package Images;
+
+import Benchmarks.Benchmark;
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.util.ArrayList;
+
+/**
+ * Compares ImageFileName.parse against the substring-based parsing that ImageFile used to do, both
+ * on its own and together with registering every parsed tag with the TagManager, as ImageFile's
+ * constructor does.
+ */
+public class ImageFileNameBenchmark {
+
+    /* Number of distinct names parsed in every round. */
+    private static final int NAMES = 100000;
+
+    public static void main(String[] args) throws Exception {
+        TagManager tagManager = new TagManager();
+        for (int i = 0; i < 500; i++) {
+            tagManager.addTag(new Tag("tag" + i));
+        }
+        String[] names = new String[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            StringBuilder name = new StringBuilder("IMG_").append(i);
+            for (int j = 0; j < i % 8; j++) {
+                name.append(" @tag").append((i * 31 + j * 7) % 500);
+            }
+            names[i] = name.append(".jpg").toString();
+        }
+
+        ArrayList<Tag> existingTags = tagManager.getAllExistingTags();
+
+        Benchmark.measure("legacy substring parsing", NAMES, i -> legacyParse(names[i]));
+        Benchmark.measure("ImageFileName.parse", NAMES, i -> ImageFileName.parse(names[i], tagManager));
+        Benchmark.measure("legacy parsing + linear tag lookup", NAMES, i -> {
+            ArrayList<Tag> tags = legacyParse(names[i]);
+            for (Tag tag : tags) {
+                legacyAddTag(existingTags, tag);
+            }
+            return tags;
+        });
+        Benchmark.measure("ImageFileName.parse + TagManager.addTag", NAMES, i -> {
+            ImageFileName parsedName = ImageFileName.parse(names[i], tagManager);
+            for (Tag tag : parsedName.getTags()) {
+                tagManager.addTag(tag);
+            }
+            return parsedName;
+        });
+    }
+
+    /**
+     * The lookup formerly done by TagManager.addTag for every tag of a new ImageFile, which compared
+     * the toString of every existing Tag.
+     */
+    private static void legacyAddTag(ArrayList<Tag> existingTags, Tag newTag) {
+        for (Tag oldTag : existingTags) {
+            if (oldTag.toString().equals(newTag.toString())) {
+                return;
+            }
+        }
+        existingTags.add(newTag);
+    }
+
+    /**
+     * The parsing formerly done by ImageFile's constructor, through buildOriginalString,
+     * buildTagList and the substring for its file extension.
+     */
+    private static ArrayList<Tag> legacyParse(String fullFileName) {
+        String originalName;
+        if (fullFileName.contains("@")) {
+            originalName = fullFileName.substring(0, fullFileName.indexOf("@") - 1);
+        } else {
+            originalName = fullFileName.substring(0, fullFileName.lastIndexOf("."));
+        }
+        ArrayList<Tag> preTags = new ArrayList<Tag>();
+        if (fullFileName.contains("@")) {
+            String onlyFileName = fullFileName.substring(fullFileName.indexOf("@"),
+                    fullFileName.lastIndexOf("."));
+            for (int i = 0; i < onlyFileName.length(); i++) {
+                if (onlyFileName.charAt(i) == '@') {
+                    int nextIndex = onlyFileName.indexOf("@", i + 1);
+                    if (nextIndex != -1) {
+                        preTags.add(new Tag(onlyFileName.substring(i + 1, nextIndex - 1)));
+                    } else {
+                        preTags.add(new Tag(onlyFileName.substring(i + 1, onlyFileName.length())));
+                    }
+                }
+            }
+        }
+        String fileExt = fullFileName.substring(fullFileName.lastIndexOf("."), fullFileName.length());
+        return originalName.length() + fileExt.length() > 0 ? preTags : null;
+    }
+}
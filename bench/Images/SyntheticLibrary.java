@@ -0,0 +1,136 @@
+package Images;
+
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.io.File;
+
+/**
+ * A library of generated, tagged ImageFiles used by the benchmarks. The files are spread over a
+ * tree of folders under a root that does not exist on disk, so that building and tagging the
+ * library measures the model alone and never renames anything.
+ */
+public class SyntheticLibrary {
+
+    /* Number of sub-folders in every folder of the generated tree. */
+    private static final int FOLDERS_PER_LEVEL = 10;
+    /* Number of folder levels between the root and the files. */
+    private static final int DEPTH = 3;
+    /* Largest number of tags given to a single file. */
+    private static final int MAX_TAGS_PER_FILE = 7;
+
+    private final TagManager tagManager;
+    private final ImageFileHistoryManager masterLog;
+    private final ImageFileManager imageFileManager;
+    /* The folder containing the whole library. */
+    private final File root;
+    /* Every file of the library, in the order they were generated. */
+    private final File[] files;
+    /* Every tag used by the library. */
+    private final Tag[] tags;
+
+    /**
+     * Generates a new library.
+     *
+     * @param size: The number of ImageFiles in the library.
+     * @param tagCount: The number of distinct tags used by the library.
+     */
+    public SyntheticLibrary(int size, int tagCount) {
+        this.tagManager = new TagManager();
+        this.masterLog = new ImageFileHistoryManager();
+        this.imageFileManager = new ImageFileManager(this.tagManager, this.masterLog);
+        this.tagManager.addObserver(this.imageFileManager);
+        this.root = new File(System.getProperty("java.io.tmpdir"), "synthetic-library-" + size);
+        this.files = new File[size];
+        this.tags = new Tag[tagCount];
+
+        for (int i = 0; i < tagCount; i++) {
+            this.tags[i] = this.tagManager.createTag("tag" + i);
+            this.tagManager.addTag(this.tags[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            this.files[i] = new File(folderOf(i), fileName(i, tagCount));
+            this.imageFileManager.addImage(new ImageFile(this.files[i], this.tagManager, this.masterLog));
+        }
+    }
+
+    public TagManager getTagManager() {
+        return this.tagManager;
+    }
+
+    public ImageFileHistoryManager getMasterLog() {
+        return this.masterLog;
+    }
+
+    public ImageFileManager getImageFileManager() {
+        return this.imageFileManager;
+    }
+
+    public File getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return One of the top level folders of the library, holding a tenth of its files.
+     */
+    public File getFolder() {
+        return new File(this.root, "d0");
+    }
+
+    public int size() {
+        return this.files.length;
+    }
+
+    /**
+     * Returns a file of the library, picked so that consecutive iterations jump around the library.
+     *
+     * @param iteration: The iteration of the benchmark.
+     * @return A file of the library.
+     */
+    public File pickFile(int iteration) {
+        return this.files[pick(iteration, this.files.length)];
+    }
+
+    /**
+     * Returns a tag of the library, picked so that consecutive iterations use different tags.
+     *
+     * @param iteration: The iteration of the benchmark.
+     * @return A tag of the library.
+     */
+    public Tag pickTag(int iteration) {
+        return this.tags[pick(iteration, this.tags.length)];
+    }
+
+    /**
+     * Returns a file name of the form "IMG_1 @tag3 @tag8.jpg", with up to seven tags.
+     *
+     * @param index: The number of the file.
+     * @param tagCount: The number of distinct tags to choose from.
+     * @return The generated name.
+     */
+    public static String fileName(int index, int tagCount) {
+        StringBuilder name = new StringBuilder("IMG_").append(index);
+        for (int j = 0; j < index % (MAX_TAGS_PER_FILE + 1); j++) {
+            name.append(" @tag").append(pick(index * MAX_TAGS_PER_FILE + j, tagCount));
+        }
+        return name.append(index % 5 == 0 ? ".png" : ".jpg").toString();
+    }
+
+    /**
+     * Helper that returns the folder holding the file with the given number.
+     */
+    private File folderOf(int index) {
+        File folder = this.root;
+        for (int level = 0, rest = index; level < DEPTH; level++, rest /= FOLDERS_PER_LEVEL) {
+            folder = new File(folder, "d" + rest % FOLDERS_PER_LEVEL);
+        }
+        return folder;
+    }
+
+    /**
+     * Helper that scatters consecutive numbers over [0, bound).
+     */
+    private static int pick(int iteration, int bound) {
+        return (int) ((iteration * 2654435761L & 0xFFFFFFFFL) % bound);
+    }
+}
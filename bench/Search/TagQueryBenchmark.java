@@ -0,0 +1,49 @@
+package Search;
+
+import Benchmarks.Benchmark;
+import Images.ImageFileManager;
+import Images.SyntheticLibrary;
+import Tags.TagManager;
+
+/**
+ * Measures parsing and evaluating tag queries on synthetic libraries.
+ * Library sizes can be given as arguments, such as "1k 100k 1m".
+ */
+public class TagQueryBenchmark {
+
+    /* Number of distinct tags in every library. */
+    private static final int TAG_COUNT = 1000;
+
+    public static void main(String[] args) throws Exception {
+        for (int size : Benchmark.sizes(args, 10000, 100000, 1000000)) {
+            SyntheticLibrary library = new SyntheticLibrary(size, TAG_COUNT);
+            ImageFileManager manager = library.getImageFileManager();
+            TagManager tagManager = library.getTagManager();
+            String folder = library.getFolder().getPath();
+            int iterations = Math.max(10, 100000 / size);
+            String suffix = " [n=" + size + "]";
+
+            Benchmark.measure("TagQuery, a & b" + suffix, iterations,
+                    i -> search(tagManager, manager, "@" + tag(library, i) + " & @" + tag(library, i + 1)));
+            Benchmark.measure("TagQuery, a | b" + suffix, iterations,
+                    i -> search(tagManager, manager, "@" + tag(library, i) + " | @" + tag(library, i + 1)));
+            Benchmark.measure("TagQuery, a & !b" + suffix, iterations,
+                    i -> search(tagManager, manager, "@" + tag(library, i) + " -@" + tag(library, i + 1)));
+            Benchmark.measure("TagQuery, prefix* & !b" + suffix, iterations,
+                    i -> search(tagManager, manager, "@tag" + i % 10 + "* !@" + tag(library, i)));
+            Benchmark.measure("TagQuery, (a | b) & under:folder" + suffix, iterations,
+                    i -> search(tagManager, manager, "(@" + tag(library, i) + " | @" + tag(library, i + 1)
+                            + ") under:\"" + folder + "\""));
+            Benchmark.measure("TagQuery, a & never used" + suffix, iterations,
+                    i -> search(tagManager, manager, "@" + tag(library, i) + " & @unused"));
+        }
+    }
+
+    private static String tag(SyntheticLibrary library, int iteration) {
+        return library.pickTag(iteration).getName();
+    }
+
+    private static int search(TagManager tagManager, ImageFileManager manager, String query) {
+        return TagQuery.parse(query, tagManager).evaluate(manager).cardinality();
+    }
+}
@@ -0,0 +1,51 @@
+package Tags;
+
+import Benchmarks.Benchmark;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures TagManager.createTag for tags that exist and for tags that do not, and tag suggestions,
+ * with as many existing tags as each library size given as an argument.
+ */
+public class TagManagerBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        for (int size : Benchmark.sizes(args, 1000, 10000, 100000, 1000000)) {
+            TagManager tagManager = new TagManager();
+            String[] existingNames = new String[size];
+            String[] newNames = new String[size];
+            for (int i = 0; i < size; i++) {
+                existingNames[i] = "tag" + i;
+                newNames[i] = "new" + i;
+                tagManager.addTag(new Tag(existingNames[i]));
+            }
+            Tag[] tags = tagManager.getAllExistingTags().toArray(new Tag[0]);
+            List<Tag> noTags = Collections.emptyList();
+            for (int i = 0; i < size; i++) {
+                for (long uses = (i * 2654435761L & 0xFFFFFFFFL) % 16; uses >= 0; uses--) {
+                    tagManager.recordTagAdded(tags[i], noTags, 0);
+                }
+            }
+            String suffix = " [tags=" + size + "]";
+
+            Benchmark.measure("TagManager.createTag, existing tag" + suffix, size,
+                    i -> tagManager.createTag(existingNames[i]));
+            Benchmark.measure("TagManager.createTag, new tag" + suffix, size,
+                    i -> tagManager.createTag(newNames[i]));
+            Benchmark.measure("TagManager.suggestTags, 1 character" + suffix, Math.min(size, 10000),
+                    i -> tagManager.suggestTags("t", 10));
+            Benchmark.measure("TagManager.suggestTags, 4 characters" + suffix, Math.min(size, 10000),
+                    i -> tagManager.suggestTags("tag" + i % 10, 10));
+            Benchmark.measure("TagManager.recordTagAdded, 3 other tags" + suffix, size, i -> {
+                tagManager.recordTagAdded(tags[i], Arrays.asList(tags[(i + 1) % size], tags[(i + 7) % size],
+                        tags[(i + 13) % size]), i);
+                return tags[i];
+            });
+            Benchmark.measure("TagManager.getTagsByUsage" + suffix, Math.max(10, 1000000 / size),
+                    i -> tagManager.getTagsByUsage());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package Application;
 
+import Core.ImageLibrary;
+import Diagnostics.Metrics;
 import Images.*;
 import Tags.*;
 import Navigation.UIManager;
@@ -7,7 +9,7 @@ import javafx.application.Application;
 import javafx.stage.Stage;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.util.List;
 
 public class AppRunner extends Application {
 
@@ -21,19 +23,13 @@ public class AppRunner extends Application {
     private Tag[] selectedTags;
     private Tag[] selectedImageTags;
     private File[] selectedFiles;
+    private int[] selectedIds;
 
     /* Management of all data. */
-    private ImageFileHistoryManager masterLog = new ImageFileHistoryManager();
-    private TagManager tagManager = new TagManager();
-    private ImageFileManager imageFileManager;
+    private ImageLibrary library;
 
     /* Pertaining to the files available in a given directory. */
-    private ArrayList<File> directoryFiles;
-    private ArrayList<String> dirFileNames;
-
-    /* File name for saving. */
-    private String imageSaveFileName = System.getProperty("user.dir") + File.separator + "serializedImageData.ser";
-    private String logSaveFileName = System.getProperty("user.dir") + File.separator + "serializedLogData.ser";
+    private List<File> directoryFiles;
 
     /**
      * Instantiates all parameters and information related to this application.
@@ -44,19 +40,34 @@ public class AppRunner extends Application {
     public void start(Stage primaryStage) {
         stage = primaryStage;
         stage.setTitle("@memories");
-        masterLog.readFromFile(logSaveFileName);
-        imageFileManager = new ImageFileManager(tagManager, masterLog);
-        tagManager.addObserver(imageFileManager);
-        imageFileManager.readFromFile(imageSaveFileName);
-        this.saveToFiles();
+        File dataDir = new File(System.getProperty("user.dir"));
+        Metrics.start(dataDir);
+        library = new ImageLibrary(dataDir);
+        library.load();
+        String tagStorage = getParameters().getNamed().get("tag-storage");
+        if (tagStorage != null) {
+            library.setTagStorage(TagStorage.parse(tagStorage));
+        }
         new UIManager(this);
     }
 
+    /**
+     * Renames the files still waiting to be renamed to their tagged names, and saves the library, before
+     * the application stops.
+     */
+    @Override
+    public void stop() {
+        library.writePendingNames();
+        library.saveToFiles();
+    }
+
     /**
      * Runs the application.
+     *
+     * @param args The arguments of the application, such as --tag-storage=index.
      */
-    static void main() {
-        launch();
+    static void main(String[] args) {
+        launch(args);
     }
 
     /**
@@ -88,19 +99,12 @@ public class AppRunner extends Application {
     }
 
     /**
-     * @return the ArrayList of directory files belonging to the currently chosen directory.
+     * @return the list of directory files belonging to the currently chosen directory.
      */
-    public ArrayList<File> getDirectoryFiles() {
+    public List<File> getDirectoryFiles() {
         return directoryFiles;
     }
 
-    /**
-     * @return the ArrayList of directory file names belonging to the currently chosen directory.
-     */
-    public ArrayList<String> getDirFileNames() {
-        return dirFileNames;
-    }
-
     /**
      * @return the Tag currently chosen by the user.
      */
@@ -127,17 +131,40 @@ public class AppRunner extends Application {
     }
 
     /**
-     * @return the ImageFileManager responsible for all ImageFile data.
+     * @return the ids of the ImageFiles of the Files currently chosen by the user, in the same order,
+     * with -1 for any File that is not an ImageFile yet.
+     */
+    public int[] getSelectedIds() {
+        return selectedIds;
+    }
+
+    /**
+     * @return the ImageLibrary holding all data of this application.
+     */
+    public ImageLibrary getLibrary() {
+        return library;
+    }
+
+    /**
+     * @return the ImageFileManager of the root of the current directory.
      */
     public ImageFileManager getImageFileManager() {
-        return imageFileManager;
+        return library.getImageFileManager();
+    }
+
+    /**
+     * @param file: A file, or null for the current directory.
+     * @return the ImageFileManager of the root containing this file.
+     */
+    public ImageFileManager getImageFileManager(File file) {
+        return library.getImageFileManager(file);
     }
 
     /**
      * @return the TagManager responsible for all Tag data.
      */
     public TagManager getTagManager() {
-        return tagManager;
+        return library.getTagManager();
     }
 
     /**
@@ -151,7 +178,7 @@ public class AppRunner extends Application {
      * @return This application's ImageFileHistoryManager.
      */
     public ImageFileHistoryManager getMasterLog() {
-        return masterLog;
+        return library.getMasterLog();
     }
 
     /**
@@ -177,19 +204,10 @@ public class AppRunner extends Application {
      *
      * @param allDirFiles all new directory files selected by the user.
      */
-    public void setDirectoryFiles(ArrayList<File> allDirFiles) {
+    public void setDirectoryFiles(List<File> allDirFiles) {
         directoryFiles = allDirFiles;
     }
 
-    /**
-     * Reassigns the dirFileNames to another set of directory file names.
-     *
-     * @param allDirFileNames all new directory file names selected by the user.
-     */
-    public void setDirFileNames(ArrayList<String> allDirFileNames) {
-        dirFileNames = allDirFileNames;
-    }
-
     /**
      * Reassigns the selected tag to another Tag.
      *
@@ -221,6 +239,15 @@ public class AppRunner extends Application {
         this.selectedFiles = selectedFiles;
     }
 
+    /**
+     * Reassigns the selectedIds to the ids of the ImageFiles of another set of Files.
+     *
+     * @param selectedIds the ids of the ImageFiles of the new Files that the user has selected.
+     */
+    public void setSelectedIds(int[] selectedIds) {
+        this.selectedIds = selectedIds;
+    }
+
     /**
      * Reassigns the moveTargetDir to a new target.
      *
@@ -243,8 +270,7 @@ public class AppRunner extends Application {
      * Saves the current state of the application.
      */
     public void saveToFiles() {
-        imageFileManager.saveToFile(imageSaveFileName);
-        masterLog.saveToFile(logSaveFileName);
+        library.saveToFiles();
     }
 
 }
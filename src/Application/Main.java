@@ -3,6 +3,6 @@ package Application;
 public class Main {
 
     public static void main(String[] args) {
-        AppRunner.main();
+        AppRunner.main(args);
     }
 }
\ No newline at end of file
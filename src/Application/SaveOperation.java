@@ -14,6 +14,8 @@ import java.io.Serializable;
  */
 public class SaveOperation<E> implements SaveFile, Serializable {
 
+    private static final long serialVersionUID = -4082590845303562666L;
+
     /* Contains all data to be stored. */
     private ArrayList<E> data;
 
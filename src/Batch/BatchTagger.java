@@ -0,0 +1,308 @@
+package Batch;
+
+import Core.ImageLibrary;
+import Images.ImageFileManager;
+import Images.TagStorage;
+import Tags.TagManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies the tag operations of a manifest to an ImageLibrary from the command line, without a display.
+ *
+ * Operations are applied in batches. Within a batch, the operations of different files run in parallel,
+ * while the operations of a single file run in the order of the manifest. Moves of whole directories
+ * run one at a time once the other operations of their batch are done, since those may touch files
+ * inside them; later operations on files inside a moved directory find them at their new location.
+ * The library is saved once at the end of every batch, to the same save files as the desktop application.
+ *
+ * With "--tag-storage index", tags are only kept in the library, and no file is renamed while tagging;
+ * "--export-names DIR" then writes the tags of every ImageFile under DIR in its file name.
+ */
+public class BatchTagger {
+
+    private static final String USAGE = "Usage: java Batch.BatchTagger MANIFEST [--data-dir DIR] "
+            + "[--threads N] [--batch-size N] [--tag-storage file-name|index|attribute]\n"
+            + "       java Batch.BatchTagger --export-names DIR [--data-dir DIR]";
+
+    /* The library being tagged. */
+    private final ImageLibrary library;
+    /* The number of files updated at the same time. */
+    private final int threads;
+    /* The number of operations applied between two saves. */
+    private final int batchSize;
+    /* The current location of every file that has been renamed or moved, by its location in the manifest. */
+    private final Map<File, File> locations;
+    /* The new location of every directory moved so far, by its previous one, in the order they were moved.
+     * Only changed between the parallel parts of batches. */
+    private final List<Map.Entry<Path, Path>> movedDirectories;
+
+    /**
+     * Constructs a new BatchTagger.
+     *
+     * @param library: The library being tagged.
+     * @param threads: The number of files updated at the same time.
+     * @param batchSize: The number of operations applied between two saves.
+     */
+    public BatchTagger(ImageLibrary library, int threads, int batchSize) {
+        this.library = library;
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.locations = new ConcurrentHashMap<>();
+        this.movedDirectories = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws Exception {
+        File manifest = null;
+        File dataDir = new File(System.getProperty("user.dir"));
+        int threads = Runtime.getRuntime().availableProcessors();
+        int batchSize = 1000;
+        TagStorage tagStorage = TagStorage.FILE_NAME;
+        File exportDir = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--data-dir")) {
+                    dataDir = new File(args[++i]);
+                } else if (args[i].equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--batch-size")) {
+                    batchSize = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--tag-storage")) {
+                    tagStorage = TagStorage.parse(args[++i]);
+                } else if (args[i].equals("--export-names")) {
+                    exportDir = new File(args[++i]);
+                } else if (manifest == null) {
+                    manifest = new File(args[i]);
+                } else {
+                    throw new IllegalArgumentException("unexpected argument " + args[i]);
+                }
+            }
+            if ((manifest == null) == (exportDir == null) || threads < 1 || batchSize < 1) {
+                throw new IllegalArgumentException("expected either a manifest or --export-names, "
+                        + "or invalid thread count or batch size");
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage() == null ? e.toString() : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        ImageLibrary library = new ImageLibrary(dataDir);
+        library.load();
+        library.setTagStorage(tagStorage);
+        if (exportDir != null) {
+            System.out.println(library.exportNames(exportDir) + " files renamed");
+            library.saveToFiles();
+            System.exit(0);
+        }
+        List<String> invalidLines = new ArrayList<>();
+        List<TagOperation> operations = readManifest(manifest, invalidLines);
+        for (String invalidLine : invalidLines) {
+            System.err.println(invalidLine);
+        }
+        int failures = new BatchTagger(library, threads, batchSize).run(operations);
+        System.exit(failures == 0 && invalidLines.isEmpty() ? 0 : 1);
+    }
+
+    /**
+     * Reads all operations of a manifest. Invalid lines are skipped.
+     *
+     * @param manifest: The manifest file.
+     * @param invalidLines: Receives a description of every invalid line.
+     * @return All valid operations, in the order of the manifest.
+     */
+    static List<TagOperation> readManifest(File manifest, List<String> invalidLines) throws IOException {
+        List<TagOperation> operations = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    TagOperation operation = TagOperation.parse(line, lineNumber);
+                    if (operation != null) {
+                        operations.add(operation);
+                    }
+                } catch (IllegalArgumentException e) {
+                    invalidLines.add(e.getMessage());
+                }
+            }
+        }
+        return operations;
+    }
+
+    /**
+     * Applies all operations, saving the library after every batch, and reports the throughput.
+     *
+     * @param operations: The operations to apply, in the order of the manifest.
+     * @return The number of operations that failed.
+     */
+    public int run(List<TagOperation> operations) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        int failures = 0;
+        long start = System.nanoTime();
+        try {
+            for (int from = 0; from < operations.size(); from += this.batchSize) {
+                List<TagOperation> batch = operations.subList(from, Math.min(from + this.batchSize, operations.size()));
+                long batchStart = System.nanoTime();
+                failures += this.runBatch(batch, executor);
+                this.library.saveToFiles();
+                System.out.printf("Batch of %d operations done in %.2f s (%d/%d)%n", batch.size(),
+                        (System.nanoTime() - batchStart) / 1e9, from + batch.size(), operations.size());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        this.library.writePendingNames();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d operations (%d failed) in %.2f s: %.1f operations/s%n", operations.size(),
+                failures, seconds, operations.size() / Math.max(seconds, 1e-9));
+        return failures;
+    }
+
+    /**
+     * Helper that applies one batch, running the operations of every file as a single task, and then the
+     * moves of whole directories, in order.
+     *
+     * @return The number of operations that failed.
+     */
+    private int runBatch(List<TagOperation> batch, ExecutorService executor) throws InterruptedException {
+        Map<File, List<TagOperation>> operationsByFile = new LinkedHashMap<>();
+        List<TagOperation> directoryMoves = new ArrayList<>();
+        for (TagOperation operation : batch) {
+            if (operation.getKind() == TagOperation.Kind.MOVE && this.locate(operation.getFile()).isDirectory()) {
+                directoryMoves.add(operation);
+            } else {
+                operationsByFile.computeIfAbsent(operation.getFile(), file -> new ArrayList<>()).add(operation);
+            }
+        }
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (Map.Entry<File, List<TagOperation>> entry : operationsByFile.entrySet()) {
+            tasks.add(() -> this.applyAll(entry.getKey(), entry.getValue()));
+        }
+        int failures = 0;
+        for (Future<Integer> result : executor.invokeAll(tasks)) {
+            try {
+                failures += result.get();
+            } catch (Exception e) {
+                e.printStackTrace();
+                failures++;
+            }
+        }
+        for (TagOperation operation : directoryMoves) {
+            File current = this.locate(operation.getFile());
+            File moved = this.apply(operation, current);
+            if (moved == null) {
+                failures++;
+            } else {
+                this.directoryMoved(current, moved);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Helper that returns the current location of a file of the manifest: where it was last renamed or
+     * moved to, or where the moves of the directories it is in took it.
+     */
+    private File locate(File manifestFile) {
+        File current = this.locations.get(manifestFile);
+        if (current != null || this.movedDirectories.isEmpty()) {
+            return current != null ? current : manifestFile;
+        }
+        return this.relocate(manifestFile);
+    }
+
+    /**
+     * Helper that returns where a location is once every directory moved so far was moved.
+     */
+    private File relocate(File location) {
+        Path path = location.getAbsoluteFile().toPath().normalize();
+        boolean isMoved = false;
+        for (Map.Entry<Path, Path> move : this.movedDirectories) {
+            if (path.startsWith(move.getKey())) {
+                path = move.getValue().resolve(move.getKey().relativize(path));
+                isMoved = true;
+            }
+        }
+        return isMoved ? path.toFile() : location;
+    }
+
+    /**
+     * Helper that records the move of a whole directory, updating the location of every file tracked under it.
+     */
+    private void directoryMoved(File oldDir, File newDir) {
+        this.movedDirectories.add(Map.entry(oldDir.getAbsoluteFile().toPath().normalize(),
+                newDir.getAbsoluteFile().toPath().normalize()));
+        for (Map.Entry<File, File> entry : this.locations.entrySet()) {
+            entry.setValue(this.relocate(entry.getValue()));
+        }
+    }
+
+    /**
+     * Helper that applies all operations of a single file, in order.
+     *
+     * @return The number of operations that failed.
+     */
+    private int applyAll(File manifestFile, List<TagOperation> operations) {
+        File current = this.locate(manifestFile);
+        int failures = 0;
+        for (TagOperation operation : operations) {
+            File updated = this.apply(operation, current);
+            if (updated == null) {
+                failures++;
+            } else {
+                current = updated;
+            }
+        }
+        this.locations.put(manifestFile, current);
+        return failures;
+    }
+
+    /**
+     * Helper that applies a single operation to the file at its current location.
+     *
+     * @return The location of the file after the operation, or null if it failed.
+     */
+    private File apply(TagOperation operation, File current) {
+        ImageFileManager imageFileManager = this.library.getImageFileManager(current);
+        /* A file renamed by an earlier operation may still be at its previous name on disk. Whole
+         * directories can be moved. */
+        File onDisk = imageFileManager.getFileOnDisk(current);
+        if (!onDisk.isFile() && !(operation.getKind() == TagOperation.Kind.MOVE && onDisk.isDirectory())) {
+            System.err.println("line " + operation.getLineNumber() + ": no such file " + current);
+            return null;
+        }
+        TagManager tagManager = this.library.getTagManager();
+        switch (operation.getKind()) {
+            case ADD:
+                return imageFileManager.updateFileAdd(current, tagManager.createTag(operation.getArgument()));
+            case REMOVE:
+                File updated = imageFileManager.updateFileRemove(current, tagManager.createTag(operation.getArgument()));
+                return updated == null ? current : updated;
+            default:
+                File targetDir = new File(operation.getArgument());
+                File moved = this.library.moveFile(current, targetDir);
+                if (!moved.getParentFile().equals(targetDir)) {
+                    System.err.println("line " + operation.getLineNumber() + ": could not move " + current
+                            + " to " + targetDir);
+                    return null;
+                }
+                return moved;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package Batch;
+
+import java.io.File;
+import java.util.ArrayList;
+
+/**
+ * A class representing a single line of a batch manifest: adding a tag to a file, removing a tag
+ * from a file, or moving a file to another directory.
+ *
+ * Manifest lines have the form "add,FILE,TAG", "remove,FILE,TAG" or "move,FILE,DIRECTORY". Fields
+ * containing commas can be quoted with double quotes. Empty lines and lines starting with "#" are
+ * ignored.
+ */
+class TagOperation {
+
+    /**
+     * All kinds of operations that can appear in a manifest.
+     */
+    enum Kind {
+        ADD, REMOVE, MOVE
+    }
+
+    /* What this operation does. */
+    private final Kind kind;
+    /* The file this operation applies to, as written in the manifest. */
+    private final File file;
+    /* The tag name for ADD and REMOVE, or the target directory for MOVE. */
+    private final String argument;
+    /* The line of the manifest this operation was read from. */
+    private final int lineNumber;
+
+    private TagOperation(Kind kind, File file, String argument, int lineNumber) {
+        this.kind = kind;
+        this.file = file;
+        this.argument = argument;
+        this.lineNumber = lineNumber;
+    }
+
+    Kind getKind() {
+        return this.kind;
+    }
+
+    File getFile() {
+        return this.file;
+    }
+
+    String getArgument() {
+        return this.argument;
+    }
+
+    int getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Parses a single line of a manifest.
+     *
+     * @param line: The line being parsed.
+     * @param lineNumber: The number of this line within the manifest.
+     * @return The operation on this line, or null if the line is empty or a comment.
+     * @throws IllegalArgumentException if the line is not a valid operation.
+     */
+    static TagOperation parse(String line, int lineNumber) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        ArrayList<String> fields = splitFields(trimmed);
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("line " + lineNumber + ": expected 3 fields, found " + fields.size());
+        }
+        Kind kind;
+        try {
+            kind = Kind.valueOf(fields.get(0).trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("line " + lineNumber + ": unknown operation " + fields.get(0));
+        }
+        String argument = fields.get(2).trim();
+        if (argument.isEmpty()) {
+            throw new IllegalArgumentException("line " + lineNumber + ": missing tag or directory");
+        }
+        return new TagOperation(kind, new File(fields.get(1).trim()), argument, lineNumber);
+    }
+
+    /**
+     * Helper that splits a line on commas that are not within double quotes.
+     */
+    private static ArrayList<String> splitFields(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind.toString().toLowerCase() + "," + this.file.getPath() + "," + this.argument;
+    }
+}
@@ -0,0 +1,397 @@
+package Core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Moves files and whole directories into another directory, keeping their names. Within a volume,
+ * each file or directory is moved with a single rename. Across volumes, all files of a directory are
+ * copied in parallel, and the originals are only deleted once every one of them was copied. A file or
+ * directory whose name is already taken in the target directory, or by another one being moved, is
+ * not moved: nothing is ever replaced.
+ *
+ * A BulkMove runs once, reporting its progress as it goes, and can be cancelled from another thread:
+ * files and directories not moved yet are then left where they are, and the partial copy of a
+ * directory being copied is deleted. The locations of all moved ImageFiles are updated once, at the end.
+ */
+public class BulkMove {
+
+    /* The number of bytes copied between two checks for cancellation. */
+    private static final long CHUNK_SIZE = 8 << 20;
+
+    /* The ImageLibrary whose ImageFiles are moved. */
+    private final ImageLibrary library;
+    /* The files and directories being moved. */
+    private final List<File> sources;
+    /* The directory they are moved to. */
+    private final File targetDir;
+    /* The number of files moved or copied at once. */
+    private final int threads;
+    /* The location of every file or directory moved so far, by its location before the move. */
+    private final Map<File, File> moved;
+    /* The files and directories that could not be moved. */
+    private final List<File> failed;
+    /* The number of files in each file or directory being moved: 1 for a file. */
+    private final Map<File, Integer> fileCounts;
+    /* The number of files being moved, and the number moved so far. */
+    private final AtomicInteger totalFiles;
+    private final AtomicInteger movedFiles;
+    /* The number of bytes copied so far across volumes. */
+    private final AtomicLong copiedBytes;
+    /* The volume of the target directory, or null if it could not be read. */
+    private FileStore targetStore;
+    /* Whether the move was cancelled. */
+    private volatile boolean cancelled;
+    /* Receives this BulkMove every time it makes progress, or null. */
+    private Consumer<BulkMove> listener;
+
+    /**
+     * Constructs a new BulkMove, which does nothing until it is run.
+     *
+     * @param library: The ImageLibrary whose ImageFiles are moved.
+     * @param sources: The files and directories being moved.
+     * @param targetDir: The directory they are moved to.
+     * @param threads: The number of files moved or copied at once.
+     */
+    BulkMove(ImageLibrary library, List<File> sources, File targetDir, int threads) {
+        this.library = library;
+        this.sources = new ArrayList<>(sources);
+        this.targetDir = targetDir;
+        this.threads = threads;
+        this.moved = new ConcurrentHashMap<>();
+        this.failed = Collections.synchronizedList(new ArrayList<>());
+        this.fileCounts = new ConcurrentHashMap<>();
+        this.totalFiles = new AtomicInteger();
+        this.movedFiles = new AtomicInteger();
+        this.copiedBytes = new AtomicLong();
+        this.cancelled = false;
+    }
+
+    /**
+     * @return The number of files being moved, counting the files within directories, once the move started.
+     */
+    public int getTotalFiles() {
+        return this.totalFiles.get();
+    }
+
+    /**
+     * @return The number of files moved so far.
+     */
+    public int getMovedFiles() {
+        return this.movedFiles.get();
+    }
+
+    /**
+     * @return The number of bytes copied so far, when moving across volumes.
+     */
+    public long getCopiedBytes() {
+        return this.copiedBytes.get();
+    }
+
+    /**
+     * @return The files and directories that could not be moved, such as because their name was taken.
+     */
+    public List<File> getFailed() {
+        synchronized (this.failed) {
+            return new ArrayList<>(this.failed);
+        }
+    }
+
+    /**
+     * Stops the move as soon as possible. Files and directories already moved stay moved.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Moves all files and directories, on the calling thread and a pool of threads, and then updates the
+     * location of every ImageFile moved.
+     *
+     * @param listener: Receives this BulkMove every time a file is moved, on any thread; or null.
+     * @return The location of every file or directory moved, by its location before the move.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for the pool.
+     */
+    public Map<File, File> run(Consumer<BulkMove> listener) throws InterruptedException {
+        this.listener = listener;
+        /* Files must be at their tagged names on disk to be moved under them. Only those moved are renamed. */
+        this.library.writePendingNamesAt(this.sources);
+        Map<File, File> destinations = this.plan();
+        try {
+            this.targetStore = Files.getFileStore(this.targetDir.toPath());
+        } catch (IOException e) {
+            this.targetStore = null;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, this.threads));
+        try {
+            List<File> copies = new ArrayList<>();
+            List<Callable<Void>> renames = new ArrayList<>();
+            for (Map.Entry<File, File> entry : destinations.entrySet()) {
+                renames.add(() -> {
+                    if (!this.cancelled && !this.rename(entry.getKey(), entry.getValue())) {
+                        synchronized (copies) {
+                            copies.add(entry.getKey());
+                        }
+                    }
+                    return null;
+                });
+            }
+            try {
+                this.invokeAll(executor, renames);
+            } catch (IOException e) {
+                /* Every rename records its own failure. */
+            }
+            for (File source : copies) {
+                if (!this.cancelled) {
+                    this.copy(source, destinations.get(source), executor);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            this.library.updateMovedFiles(this.moved);
+        }
+        return this.moved;
+    }
+
+    /**
+     * Helper that returns where each file or directory is moved to, leaving out those whose name is taken
+     * in the target directory, those whose name was already reserved by another one being moved, such as
+     * files of the same name in different sub-folders, and those within another one being moved. Also
+     * counts the files being moved.
+     */
+    private Map<File, File> plan() {
+        Map<File, File> destinations = new LinkedHashMap<>();
+        Set<String> reservedNames = new HashSet<>();
+        Path target = this.targetDir.getAbsoluteFile().toPath().normalize();
+        for (File selected : this.sources) {
+            File source = this.library.getFileOnDisk(selected);
+            Path path = source.getAbsoluteFile().toPath().normalize();
+            File destination = new File(this.targetDir, source.getName());
+            if (this.isWithinSource(path)) {
+                /* Moved along with the directory it is in. */
+                continue;
+            }
+            /* Names are not case sensitive on Windows. */
+            String name = File.separatorChar == '\\' ? source.getName().toLowerCase() : source.getName();
+            if (target.startsWith(path) || destination.exists() || !source.exists() || !reservedNames.add(name)) {
+                this.failed.add(source);
+                continue;
+            }
+            destinations.put(source, destination);
+            this.fileCounts.put(source, countFiles(path));
+            this.totalFiles.addAndGet(this.fileCounts.get(source));
+        }
+        return destinations;
+    }
+
+    /**
+     * Helper that returns whether a path is strictly within one of the directories being moved.
+     */
+    private boolean isWithinSource(Path path) {
+        for (File other : this.sources) {
+            Path otherPath = other.getAbsoluteFile().toPath().normalize();
+            if (!otherPath.equals(path) && path.startsWith(otherPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper that moves a file or directory on the volume of the target directory with a single rename.
+     * Fails, rather than replacing it, if another file took its name since the move was planned.
+     *
+     * @return Whether the move is done, either moved or failed for good; false if it must be copied instead.
+     */
+    private boolean rename(File source, File destination) {
+        try {
+            if (this.targetStore == null || !this.targetStore.equals(Files.getFileStore(source.toPath()))) {
+                /* On another volume. */
+                return false;
+            }
+            /* Without REPLACE_EXISTING, and unlike ATOMIC_MOVE, this never replaces an existing file. */
+            Files.move(source.toPath(), destination.toPath());
+        } catch (IOException e) {
+            this.failed.add(source);
+            return true;
+        }
+        this.moved.put(source, destination);
+        this.movedFiles.addAndGet(this.fileCounts.get(source));
+        this.progress();
+        return true;
+    }
+
+    /**
+     * Helper that copies a file or directory to another volume, copying its files in parallel, and deletes
+     * the original once all of it was copied. If any file could not be copied, or the move was cancelled,
+     * the partial copy is deleted and the original is kept.
+     */
+    private void copy(File source, File destination, ExecutorService executor) throws InterruptedException {
+        Path sourcePath = source.toPath();
+        Path destinationPath = destination.toPath();
+        List<Callable<Void>> copies = new ArrayList<>();
+        try {
+            Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                    Files.createDirectory(destinationPath.resolve(sourcePath.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    Path copy = destinationPath.resolve(sourcePath.relativize(file));
+                    copies.add(() -> {
+                        BulkMove.this.copyFile(file, copy);
+                        return null;
+                    });
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            this.invokeAll(executor, copies);
+        } catch (IOException e) {
+            this.failed.add(source);
+            deleteTree(destinationPath);
+            return;
+        }
+        if (this.cancelled) {
+            deleteTree(destinationPath);
+            return;
+        }
+        deleteTree(sourcePath);
+        this.moved.put(source, destination);
+    }
+
+    /**
+     * Helper that copies a single file with its modification time, through the file system cache rather
+     * than the heap, checking for cancellation between chunks.
+     */
+    private void copyFile(Path source, Path destination) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                if (this.cancelled) {
+                    return;
+                }
+                long copied = in.transferTo(position, Math.min(CHUNK_SIZE, size - position), out);
+                position += copied;
+                this.copiedBytes.addAndGet(copied);
+            }
+        }
+        Files.setLastModifiedTime(destination, Files.getLastModifiedTime(source));
+        this.movedFiles.incrementAndGet();
+        this.progress();
+    }
+
+    /**
+     * Helper that runs tasks on the pool, or on the calling thread if there is only one, and rethrows the
+     * first IOException thrown by any of them once all are done.
+     */
+    private void invokeAll(ExecutorService executor, List<Callable<Void>> tasks)
+            throws IOException, InterruptedException {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+        IOException thrown = null;
+        for (Future<Void> result : executor.invokeAll(tasks)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (thrown == null) {
+                    thrown = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+        }
+        if (thrown != null) {
+            throw thrown;
+        }
+    }
+
+    private void progress() {
+        if (this.listener != null) {
+            this.listener.accept(this);
+        }
+    }
+
+    /**
+     * Helper that returns the number of files in a file or directory: 1 for a file.
+     */
+    private static int countFiles(Path path) {
+        if (!Files.isDirectory(path)) {
+            return 1;
+        }
+        int[] count = new int[1];
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    count[0]++;
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            /* Counted as far as it could be read. */
+        }
+        return count[0];
+    }
+
+    /**
+     * Helper that deletes a file or directory with everything in it, as far as it can.
+     */
+    private static void deleteTree(Path path) {
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            /* Whatever could not be deleted is left. */
+        }
+    }
+}
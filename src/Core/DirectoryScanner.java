@@ -0,0 +1,262 @@
+package Core;
+
+import IO.IoScheduler;
+import Images.HeaderIndex;
+import Images.ImageFileManager;
+import Images.ImageHeader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Finds all image files within a directory. A file is an image file if it has the extension of an
+ * image, and its header says it is a valid image of one of these formats.
+ *
+ * Directories are listed, and the attributes and headers of their entries read, through the
+ * IoScheduler: on a network share, where every file takes a round trip to the file server, many
+ * entries are read at once, ahead of the one being looked at, while on a local disk they are read
+ * one after another on the calling thread. Either way, image files are found in the order of a
+ * plain walk of the tree.
+ */
+class DirectoryScanner {
+
+    /* The extensions of image files, in lower case. */
+    private static final String[] IMAGE_EXTENSIONS = {"jpg", "jpeg", "png", "bmp", "gif", "tiff"};
+    /* The number of entries of a directory read ahead of the one being looked at. */
+    private static final int LOOKAHEAD = 256;
+
+    /* The ImageFileManager receiving any files with pre-existing tags. */
+    private ImageFileManager imageFileManager;
+    /* The headers of all image files found so far. */
+    private HeaderIndex headerIndex;
+    /* Reads directories, attributes and headers, as many at once as each mount allows. */
+    private IoScheduler ioScheduler;
+    /* Read the headers of new or changed files, one per thread reading at once. */
+    private ConcurrentLinkedQueue<HeaderProbe> headerProbes;
+
+    /**
+     * Constructs a new DirectoryScanner.
+     *
+     * @param imageFileManager The ImageFileManager receiving any files with pre-existing tags.
+     * @param headerIndex The index keeping the headers of all image files found.
+     * @param ioScheduler Reads directories, attributes and headers.
+     */
+    DirectoryScanner(ImageFileManager imageFileManager, HeaderIndex headerIndex, IoScheduler ioScheduler) {
+        this.imageFileManager = imageFileManager;
+        this.headerIndex = headerIndex;
+        this.ioScheduler = ioScheduler;
+        this.headerProbes = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Returns a list of image files in the current directory. Checks for files with pre-existing tags,
+     * and passes them over to the ImageFileManager. Files whose header is not that of a valid image,
+     * such as corrupt files or files with the wrong extension, are left out.
+     *
+     * @param currentDir The directory that the user has chosen to look through.
+     * @return A list of all image files within the directory.
+     */
+    synchronized ArrayList<File> getDirectoryFiles(File currentDir) {
+        ArrayList<File> allDirFiles = new ArrayList<>();
+        this.scan(currentDir, allDirFiles::add);
+        return allDirFiles;
+    }
+
+    /**
+     * Walks a directory and all of its sub-directories, passing every image file found to a sink as soon
+     * as it is found. The type, size and modification time of every entry are read at once, in a single
+     * call, and are all that is needed to tell whether its header must be read again. Links are followed,
+     * except those back to a directory being walked. Directories that cannot be read are skipped.
+     *
+     * @param currentDir The directory being looked through.
+     * @param sink Receives every image file, in the order they are found, on the calling thread.
+     */
+    synchronized void scan(File currentDir, Consumer<File> sink) {
+        Path root = currentDir.toPath();
+        Entry entry = this.await(this.ioScheduler.runOrSubmit(root, () -> this.read(root, Collections.emptySet())));
+        if (entry.children != null) {
+            this.walk(entry, sink);
+        }
+    }
+
+    /**
+     * Returns whether a file name has the extension of an image, in a single pass over its extension,
+     * ignoring case.
+     *
+     * @param name The name of a file.
+     * @return Whether it ends with .jpg, .jpeg, .png, .bmp, .gif or .tiff.
+     */
+    static boolean hasImageExtension(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return false;
+        }
+        int length = name.length() - dot - 1;
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (extension.length() == length && name.regionMatches(true, dot + 1, extension, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Helper that passes the image files of a directory that was read, and of its sub-directories, to the
+     * sink, in order, while the entries after them are read in the background.
+     */
+    private void walk(Entry directory, Consumer<File> sink) {
+        List<Path> children = directory.children;
+        ArrayDeque<Future<Entry>> window = new ArrayDeque<>();
+        int next = 0;
+        while (next < children.size() || !window.isEmpty()) {
+            while (next < children.size() && window.size() < LOOKAHEAD) {
+                Path child = children.get(next++);
+                window.add(this.ioScheduler.runOrSubmit(child, () -> this.read(child, directory.ancestors)));
+            }
+            Entry entry = this.await(window.poll());
+            if (entry.children != null) {
+                this.walk(entry, sink);
+            } else if (entry.file != null) {
+                this.visitFile(entry, sink);
+            }
+        }
+    }
+
+    /**
+     * Helper that passes an image file to the sink if it is a valid image, and to the ImageFileManager
+     * if its name has tags.
+     */
+    private void visitFile(Entry entry, Consumer<File> sink) {
+        /* Checks that the file really is an image. */
+        if (entry.header != null) {
+            this.headerIndex.put(entry.header);
+        } else if (!entry.isValid) {
+            this.headerIndex.remove(entry.file);
+            return;
+        }
+
+        /* Checks if the image has any tags.*/
+        if (entry.file.getName().indexOf('@') >= 0) {
+            this.imageFileManager.addDirectoryFile(entry.file);
+        }
+        sink.accept(entry.file);
+    }
+
+    /**
+     * Helper that reads an entry of a directory: the entries of a directory, or the header of an image
+     * file, only if it is new or has changed since it was last read. Run in the background.
+     */
+    private Entry read(Path path, Set<Object> ancestors) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return Entry.NONE;
+        }
+        if (attributes.isDirectory()) {
+            return this.readDirectory(path, attributes.fileKey(), ancestors);
+        }
+        String name = path.getFileName().toString();
+        if (!attributes.isRegularFile() || !hasImageExtension(name)) {
+            return Entry.NONE;
+        }
+        File file = path.toFile();
+        long length = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (this.headerIndex.get(file, length, lastModified) != null) {
+            return new Entry(file, true, null, null, null);
+        }
+        HeaderProbe headerProbe = this.headerProbes.poll();
+        if (headerProbe == null) {
+            headerProbe = new HeaderProbe();
+        }
+        try {
+            ImageHeader header = headerProbe.probe(file, length, lastModified);
+            return new Entry(file, header != null, header, null, null);
+        } catch (IOException e) {
+            /* A file that cannot be read right now, such as on a share that is briefly unreachable, is still
+             * listed, and keeps any header known for it. */
+            return new Entry(file, true, null, null, null);
+        } finally {
+            this.headerProbes.add(headerProbe);
+        }
+    }
+
+    /**
+     * Helper that lists the entries of a directory, unless it is one of the directories being walked,
+     * reached again through a link.
+     */
+    private Entry readDirectory(Path path, Object fileKey, Set<Object> ancestors) {
+        if (fileKey != null && ancestors.contains(fileKey)) {
+            return Entry.NONE;
+        }
+        Set<Object> innerAncestors = new HashSet<>(ancestors);
+        innerAncestors.add(fileKey);
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            /* Only the entries read before the error are walked. */
+        }
+        return new Entry(null, false, null, children, innerAncestors);
+    }
+
+    /**
+     * Helper that waits for an entry being read. An entry whose reading failed, or was interrupted, is skipped.
+     */
+    private Entry await(Future<Entry> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+        return Entry.NONE;
+    }
+
+    /**
+     * An entry of a directory that was read: either a directory and its entries, or an image file and
+     * whether it is listed, or neither.
+     */
+    private static class Entry {
+
+        static final Entry NONE = new Entry(null, false, null, null, null);
+
+        /* The image file, or null. */
+        final File file;
+        /* Whether the image file is listed: its header is that of a valid image, or it could not be read. */
+        final boolean isValid;
+        /* The header of the image file, if it was read again, or null. */
+        final ImageHeader header;
+        /* The entries of the directory, or null. */
+        final List<Path> children;
+        /* The file keys of the directory and of the directories it is in, down from the one walked. */
+        final Set<Object> ancestors;
+
+        Entry(File file, boolean isValid, ImageHeader header, List<Path> children, Set<Object> ancestors) {
+            this.file = file;
+            this.isValid = isValid;
+            this.header = header;
+            this.children = children;
+            this.ancestors = ancestors;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package Core;
+
+import Images.ImageMetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Reads when an image was taken, with which camera, and its orientation, from its EXIF data, or its
+ * XMP data when there is no EXIF data. Only the metadata is read: the APP1 segments at the start of
+ * a JPEG image, and the first directory of a TIFF image with its EXIF directory. The image itself
+ * is never read or decoded.
+ *
+ * Not thread safe: each thread needs its own ExifReader.
+ */
+class ExifReader {
+
+    /* The number of bytes read at once. APP1 segments are at most this long. */
+    private static final int BLOCK_SIZE = 65536;
+    /* The largest number of JPEG segments skipped while looking for metadata. */
+    private static final int MAX_JPEG_SEGMENTS = 64;
+    /* The largest number of entries read from a TIFF directory. */
+    private static final int MAX_TIFF_ENTRIES = 512;
+    /* The longest text read from a TIFF entry. */
+    private static final int MAX_TEXT_LENGTH = 256;
+
+    /* The EXIF TIFF tags read. */
+    private static final int MAKE = 0x010F;
+    private static final int MODEL = 0x0110;
+    private static final int ORIENTATION = 0x0112;
+    private static final int DATE_TIME = 0x0132;
+    private static final int EXIF_IFD = 0x8769;
+    private static final int DATE_TIME_ORIGINAL = 0x9003;
+
+    /* The headers of the APP1 segments holding EXIF and XMP data. */
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] XMP_HEADER = "http://ns.adobe.com/xap/1.0/\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    /* How dates are written in EXIF data. */
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    /* The bytes read from the file being read. */
+    private final ByteBuffer buffer;
+    /* The file being read. */
+    private FileChannel channel;
+    /* The position in the file of the first byte of the buffer. */
+    private long bufferStart;
+
+    /* The metadata found so far in the file being read. */
+    private long captureTime;
+    private long modifiedTime;
+    private String make;
+    private String model;
+    private int orientation;
+
+    ExifReader() {
+        this.buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+    }
+
+    /**
+     * Reads the metadata of an image file.
+     *
+     * @param file: The image file.
+     * @return Its metadata, with unknown values for anything not found, or null if it could not be read.
+     */
+    ImageMetadata read(File file) {
+        this.captureTime = 0;
+        this.modifiedTime = 0;
+        this.make = null;
+        this.model = null;
+        this.orientation = 0;
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.channel = fileChannel;
+            this.buffer.order(ByteOrder.BIG_ENDIAN);
+            this.buffer.limit(0);
+            if (!this.fill(0, 4)) {
+                return null;
+            }
+            int b0 = this.buffer.get(0) & 0xFF;
+            int b1 = this.buffer.get(1) & 0xFF;
+            if (b0 == 0xFF && b1 == 0xD8) {
+                this.readJpeg();
+            } else if ((b0 == 'I' && b1 == 'I') || (b0 == 'M' && b1 == 'M')) {
+                this.readTiff(0);
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            this.channel = null;
+        }
+        String camera;
+        if (this.make == null || this.model == null) {
+            camera = this.make == null ? this.model : this.make;
+        } else {
+            /* Most models already start with the make, such as "Canon EOS 5D". */
+            camera = this.model.startsWith(this.make) ? this.model : this.make + " " + this.model;
+        }
+        return new ImageMetadata(this.captureTime != 0 ? this.captureTime : this.modifiedTime, camera, this.orientation);
+    }
+
+    /**
+     * Helper that reads the EXIF and XMP data of the APP1 segments of a JPEG image, which come before its image data.
+     */
+    private void readJpeg() throws IOException {
+        long position = 2;
+        for (int segments = 0; segments < MAX_JPEG_SEGMENTS; segments++) {
+            this.buffer.order(ByteOrder.BIG_ENDIAN);
+            if (!this.fill(position, 4)) {
+                return;
+            }
+            int offset = (int) (position - this.bufferStart);
+            int marker = this.buffer.get(offset + 1) & 0xFF;
+            if ((this.buffer.get(offset) & 0xFF) != 0xFF || marker == 0xDA || marker == 0xD9) {
+                /* Not a segment, or the image data has started. */
+                return;
+            }
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                position += 2;
+                continue;
+            }
+            int length = this.buffer.getShort(offset + 2) & 0xFFFF;
+            if (length < 2) {
+                return;
+            }
+            if (marker == 0xE1) {
+                long data = position + 4;
+                if (this.startsWith(data, EXIF_HEADER)) {
+                    this.readTiff(data + EXIF_HEADER.length);
+                } else if (this.captureTime == 0 && this.startsWith(data, XMP_HEADER)) {
+                    this.readXmp(data + XMP_HEADER.length, length - 2 - XMP_HEADER.length);
+                }
+            }
+            position += 2 + length;
+        }
+    }
+
+    /**
+     * Helper that reads the first directory of TIFF data, and its EXIF directory.
+     *
+     * @param base: The position of the TIFF data in the file, which all of its offsets are from.
+     */
+    private void readTiff(long base) throws IOException {
+        if (!this.fill(base, 8)) {
+            return;
+        }
+        int offset = (int) (base - this.bufferStart);
+        this.buffer.order(this.buffer.get(offset) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        if (this.buffer.getShort(offset + 2) != 42) {
+            return;
+        }
+        long exifDirectory = this.readDirectory(base, this.buffer.getInt(offset + 4) & 0xFFFFFFFFL);
+        if (exifDirectory > 0) {
+            this.readDirectory(base, exifDirectory);
+        }
+    }
+
+    /**
+     * Helper that reads the entries of a TIFF directory.
+     *
+     * @return The offset of the EXIF directory, if this directory points to one, or 0.
+     */
+    private long readDirectory(long base, long directory) throws IOException {
+        long exifDirectory = 0;
+        if (directory < 8 || !this.fill(base + directory, 2)) {
+            return 0;
+        }
+        int entries = Math.min(this.buffer.getShort((int) (base + directory - this.bufferStart)) & 0xFFFF,
+                MAX_TIFF_ENTRIES);
+        for (int i = 0; i < entries; i++) {
+            long entry = base + directory + 2 + 12L * i;
+            if (!this.fill(entry, 12)) {
+                break;
+            }
+            int offset = (int) (entry - this.bufferStart);
+            int tag = this.buffer.getShort(offset) & 0xFFFF;
+            int type = this.buffer.getShort(offset + 2) & 0xFFFF;
+            int count = this.buffer.getInt(offset + 4);
+            long value = this.buffer.getInt(offset + 8) & 0xFFFFFFFFL;
+            switch (tag) {
+                case MAKE:
+                    this.make = this.readText(base, entry, count);
+                    break;
+                case MODEL:
+                    this.model = this.readText(base, entry, count);
+                    break;
+                case ORIENTATION:
+                    this.orientation = type == 3 ? this.buffer.getShort(offset + 8) & 0xFFFF : (int) value;
+                    break;
+                case DATE_TIME:
+                    this.modifiedTime = parseTime(this.readText(base, entry, count), EXIF_DATE);
+                    break;
+                case DATE_TIME_ORIGINAL:
+                    this.captureTime = parseTime(this.readText(base, entry, count), EXIF_DATE);
+                    break;
+                case EXIF_IFD:
+                    exifDirectory = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return exifDirectory;
+    }
+
+    /**
+     * Helper that reads the text of an ASCII TIFF entry, stored within the entry if it is at most 4 bytes long.
+     */
+    private String readText(long base, long entry, int count) throws IOException {
+        int length = Math.min(count, MAX_TEXT_LENGTH);
+        if (length <= 0) {
+            return null;
+        }
+        long position = entry + 8;
+        if (count > 4) {
+            if (!this.fill(entry, 12)) {
+                return null;
+            }
+            position = base + (this.buffer.getInt((int) (entry + 8 - this.bufferStart)) & 0xFFFFFFFFL);
+        }
+        if (!this.fill(position, length)) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        this.buffer.get((int) (position - this.bufferStart), bytes);
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int end = text.indexOf('\0');
+        text = (end == -1 ? text : text.substring(0, end)).trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * Helper that reads the values not found in the EXIF data from an XMP packet.
+     */
+    private void readXmp(long position, int length) throws IOException {
+        length = Math.min(length, BLOCK_SIZE);
+        if (length <= 0 || !this.fill(position, length)) {
+            return;
+        }
+        byte[] bytes = new byte[length];
+        this.buffer.get((int) (position - this.bufferStart), bytes);
+        String xmp = new String(bytes, StandardCharsets.UTF_8);
+        if (this.captureTime == 0) {
+            String date = xmpValue(xmp, "exif:DateTimeOriginal");
+            this.captureTime = parseTime(date != null ? date : xmpValue(xmp, "xmp:CreateDate"),
+                    DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+        if (this.make == null) {
+            this.make = xmpValue(xmp, "tiff:Make");
+        }
+        if (this.model == null) {
+            this.model = xmpValue(xmp, "tiff:Model");
+        }
+        if (this.orientation == 0) {
+            String value = xmpValue(xmp, "tiff:Orientation");
+            try {
+                this.orientation = value == null ? 0 : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                this.orientation = 0;
+            }
+        }
+    }
+
+    /**
+     * Helper that returns the value of an XMP property, written either as an attribute or as an element.
+     */
+    private static String xmpValue(String xmp, String name) {
+        int start = xmp.indexOf(name + "=\"");
+        if (start != -1) {
+            start += name.length() + 2;
+            int end = xmp.indexOf('"', start);
+            return end == -1 ? null : xmp.substring(start, end).trim();
+        }
+        start = xmp.indexOf("<" + name + ">");
+        if (start != -1) {
+            start += name.length() + 2;
+            int end = xmp.indexOf('<', start);
+            return end == -1 ? null : xmp.substring(start, end).trim();
+        }
+        return null;
+    }
+
+    /**
+     * Helper that returns a date and time in milliseconds since the epoch in the local time zone, or 0 if
+     * it is not a valid date. Only the date and the time of day are read, without any fractions or time zone.
+     */
+    private static long parseTime(String text, DateTimeFormatter format) {
+        if (text == null || text.length() < 19) {
+            return 0;
+        }
+        try {
+            return LocalDateTime.parse(text.substring(0, 19), format).atZone(ZoneId.systemDefault())
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Helper that returns whether some bytes of the file are the given bytes.
+     */
+    private boolean startsWith(long position, byte[] bytes) throws IOException {
+        if (!this.fill(position, bytes.length)) {
+            return false;
+        }
+        int offset = (int) (position - this.bufferStart);
+        for (int i = 0; i < bytes.length; i++) {
+            if (this.buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper that makes sure the buffer holds some bytes of the file, reading the block starting at a
+     * position if they are not there already.
+     *
+     * @return Whether the file has all of these bytes.
+     */
+    private boolean fill(long position, int count) throws IOException {
+        if (this.bufferStart > position || this.bufferStart + this.buffer.limit() < position + count) {
+            ByteOrder order = this.buffer.order();
+            this.buffer.clear();
+            this.bufferStart = position;
+            while (this.buffer.hasRemaining() && this.channel.read(this.buffer, position + this.buffer.position()) > 0) {
+                /* Reads until the buffer is full or the file ends. */
+            }
+            this.buffer.flip();
+            this.buffer.order(order);
+        }
+        return this.buffer.limit() >= position - this.bufferStart + count;
+    }
+}
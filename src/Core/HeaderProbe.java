@@ -0,0 +1,203 @@
+package Core;
+
+import Images.ImageHeader;
+import Images.ImageHeader.Format;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the header of an image file to check that it really is a JPEG, PNG, BMP, GIF or TIFF image,
+ * whatever its extension, and to find its dimensions without decoding it. Only the first few KB of
+ * the file are read, into a direct buffer re-used for every file, plus the few blocks further in
+ * that some formats point to, such as the frame header of a JPEG image after its metadata.
+ *
+ * Not thread safe: each thread needs its own HeaderProbe.
+ */
+class HeaderProbe {
+
+    /* The number of bytes read from the start of every file. */
+    private static final int BLOCK_SIZE = 4096;
+    /* The largest number of JPEG segments skipped while looking for the frame header. */
+    private static final int MAX_JPEG_SEGMENTS = 256;
+    /* The largest number of entries read from a TIFF directory. */
+    private static final int MAX_TIFF_ENTRIES = 512;
+
+    /* The bytes read from the file being probed. */
+    private final ByteBuffer buffer;
+    /* The file being probed. */
+    private FileChannel channel;
+    /* The position in the file of the first byte of the buffer. */
+    private long bufferStart;
+
+    HeaderProbe() {
+        this.buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+    }
+
+    /**
+     * Reads the header of an image file.
+     *
+     * @param file: The file being probed.
+     * @param length: The size of the file in bytes.
+     * @param lastModified: When the file was last modified.
+     * @return The header of this file, or null if it was read but is not a valid image.
+     * @throws IOException if the file could not be read, which says nothing of whether it is an image.
+     */
+    ImageHeader probe(File file, long length, long lastModified) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            this.channel = fileChannel;
+            this.buffer.order(ByteOrder.BIG_ENDIAN);
+            this.buffer.limit(0);
+            if (!this.fill(0, 26)) {
+                return null;
+            }
+            int[] dimensions = new int[2];
+            Format format = this.probeFormat(dimensions);
+            return format == null ? null
+                    : new ImageHeader(file, length, lastModified, format, dimensions[0], dimensions[1]);
+        } catch (RuntimeException e) {
+            /* Thrown while reading malformed headers, such as a dimension past the end of the buffer. */
+            return null;
+        } finally {
+            this.channel = null;
+        }
+    }
+
+    /**
+     * Helper that recognizes the format of the image from its magic bytes, and reads its dimensions.
+     */
+    private Format probeFormat(int[] dimensions) throws IOException {
+        ByteBuffer b = this.buffer;
+        int b0 = b.get(0) & 0xFF;
+        int b1 = b.get(1) & 0xFF;
+        if (b0 == 0xFF && b1 == 0xD8 && (b.get(2) & 0xFF) == 0xFF) {
+            return this.probeJpeg(dimensions) ? Format.JPEG : null;
+        } else if (b0 == 0x89 && b.getLong(0) == 0x89504E470D0A1A0AL) {
+            /* The IHDR chunk always comes first. */
+            if (b.getInt(12) != 0x49484452) {
+                return null;
+            }
+            dimensions[0] = b.getInt(16);
+            dimensions[1] = b.getInt(20);
+            return Format.PNG;
+        } else if (b0 == 'G' && b1 == 'I' && b.get(2) == 'F' && b.get(3) == '8'
+                && (b.get(4) == '7' || b.get(4) == '9') && b.get(5) == 'a') {
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            dimensions[0] = b.getShort(6) & 0xFFFF;
+            dimensions[1] = b.getShort(8) & 0xFFFF;
+            return Format.GIF;
+        } else if (b0 == 'B' && b1 == 'M') {
+            b.order(ByteOrder.LITTLE_ENDIAN);
+            int headerSize = b.getInt(14);
+            if (headerSize == 12) {
+                dimensions[0] = b.getShort(18) & 0xFFFF;
+                dimensions[1] = b.getShort(20) & 0xFFFF;
+            } else if (headerSize >= 40) {
+                dimensions[0] = Math.abs(b.getInt(18));
+                /* The height is negative for images stored top to bottom. */
+                dimensions[1] = Math.abs(b.getInt(22));
+            } else {
+                return null;
+            }
+            return Format.BMP;
+        } else if ((b0 == 'I' && b1 == 'I') || (b0 == 'M' && b1 == 'M')) {
+            b.order(b0 == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+            if (b.getShort(2) != 42) {
+                return null;
+            }
+            return this.probeTiff(b.getInt(4) & 0xFFFFFFFFL, dimensions) ? Format.TIFF : null;
+        }
+        return null;
+    }
+
+    /**
+     * Helper that walks the segments of a JPEG image up to its frame header, which gives its dimensions.
+     */
+    private boolean probeJpeg(int[] dimensions) throws IOException {
+        long position = 2;
+        for (int segments = 0; segments < MAX_JPEG_SEGMENTS; segments++) {
+            if (!this.fill(position, 9)) {
+                return false;
+            }
+            int offset = (int) (position - this.bufferStart);
+            if ((this.buffer.get(offset) & 0xFF) != 0xFF) {
+                return false;
+            }
+            int marker = this.buffer.get(offset + 1) & 0xFF;
+            if (marker == 0xFF) {
+                /* A fill byte. */
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                /* A marker without a segment. */
+                position += 2;
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                /* The image data or the end of the image, before any frame header. */
+                return false;
+            }
+            int segmentLength = this.buffer.getShort(offset + 2) & 0xFFFF;
+            if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                dimensions[1] = this.buffer.getShort(offset + 5) & 0xFFFF;
+                dimensions[0] = this.buffer.getShort(offset + 7) & 0xFFFF;
+                return true;
+            }
+            if (segmentLength < 2) {
+                return false;
+            }
+            position += 2 + segmentLength;
+        }
+        return false;
+    }
+
+    /**
+     * Helper that reads the width and height of a TIFF image from the entries of its first directory.
+     */
+    private boolean probeTiff(long directory, int[] dimensions) throws IOException {
+        if (directory < 8 || !this.fill(directory, 2)) {
+            return false;
+        }
+        int entries = Math.min(this.buffer.getShort((int) (directory - this.bufferStart)) & 0xFFFF, MAX_TIFF_ENTRIES);
+        for (int i = 0; i < entries; i++) {
+            long entry = directory + 2 + 12L * i;
+            if (!this.fill(entry, 12)) {
+                return false;
+            }
+            int offset = (int) (entry - this.bufferStart);
+            int tag = this.buffer.getShort(offset) & 0xFFFF;
+            int type = this.buffer.getShort(offset + 2) & 0xFFFF;
+            if (tag == 256 || tag == 257) {
+                /* A SHORT value is stored in the first two bytes of the value field, a LONG in all four. */
+                int value = type == 3 ? this.buffer.getShort(offset + 8) & 0xFFFF : this.buffer.getInt(offset + 8);
+                dimensions[tag == 256 ? 0 : 1] = value;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper that makes sure the buffer holds some bytes of the file, reading the block starting at a
+     * position if they are not there already.
+     *
+     * @return Whether the file has all of these bytes.
+     */
+    private boolean fill(long position, int count) throws IOException {
+        if (this.bufferStart > position || this.bufferStart + this.buffer.limit() < position + count) {
+            ByteOrder order = this.buffer.order();
+            this.buffer.clear();
+            this.bufferStart = position;
+            while (this.buffer.hasRemaining() && this.channel.read(this.buffer, position + this.buffer.position()) > 0) {
+                /* Reads until the buffer is full or the file ends. */
+            }
+            this.buffer.flip();
+            this.buffer.order(order);
+        }
+        return this.buffer.limit() >= position - this.bufferStart + count;
+    }
+}
@@ -0,0 +1,650 @@
+package Core;
+
+import Application.SaveOperation;
+import Diagnostics.Metrics;
+import Images.GatheredFiles;
+import Images.ImageFileHistoryManager;
+import Images.ImageFileManager;
+import Images.ImageHeader;
+import Images.TagStorage;
+import Search.TagQuery;
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * The headless core of the application: all ImageFile, Tag and history data, how it is saved,
+ * and the scanning of directories. Does not depend on JavaFX, so it can be used by the desktop
+ * application as well as by batch jobs running without a display.
+ *
+ * ImageFiles are split into shards, one per library root: each directory opened by the user becomes a
+ * root, unless it is within one already. A shard is only read from its save files when a file within
+ * its root is first needed, and queries over several roots run on all of their shards in parallel.
+ */
+public class ImageLibrary {
+
+    /* Management of all data. */
+    private ImageFileHistoryManager masterLog;
+    private TagManager tagManager;
+
+    /* Holds the ImageFiles outside of every root. */
+    private LibraryShard defaultShard;
+    /* The shard of every root, none of them within another. Guarded by this. */
+    private ArrayList<LibraryShard> rootShards;
+    /* Written while roots are added, merged or moved, which read and re-index whole shards, so that these
+     * only hold this library's lock to swap the shards in and out, not while they touch the disk. Read
+     * while a single file is moved within a shard, so that such moves run at once. */
+    private final ReentrantReadWriteLock rootChanges;
+    /* The shard of the directory last scanned. */
+    private volatile LibraryShard currentShard;
+    /* Where the tags of ImageFiles are kept when they change, in every shard. */
+    private TagStorage tagStorage;
+    /* Runs queries on several shards at once. */
+    private ExecutorService queryExecutor;
+
+    /* The folder containing this library's save files. */
+    private File dataDir;
+    /* Used to save and store the path of every root. */
+    private SaveOperation<String> rootSave;
+
+    /* File names for saving. */
+    private String logSaveFileName;
+    private String rootSaveFileName;
+
+    /**
+     * Constructs an empty ImageLibrary, saved in the given folder.
+     *
+     * @param dataDir: The folder containing this library's save files.
+     */
+    public ImageLibrary(File dataDir) {
+        this.masterLog = new ImageFileHistoryManager();
+        this.tagManager = new TagManager();
+        this.dataDir = dataDir;
+        this.defaultShard = new LibraryShard(null, dataDir, this.tagManager, this.masterLog);
+        this.rootShards = new ArrayList<>();
+        this.rootChanges = new ReentrantReadWriteLock();
+        this.currentShard = this.defaultShard;
+        this.tagStorage = TagStorage.FILE_NAME;
+        this.queryExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rootSave = new SaveOperation<>(new ArrayList<>());
+        this.logSaveFileName = dataDir.getPath() + File.separator + "serializedLogData.ser";
+        this.rootSaveFileName = dataDir.getPath() + File.separator + "serializedRootData.ser";
+    }
+
+    /**
+     * @return the ImageFileManager of the root of the directory last scanned.
+     */
+    public ImageFileManager getImageFileManager() {
+        LibraryShard shard = this.currentShard;
+        shard.ensureLoaded();
+        return shard.getImageFileManager();
+    }
+
+    /**
+     * Returns the ImageFileManager responsible for a file, reading its shard if it was not read yet.
+     *
+     * @param file: A file, or null for the ImageFileManager of the directory last scanned.
+     * @return the ImageFileManager of the root containing this file.
+     */
+    public ImageFileManager getImageFileManager(File file) {
+        if (file == null) {
+            return this.getImageFileManager();
+        }
+        LibraryShard shard = this.shardOf(file);
+        shard.ensureLoaded();
+        return shard.getImageFileManager();
+    }
+
+    /**
+     * @return the TagManager responsible for all Tag data.
+     */
+    public TagManager getTagManager() {
+        return this.tagManager;
+    }
+
+    /**
+     * @return the ImageFileHistoryManager logging all tagging.
+     */
+    public ImageFileHistoryManager getMasterLog() {
+        return this.masterLog;
+    }
+
+    public TagStorage getTagStorage() {
+        return this.tagStorage;
+    }
+
+    /**
+     * Sets where the tags of ImageFiles are kept from now on, in every root.
+     *
+     * @param tagStorage: Where the tags of ImageFiles are kept when they change.
+     */
+    public synchronized void setTagStorage(TagStorage tagStorage) {
+        this.tagStorage = tagStorage;
+        this.defaultShard.setTagStorage(tagStorage);
+        for (LibraryShard shard : this.rootShards) {
+            shard.setTagStorage(tagStorage);
+        }
+    }
+
+    /**
+     * @return The directory of every root, in the order they were opened.
+     */
+    public synchronized List<File> getRoots() {
+        List<File> roots = new ArrayList<>();
+        for (LibraryShard shard : this.rootShards) {
+            roots.add(shard.getRoot());
+        }
+        return roots;
+    }
+
+    /**
+     * Returns the format and dimensions of an image file, as read from its header the last time a directory
+     * containing it was scanned.
+     *
+     * @param file: The image file.
+     * @return The header of this file, or null if it was never read.
+     */
+    public ImageHeader getHeader(File file) {
+        LibraryShard shard = this.shardOf(file);
+        shard.ensureLoaded();
+        return shard.getHeaderIndex().get(shard.getImageFileManager().getFileOnDisk(file));
+    }
+
+    /**
+     * Returns where a file is on disk, which is not where it is seen by the user while its ImageFile waits
+     * to be renamed to its tagged name.
+     *
+     * @param file: The location of a file, as seen by the user.
+     * @return Where this file is on disk.
+     */
+    public File getFileOnDisk(File file) {
+        return this.getImageFileManager(file).getFileOnDisk(file);
+    }
+
+    /**
+     * Reads the history and the list of roots from this library's save files, as well as the ImageFiles
+     * outside of every root, creating the save files if they do not exist yet. The shard of each root is
+     * only read once it is needed.
+     */
+    public void load() {
+        this.masterLog.readFromFile(this.logSaveFileName);
+        this.rootSave.readFromFile(this.rootSaveFileName);
+        List<LibraryShard> replaced;
+        synchronized (this) {
+            replaced = new ArrayList<>(this.rootShards);
+            this.rootShards.clear();
+            for (String root : this.rootSave.getData()) {
+                LibraryShard shard = new LibraryShard(new File(root), this.dataDir, this.tagManager, this.masterLog);
+                shard.setTagStorage(this.tagStorage);
+                this.rootShards.add(shard);
+            }
+            this.currentShard = this.defaultShard;
+        }
+        for (LibraryShard shard : replaced) {
+            shard.close();
+        }
+        this.defaultShard.load();
+        this.saveToFiles();
+    }
+
+    /**
+     * Saves the current state of this library: the history, the list of roots, and every shard read so far.
+     */
+    public void saveToFiles() {
+        long start = Metrics.SAVE_TO_FILES.start();
+        this.masterLog.saveToFile(this.logSaveFileName);
+        for (LibraryShard shard : this.allShards()) {
+            shard.save();
+        }
+        this.saveRootList();
+        Metrics.SAVE_TO_FILES.stop(start);
+    }
+
+    /**
+     * Helper that saves the list of roots as it is in rootShards.
+     */
+    private synchronized void saveRootList() {
+        ArrayList<String> roots = this.rootSave.getData();
+        roots.clear();
+        for (LibraryShard shard : this.rootShards) {
+            roots.add(shard.getRoot().getPath());
+        }
+        this.rootSave.saveToFile(this.rootSaveFileName);
+    }
+
+    /**
+     * Renames the files of all ImageFiles still waiting to be renamed to their tagged names right away,
+     * such as before the application stops.
+     */
+    public void writePendingNames() {
+        for (LibraryShard shard : this.allShards()) {
+            /* Null if the shard was never read, or was closed since. */
+            ImageFileManager imageFileManager = shard.getImageFileManager();
+            if (imageFileManager != null) {
+                imageFileManager.writePendingNames();
+            }
+        }
+    }
+
+    /**
+     * Moves a file or directory to another directory, keeping its name. If a file with the same name
+     * already exists there, no changes are made. Otherwise it is moved, even to another volume, and the
+     * location of every ImageFile within it is updated. A file moved within the same root only touches
+     * the shard of this root, so that files can be moved from several threads at once.
+     *
+     * @param selectedFile The file or directory being moved.
+     * @param targetDir The directory it is moved to.
+     * @return The location of the file or directory after the move.
+     */
+    public File moveFile(File selectedFile, File targetDir) {
+        this.rootChanges.readLock().lock();
+        try {
+            LibraryShard shard = this.shardOf(selectedFile);
+            if (shard == this.shardOf(new File(targetDir, selectedFile.getName()))) {
+                shard.ensureLoaded();
+                File moved = this.moveWithin(shard.getImageFileManager(), selectedFile, targetDir);
+                if (moved != null) {
+                    return moved;
+                }
+            }
+        } finally {
+            this.rootChanges.readLock().unlock();
+        }
+        try {
+            Map<File, File> moved = this.moveFiles(Collections.singletonList(selectedFile), targetDir, 1).run(null);
+            return moved.isEmpty() ? selectedFile : moved.values().iterator().next();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return selectedFile;
+        }
+    }
+
+    /**
+     * Helper that moves a single file to another directory of the same shard, touching only this shard,
+     * unless it must be moved as a BulkMove: if it is a directory, or its file could not be renamed to its
+     * tagged name first.
+     *
+     * @return The location of the file after the move, the same if it could not be moved, or null if it
+     * must be moved as a BulkMove.
+     */
+    private File moveWithin(ImageFileManager imageFileManager, File selectedFile, File targetDir) {
+        /* The file must be at its tagged name on disk to be moved under it. */
+        imageFileManager.writePendingNamesAt(selectedFile);
+        if (!imageFileManager.getFileOnDisk(selectedFile).equals(selectedFile) || !selectedFile.isFile()) {
+            return null;
+        }
+        File destination = new File(targetDir, selectedFile.getName());
+        try {
+            /* Without REPLACE_EXISTING, this never replaces an existing file. */
+            Files.move(selectedFile.toPath(), destination.toPath());
+        } catch (IOException e) {
+            return selectedFile;
+        }
+        imageFileManager.updateMovedFiles(Collections.singletonMap(selectedFile, destination));
+        return destination;
+    }
+
+    /**
+     * Prepares the move of many files and directories to another directory, keeping their names, which
+     * starts once the returned BulkMove is run. Files whose name is already taken there, or by another of the
+     * files, are not moved.
+     *
+     * @param selectedFiles The files and directories being moved.
+     * @param targetDir The directory they are moved to.
+     * @param threads The number of files moved or copied at once.
+     * @return The move, to be run on any thread, and cancelled from any other.
+     */
+    public BulkMove moveFiles(List<File> selectedFiles, File targetDir, int threads) {
+        return new BulkMove(this, selectedFiles, targetDir, threads);
+    }
+
+    /**
+     * Writes the tags of every ImageFile within a directory in its file name, for libraries keeping tags
+     * out of file names.
+     *
+     * @param dir The directory whose ImageFiles are renamed, with its sub-directories; or null for all.
+     * @return The number of files renamed.
+     */
+    public int exportNames(File dir) {
+        int renamed = 0;
+        for (int count : this.fanOut(dir, shard -> shard.getImageFileManager().exportNames(dir))) {
+            renamed += count;
+        }
+        return renamed;
+    }
+
+    /**
+     * Returns a list of image files in a directory and all of its sub-directories, after opening the root
+     * containing it, which becomes a new root if there is none. Any of these
+     * files with pre-existing tags, in its name or in its attributes if tags are kept there, is added to
+     * the ImageFileManager of its root, and the metadata of its ImageFiles
+     * is then read in the background, to be searched with "taken:", "camera:" and "orientation:".
+     *
+     * @param currentDir The directory being looked through.
+     * @return A list of all image files within the directory.
+     */
+    public ArrayList<File> scanDirectory(File currentDir) {
+        LibraryShard shard = this.open(currentDir);
+        ImageFileManager imageFileManager = shard.getImageFileManager();
+        /* Files must be at their tagged names on disk to be found under them. */
+        imageFileManager.writePendingNames();
+        ArrayList<File> directoryFiles = shard.getDirectoryScanner().getDirectoryFiles(currentDir);
+        if (imageFileManager.getTagStorage() == TagStorage.ATTRIBUTE) {
+            imageFileManager.addAttributeFiles(currentDir, directoryFiles);
+        }
+        shard.getMetadataExtractor().extractUnder(currentDir);
+        return directoryFiles;
+    }
+
+    /**
+     * Returns the location of every ImageFile matching a tag query, such as "@beach & !@blurry".
+     *
+     * @param query The query, as written by the user.
+     * @param dir The only directory, with its sub-directories, in which files are searched; or null for all.
+     * @return A list of all matching files, root by root.
+     * @throws IllegalArgumentException if the query is not well formed.
+     */
+    public List<File> search(String query, File dir) {
+        TagQuery tagQuery = TagQuery.parse(query, this.tagManager);
+        return GatheredFiles.concat(this.fanOut(dir, shard -> {
+            ImageFileManager imageFileManager = shard.getImageFileManager();
+            return imageFileManager.gatherFiles(tagQuery.evaluate(imageFileManager), dir);
+        }));
+    }
+
+    /**
+     * Returns the location of every ImageFile carrying a set of tags.
+     *
+     * @param tags The tags being looked for.
+     * @param dir The only directory, with its sub-directories, in which files are searched; or null for all.
+     * @return A list of all matching files, root by root.
+     */
+    public List<File> gatherFilesWithTags(Tag[] tags, File dir) {
+        long start = Metrics.GATHER_FILES_WITH_TAGS.start();
+        try {
+            return GatheredFiles.concat(this.fanOut(dir,
+                    shard -> shard.getImageFileManager().gatherFilesWithTags(tags, dir, dir != null)));
+        } finally {
+            Metrics.GATHER_FILES_WITH_TAGS.stop(start);
+        }
+    }
+
+    /**
+     * Returns the id of every ImageFile within a directory, by its location. Each id is the id of the
+     * ImageFile within the ImageFileManager of its root; see getImageFileManager(File).
+     *
+     * @param dir The directory being looked through, or null for all ImageFiles.
+     * @return The id of the ImageFile of every file under this directory that is an ImageFile.
+     */
+    public HashMap<File, Integer> mapIdsUnder(File dir) {
+        HashMap<File, Integer> idsByFile = new HashMap<>();
+        for (HashMap<File, Integer> shardIds : this.fanOut(dir, shard -> shard.getImageFileManager().mapIdsUnder(dir))) {
+            idsByFile.putAll(shardIds);
+        }
+        return idsByFile;
+    }
+
+    /**
+     * Renames the files still waiting to be renamed to their tagged names right away, for the ImageFiles at
+     * or within some locations only, such as before these are moved.
+     *
+     * @param locations: The files or directories whose ImageFiles are renamed.
+     */
+    void writePendingNamesAt(List<File> locations) {
+        for (File location : locations) {
+            for (LibraryShard shard : this.shardsOverlapping(location)) {
+                /* Null if the shard was never read, in which case none of its files wait. */
+                ImageFileManager imageFileManager = shard.getImageFileManager();
+                if (imageFileManager != null) {
+                    imageFileManager.writePendingNamesAt(location);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the location of every ImageFile within files or directories that were moved, in every root,
+     * and moves those now within another root to the shard of that root. A root that was moved along with
+     * a directory stops being a root, its ImageFiles joining the shard of their new location.
+     *
+     * @param moved: The location of every moved file or directory, by its location before the move.
+     */
+    void updateMovedFiles(Map<File, File> moved) {
+        this.rootChanges.writeLock().lock();
+        try {
+            this.updateMovedShards(moved);
+        } finally {
+            this.rootChanges.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Helper that updates the location of every moved ImageFile, holding this library's lock only while
+     * moved roots are taken out.
+     */
+    private void updateMovedShards(Map<File, File> moved) {
+        List<LibraryShard> involved = new ArrayList<>();
+        List<LibraryShard> movedRoots = new ArrayList<>();
+        synchronized (this) {
+            for (File source : moved.keySet()) {
+                LibraryShard shard = this.shardOf(source);
+                if (!involved.contains(shard)) {
+                    involved.add(shard);
+                }
+                for (LibraryShard rootShard : this.rootShards) {
+                    if (rootShard.isUnder(source) && !movedRoots.contains(rootShard)) {
+                        movedRoots.add(rootShard);
+                    }
+                }
+            }
+            this.rootShards.removeAll(movedRoots);
+            if (movedRoots.contains(this.currentShard)) {
+                this.currentShard = this.defaultShard;
+            }
+        }
+        involved.addAll(movedRoots);
+        for (LibraryShard shard : involved) {
+            shard.ensureLoaded();
+        }
+        List<LibraryShard> shards = this.allShards();
+        shards.addAll(movedRoots);
+        for (LibraryShard shard : shards) {
+            if (shard.isLoaded()) {
+                shard.getImageFileManager().updateMovedFiles(moved);
+            }
+        }
+        for (File destination : moved.values()) {
+            LibraryShard target = this.shardOf(destination);
+            target.ensureLoaded();
+            for (LibraryShard shard : shards) {
+                if (shard != target && shard.isLoaded()) {
+                    shard.getImageFileManager().transferUnder(destination, target.getImageFileManager());
+                }
+            }
+        }
+        if (!movedRoots.isEmpty()) {
+            /* The ImageFiles of the moved roots only live on in the shards they were moved to until these are saved. */
+            for (LibraryShard shard : this.allShards()) {
+                shard.save();
+            }
+            this.saveRootList();
+        }
+        for (LibraryShard shard : movedRoots) {
+            this.retire(shard);
+        }
+    }
+
+    /**
+     * Helper that returns the shard of the root containing a directory, after reading it. If there is no
+     * such root, the directory becomes one: the ImageFiles within it are moved to its new shard, from the
+     * default shard and from the shards of the roots within it, which stop being roots.
+     */
+    private LibraryShard open(File dir) {
+        LibraryShard shard = this.findRootShard(dir);
+        if (shard == null) {
+            this.rootChanges.writeLock().lock();
+            try {
+                shard = this.findRootShard(dir);
+                if (shard == null) {
+                    shard = this.addRoot(dir);
+                }
+            } finally {
+                this.rootChanges.writeLock().unlock();
+            }
+        }
+        shard.ensureLoaded();
+        this.currentShard = shard;
+        return shard;
+    }
+
+    /**
+     * Helper that makes a directory a root, moving the ImageFiles within it to its new shard. The shard is
+     * read and filled before it is swapped in, so that this library's lock is not held while it is.
+     */
+    private LibraryShard addRoot(File dir) {
+        LibraryShard shard = new LibraryShard(dir.getAbsoluteFile(), this.dataDir, this.tagManager, this.masterLog);
+        shard.setTagStorage(this.tagStorage);
+        /* A new root starts empty, even if save files of an earlier root of the same directory remain. */
+        shard.delete();
+        shard.load();
+        List<LibraryShard> nested = new ArrayList<>();
+        synchronized (this) {
+            for (LibraryShard rootShard : this.rootShards) {
+                if (rootShard.isUnder(dir)) {
+                    nested.add(rootShard);
+                }
+            }
+        }
+        for (LibraryShard rootShard : nested) {
+            rootShard.ensureLoaded();
+            rootShard.getImageFileManager().transferUnder(rootShard.getRoot(), shard.getImageFileManager());
+        }
+        this.defaultShard.ensureLoaded();
+        this.defaultShard.getImageFileManager().transferUnder(dir, shard.getImageFileManager());
+        synchronized (this) {
+            this.rootShards.removeAll(nested);
+            this.rootShards.add(shard);
+        }
+        /* Saved before the save files of the nested roots are deleted, so that a crash cannot lose their ImageFiles. */
+        shard.save();
+        this.defaultShard.save();
+        this.saveRootList();
+        for (LibraryShard rootShard : nested) {
+            this.retire(rootShard);
+        }
+        return shard;
+    }
+
+    /**
+     * Helper that stops a shard that is no longer used, once it is out of rootShards, and deletes its save files.
+     * The shards its ImageFiles were moved to and the list of roots must be saved first.
+     */
+    private void retire(LibraryShard shard) {
+        shard.close();
+        shard.delete();
+    }
+
+    /**
+     * Helper that returns the shard of the root containing a file, or the default shard if there is none.
+     */
+    private synchronized LibraryShard shardOf(File file) {
+        LibraryShard shard = this.findRootShard(file);
+        return shard == null ? this.defaultShard : shard;
+    }
+
+    /**
+     * Helper that returns the shard of the root containing a file, or null if there is none.
+     */
+    private synchronized LibraryShard findRootShard(File file) {
+        for (LibraryShard shard : this.rootShards) {
+            if (shard.contains(file)) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper that returns the default shard followed by the shard of every root.
+     */
+    private synchronized List<LibraryShard> allShards() {
+        List<LibraryShard> shards = new ArrayList<>();
+        shards.add(this.defaultShard);
+        shards.addAll(this.rootShards);
+        return shards;
+    }
+
+    /**
+     * Helper that returns the shards which may hold ImageFiles within a directory: the shard of the root
+     * containing it, or else the default shard and those of all roots within it.
+     */
+    private synchronized List<LibraryShard> shardsOverlapping(File dir) {
+        if (dir == null) {
+            return this.allShards();
+        }
+        LibraryShard containing = this.findRootShard(dir);
+        if (containing != null) {
+            return Collections.singletonList(containing);
+        }
+        List<LibraryShard> shards = new ArrayList<>();
+        shards.add(this.defaultShard);
+        for (LibraryShard shard : this.rootShards) {
+            if (shard.isUnder(dir)) {
+                shards.add(shard);
+            }
+        }
+        return shards;
+    }
+
+    /**
+     * Helper that runs a query on every shard which may hold ImageFiles within a directory, reading those
+     * not read yet, all at once on the query pool; and returns their results in the order of the shards.
+     */
+    private <T> List<T> fanOut(File dir, Function<LibraryShard, T> query) {
+        List<LibraryShard> shards = this.shardsOverlapping(dir);
+        if (shards.size() == 1) {
+            shards.get(0).ensureLoaded();
+            return Collections.singletonList(query.apply(shards.get(0)));
+        }
+        List<Future<T>> futures = new ArrayList<>();
+        for (LibraryShard shard : shards) {
+            futures.add(this.queryExecutor.submit(() -> {
+                shard.ensureLoaded();
+                return query.apply(shard);
+            }));
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying the library", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+}
@@ -0,0 +1,203 @@
+package Core;
+
+import IO.IoScheduler;
+import Images.HeaderIndex;
+import Images.ImageFileHistoryManager;
+import Images.ImageFileManager;
+import Images.TagStorage;
+import Tags.TagManager;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * The part of an ImageLibrary holding the ImageFiles within one library root: a directory opened by
+ * the user, with its sub-directories. Each shard has its own index and save files, and is only read
+ * from them the first time it is needed, so that opening a library does not read the data of every
+ * root. All shards share the library's TagManager and history.
+ *
+ * The default shard has no root, and holds the ImageFiles outside of every root, such as those saved
+ * before libraries were split into roots.
+ */
+class LibraryShard {
+
+    /* The directory whose ImageFiles this shard holds, or null for the default shard. */
+    private final File root;
+    /* The normalized path of root, or null for the default shard. */
+    private final Path rootPath;
+
+    /* Shared by all shards. */
+    private final TagManager tagManager;
+    private final ImageFileHistoryManager masterLog;
+    /* Where the tags of ImageFiles are kept, applied to imageFileManager once it exists. */
+    private TagStorage tagStorage;
+
+    /* Created when this shard is loaded and released when it is closed, as each one has its own threads. */
+    private ImageFileManager imageFileManager;
+    /* The format and dimensions of every image file found within root. */
+    private final HeaderIndex headerIndex;
+    /* Finds all image files within directories of this shard. */
+    private DirectoryScanner directoryScanner;
+    /* Reads the EXIF and XMP metadata of this shard's ImageFiles in the background. */
+    private MetadataExtractor metadataExtractor;
+
+    /* File names for saving. */
+    private final String imageSaveFileName;
+    private final String headerSaveFileName;
+
+    /* Whether this shard was read from its save files. */
+    private boolean loaded;
+
+    /**
+     * Constructs a new LibraryShard, which is empty and starts no threads until it is loaded.
+     *
+     * @param root: The directory whose ImageFiles this shard holds, or null for the default shard.
+     * @param dataDir: The folder containing the library's save files.
+     * @param tagManager: The TagManager shared by all shards.
+     * @param masterLog: The ImageFileHistoryManager shared by all shards.
+     */
+    LibraryShard(File root, File dataDir, TagManager tagManager, ImageFileHistoryManager masterLog) {
+        this.root = root;
+        this.rootPath = root == null ? null : root.getAbsoluteFile().toPath().normalize();
+        this.tagManager = tagManager;
+        this.masterLog = masterLog;
+        this.tagStorage = TagStorage.FILE_NAME;
+        this.headerIndex = new HeaderIndex();
+        /* The default shard keeps the save files of libraries saved before they were split into roots. */
+        String suffix = root == null ? ""
+                : "-" + UUID.nameUUIDFromBytes(this.rootPath.toString().getBytes(StandardCharsets.UTF_8));
+        this.imageSaveFileName = dataDir.getPath() + File.separator + "serializedImageData" + suffix + ".ser";
+        this.headerSaveFileName = dataDir.getPath() + File.separator + "serializedHeaderData" + suffix + ".ser";
+    }
+
+    /**
+     * @return The directory whose ImageFiles this shard holds, or null for the default shard.
+     */
+    File getRoot() {
+        return this.root;
+    }
+
+    /**
+     * @return The ImageFileManager of this shard, or null until this shard is loaded.
+     */
+    synchronized ImageFileManager getImageFileManager() {
+        return this.imageFileManager;
+    }
+
+    HeaderIndex getHeaderIndex() {
+        return this.headerIndex;
+    }
+
+    /**
+     * @return The DirectoryScanner of this shard, or null until this shard is loaded.
+     */
+    synchronized DirectoryScanner getDirectoryScanner() {
+        return this.directoryScanner;
+    }
+
+    /**
+     * @return The MetadataExtractor of this shard, or null until this shard is loaded.
+     */
+    synchronized MetadataExtractor getMetadataExtractor() {
+        return this.metadataExtractor;
+    }
+
+    /**
+     * Sets where the tags of this shard's ImageFiles are kept, now or once it is loaded.
+     *
+     * @param tagStorage: Where the tags of ImageFiles are kept when they change.
+     */
+    synchronized void setTagStorage(TagStorage tagStorage) {
+        this.tagStorage = tagStorage;
+        if (this.imageFileManager != null) {
+            this.imageFileManager.setTagStorage(tagStorage);
+        }
+    }
+
+    synchronized boolean isLoaded() {
+        return this.loaded;
+    }
+
+    /**
+     * Reads this shard from its save files, unless it already was.
+     */
+    synchronized void ensureLoaded() {
+        if (!this.loaded) {
+            this.load();
+        }
+    }
+
+    /**
+     * Reads this shard from its save files, creating them if they do not exist yet.
+     */
+    synchronized void load() {
+        if (this.imageFileManager == null) {
+            this.imageFileManager = new ImageFileManager(this.tagManager, this.masterLog);
+            this.imageFileManager.setTagStorage(this.tagStorage);
+            this.tagManager.addObserver(this.imageFileManager);
+            this.directoryScanner = new DirectoryScanner(this.imageFileManager, this.headerIndex,
+                    IoScheduler.getDefault());
+            this.metadataExtractor = new MetadataExtractor(this.imageFileManager,
+                    Runtime.getRuntime().availableProcessors());
+        }
+        this.imageFileManager.readFromFile(this.imageSaveFileName);
+        this.headerIndex.readFromFile(this.headerSaveFileName);
+        this.metadataExtractor.reset();
+        this.loaded = true;
+    }
+
+    /**
+     * Saves this shard, if it was loaded.
+     */
+    synchronized void save() {
+        if (this.loaded) {
+            this.imageFileManager.saveToFile(this.imageSaveFileName);
+            this.headerIndex.saveToFile(this.headerSaveFileName);
+        }
+    }
+
+    /**
+     * Deletes the save files of this shard, such as once its ImageFiles were moved to another shard.
+     */
+    synchronized void delete() {
+        new File(this.imageSaveFileName).delete();
+        new File(this.headerSaveFileName).delete();
+        this.loaded = false;
+    }
+
+    /**
+     * Stops the threads of this shard and releases its ImageFileManager, once it is no longer used, such
+     * as when it was merged into another one or its root was moved. Files still waiting to be renamed are
+     * renamed first. Does nothing if this shard was never loaded.
+     */
+    synchronized void close() {
+        if (this.imageFileManager == null) {
+            return;
+        }
+        this.tagManager.deleteObserver(this.imageFileManager);
+        this.metadataExtractor.close();
+        this.imageFileManager.close();
+        this.imageFileManager = null;
+        this.directoryScanner = null;
+        this.metadataExtractor = null;
+        this.loaded = false;
+    }
+
+    /**
+     * @param file: A file or directory.
+     * @return Whether this file is this shard's root or within it. Always false for the default shard.
+     */
+    boolean contains(File file) {
+        return this.rootPath != null && file.getAbsoluteFile().toPath().normalize().startsWith(this.rootPath);
+    }
+
+    /**
+     * @param dir: A directory.
+     * @return Whether this shard's root is this directory or within it. Always false for the default shard.
+     */
+    boolean isUnder(File dir) {
+        return this.rootPath != null && this.rootPath.startsWith(dir.getAbsoluteFile().toPath().normalize());
+    }
+}
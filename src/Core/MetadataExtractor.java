@@ -0,0 +1,116 @@
+package Core;
+
+import Images.ImageFileManager;
+import Images.ImageMetadata;
+import Images.MetadataIndex;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reads the EXIF and XMP metadata of ImageFiles in the background, after a directory is scanned, and
+ * records it in the MetadataIndex of their ImageFileManager. The ImageFiles are split into batches
+ * read in parallel by a pool of threads, each with its own reader, so that reading keeps up with the
+ * disk. The metadata of each ImageFile is only read once.
+ */
+class MetadataExtractor {
+
+    /* The number of ImageFiles read by a single task. */
+    private static final int BATCH_SIZE = 256;
+
+    /* The ImageFileManager whose ImageFiles are read. */
+    private final ImageFileManager imageFileManager;
+    /* Reads metadata in the background. */
+    private final ExecutorService executor;
+    /* The reader of each thread of the pool. */
+    private final ThreadLocal<ExifReader> readers;
+    /* The ids of all ImageFiles whose metadata was read, or is being read. */
+    private final BitSet queued;
+
+    /**
+     * Constructs a new MetadataExtractor.
+     *
+     * @param imageFileManager: The ImageFileManager whose ImageFiles are read.
+     * @param threads: The number of files read at once.
+     */
+    MetadataExtractor(ImageFileManager imageFileManager, int threads) {
+        this.imageFileManager = imageFileManager;
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "metadata-extractor");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        this.readers = ThreadLocal.withInitial(ExifReader::new);
+        this.queued = new BitSet();
+    }
+
+    /**
+     * Starts reading the metadata of all ImageFiles within a directory that was not read yet.
+     *
+     * @param dir: The directory whose ImageFiles are read.
+     */
+    void extractUnder(File dir) {
+        BitSet ids = this.imageFileManager.getPathIndex().findIdsUnder(dir);
+        MetadataIndex metadataIndex = this.imageFileManager.getMetadataIndex();
+        int[] batch = new int[BATCH_SIZE];
+        int batchSize = 0;
+        synchronized (this.queued) {
+            ids.andNot(this.queued);
+            this.queued.or(ids);
+        }
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            if (metadataIndex.contains(id)) {
+                continue;
+            }
+            batch[batchSize++] = id;
+            if (batchSize == BATCH_SIZE) {
+                this.submit(batch.clone(), batchSize);
+                batchSize = 0;
+            }
+        }
+        if (batchSize > 0) {
+            this.submit(batch, batchSize);
+        }
+    }
+
+    /**
+     * Stops reading metadata, and stops the threads of the pool, once its ImageFileManager is no longer used.
+     */
+    void close() {
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Forgets which ImageFiles were read, such as after all ImageFiles are given new ids.
+     */
+    void reset() {
+        synchronized (this.queued) {
+            this.queued.clear();
+        }
+    }
+
+    /**
+     * Helper that reads the metadata of a batch of ImageFiles on the pool.
+     */
+    private void submit(int[] ids, int count) {
+        this.executor.execute(() -> {
+            ExifReader reader = this.readers.get();
+            MetadataIndex metadataIndex = this.imageFileManager.getMetadataIndex();
+            for (int i = 0; i < count; i++) {
+                File location = this.imageFileManager.getLocation(ids[i]);
+                ImageMetadata metadata = location == null ? null : reader.read(location);
+                if (metadata != null) {
+                    metadataIndex.put(ids[i], metadata);
+                } else {
+                    /* Read again the next time its directory is scanned. */
+                    synchronized (this.queued) {
+                        this.queued.clear(ids[i]);
+                    }
+                }
+            }
+        });
+    }
+}
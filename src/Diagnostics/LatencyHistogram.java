@@ -0,0 +1,124 @@
+package Diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long calls take, in nanoseconds, in buckets whose width grows with the latency they hold,
+ * as HdrHistogram does: every latency is kept to within 1% of its value, from a nanosecond up to about
+ * eighteen minutes, in a fixed 35 KB. Recording takes no lock and allocates nothing, so that it can be
+ * done from any thread on every call of an operation.
+ */
+class LatencyHistogram {
+
+    /* Every power of two is split into 2^SUB_BUCKET_BITS buckets, half of which are used above the first. */
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    /* The largest latency recorded; longer ones are recorded as this. */
+    private static final long HIGHEST = (1L << 40) - 1;
+    private static final int LARGEST_SHIFT = 64 - Long.numberOfLeadingZeros(HIGHEST) - SUB_BUCKET_BITS;
+
+    /* The number of latencies recorded in each bucket. */
+    private final AtomicLongArray counts;
+    private final LongAdder totalCount;
+    private final LongAdder totalNanos;
+    private final LongAccumulator maxNanos;
+
+    /**
+     * Constructs a new, empty LatencyHistogram.
+     */
+    LatencyHistogram() {
+        this.counts = new AtomicLongArray(SUB_BUCKETS + LARGEST_SHIFT * HALF_SUB_BUCKETS);
+        this.totalCount = new LongAdder();
+        this.totalNanos = new LongAdder();
+        this.maxNanos = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos: The time a call took, in nanoseconds.
+     */
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), HIGHEST);
+        this.counts.incrementAndGet(indexOf(value));
+        this.totalCount.increment();
+        this.totalNanos.add(value);
+        this.maxNanos.accumulate(value);
+    }
+
+    /**
+     * @return The number of latencies recorded.
+     */
+    long getCount() {
+        return this.totalCount.sum();
+    }
+
+    /**
+     * @return The sum of all latencies recorded, in nanoseconds.
+     */
+    long getTotalNanos() {
+        return this.totalNanos.sum();
+    }
+
+    /**
+     * @return The longest latency recorded, in nanoseconds.
+     */
+    long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * Returns the latency that some percentage of the recorded latencies are at most, such as 99 for the
+     * p99. Latencies still being recorded while it is read may or may not be counted.
+     *
+     * @param percentile: The percentage, from 0 to 100.
+     * @return This latency, in nanoseconds, or 0 if nothing was recorded.
+     */
+    long getPercentile(double percentile) {
+        long[] snapshot = new long[this.counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = this.counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), this.getMaxNanos());
+            }
+        }
+        return this.getMaxNanos();
+    }
+
+    /**
+     * Helper that returns the bucket of a latency.
+     */
+    private static int indexOf(long value) {
+        int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        int subBucket = (int) (value >>> shift);
+        if (shift == 0) {
+            return subBucket;
+        }
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+    }
+
+    /**
+     * Helper that returns the largest latency held by a bucket.
+     */
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
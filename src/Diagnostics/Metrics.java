@@ -0,0 +1,110 @@
+package Diagnostics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The Timers of the operations on the hot paths of this application, in one place, so that a slow
+ * library can be looked into without a profiler: from the diagnostics screen, through JMX, from a
+ * Flight Recorder recording, or from the log written every minute next to the save files.
+ */
+public final class Metrics {
+
+    public static final Timer FIND_IMAGE = new Timer("findImage");
+    public static final Timer UPDATE_FILE_ADD = new Timer("updateFileAdd");
+    public static final Timer UPDATE_FILE_REMOVE = new Timer("updateFileRemove");
+    public static final Timer GET_DIRECTORY_FILES = new Timer("getDirectoryFiles");
+    public static final Timer GATHER_FILES_WITH_TAGS = new Timer("gatherFilesWithTags");
+    public static final Timer SAVE_TO_FILES = new Timer("saveToFiles");
+    public static final Timer READ_FROM_FILE = new Timer("readFromFile");
+    public static final Timer DECODE = new Timer("decode");
+
+    private static final List<Timer> TIMERS = Collections.unmodifiableList(Arrays.asList(FIND_IMAGE,
+            UPDATE_FILE_ADD, UPDATE_FILE_REMOVE, GET_DIRECTORY_FILES, GATHER_FILES_WITH_TAGS, SAVE_TO_FILES,
+            READ_FROM_FILE, DECODE));
+
+    /* The name of the log written next to the save files. */
+    private static final String LOG_FILE_NAME = "metrics.log";
+    /* The number of seconds between two entries of the log. */
+    private static final long LOG_PERIOD_SECONDS = 60;
+
+    /* Writes the log, or null if it is not written. */
+    private static ScheduledExecutorService logger;
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The Timer of every operation, in a fixed order.
+     */
+    public static List<Timer> getTimers() {
+        return TIMERS;
+    }
+
+    /**
+     * Publishes every Timer through JMX, as "memories:type=Timer,name=...", and starts writing their
+     * statistics to a log every minute. Does nothing if this was done already.
+     *
+     * @param dataDir: The folder containing the library's save files, where the log is written.
+     */
+    public static synchronized void start(File dataDir) {
+        if (logger != null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (Timer timer : TIMERS) {
+            try {
+                ObjectName name = new ObjectName("memories:type=Timer,name=" + timer.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(timer, name);
+                }
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
+        File logFile = new File(dataDir, LOG_FILE_NAME);
+        long[] lastCounts = new long[TIMERS.size()];
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> writeLog(logFile, lastCounts), LOG_PERIOD_SECONDS, LOG_PERIOD_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Helper that appends a line to the log for every Timer that timed calls since the last entry.
+     */
+    private static void writeLog(File logFile, long[] lastCounts) {
+        String time = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        try (PrintWriter out = new PrintWriter(new FileWriter(logFile, true))) {
+            for (int i = 0; i < TIMERS.size(); i++) {
+                Timer timer = TIMERS.get(i);
+                long count = timer.getCount();
+                if (count != lastCounts[i]) {
+                    out.printf("%s %-20s calls=%d (+%d) mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n", time,
+                            timer.getName(), count, count - lastCounts[i], timer.getMeanMicros(),
+                            timer.getP50Micros(), timer.getP99Micros(), timer.getMaxMicros());
+                    lastCounts[i] = count;
+                }
+            }
+        } catch (IOException e) {
+            /* Tried again at the next entry. */
+        }
+    }
+}
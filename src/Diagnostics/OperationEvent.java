@@ -0,0 +1,28 @@
+package Diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event for one slow timed call, so that slow calls can be lined up with garbage
+ * collections, disk reads and lock contention in a recording. Only made while a recording is running
+ * with it enabled; see Timer.
+ */
+@Name("memories.Operation")
+@Label("Operation")
+@Category("Memories")
+@Description("A call of an operation timed by the application")
+@StackTrace(false)
+class OperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+}
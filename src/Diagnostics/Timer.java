@@ -0,0 +1,87 @@
+package Diagnostics;
+
+/**
+ * Times every call of one operation of this application, such as finding an ImageFile or reading the
+ * library. A call is timed by taking the time before it with start, and passing it to stop once it is done:
+ * the latency is then recorded in a LatencyHistogram, and sent to the Flight Recorder if it is recording
+ * and the call was slow.
+ *
+ * May be used from any number of threads at once.
+ */
+public class Timer implements TimerMXBean {
+
+    /* The shortest call sent to the Flight Recorder, so that the fast calls made by the thousand do not
+     * flood recordings; all calls are kept in the histogram. */
+    private static final long EVENT_THRESHOLD_NANOS = 1_000_000;
+
+    /* The name of the operation timed. */
+    private final String name;
+    /* The latency of every call timed so far. */
+    private final LatencyHistogram histogram;
+
+    /**
+     * Constructs a new Timer, which has timed no call yet.
+     *
+     * @param name: The name of the operation timed, such as "findImage".
+     */
+    Timer(String name) {
+        this.name = name;
+        this.histogram = new LatencyHistogram();
+    }
+
+    /**
+     * @return The time before a call, to be passed to stop once it is done.
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a call that is done.
+     *
+     * @param start: The time before the call, as returned by start.
+     */
+    public void stop(long start) {
+        long latency = System.nanoTime() - start;
+        this.histogram.record(latency);
+        if (latency >= EVENT_THRESHOLD_NANOS) {
+            OperationEvent event = new OperationEvent();
+            if (event.shouldCommit()) {
+                event.operation = this.name;
+                event.latency = latency;
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getCount() {
+        return this.histogram.getCount();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = this.histogram.getCount();
+        return count == 0 ? 0 : this.histogram.getTotalNanos() / 1000.0 / count;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return this.histogram.getPercentile(50) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return this.histogram.getPercentile(99) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return this.histogram.getMaxNanos() / 1000.0;
+    }
+}
@@ -0,0 +1,20 @@
+package Diagnostics;
+
+/**
+ * The statistics of a Timer, as seen through JMX, such as in JConsole or VisualVM under "memories".
+ * Latencies are in microseconds.
+ */
+public interface TimerMXBean {
+
+    String getName();
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getMaxMicros();
+}
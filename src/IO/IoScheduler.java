@@ -0,0 +1,167 @@
+package IO;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Runs the tasks touching files, such as reading attributes and headers while scanning, decoding
+ * images or renaming files, on virtual threads where the JVM has them (Java 21 or later) and on daemon
+ * threads otherwise, with a limit of its own for every mount. Every limit
+ * follows the latency measured on its mount, so that a network share, where every file takes
+ * milliseconds but many can be asked for at once, is kept busy without overloading its file server,
+ * while a local disk is not asked for more than it can serve. Shared by the scanner, the prefetcher
+ * and the renamer, so that together they stay within the limit of each mount.
+ */
+public class IoScheduler {
+
+    /* The largest number of tasks run at once on a mount. */
+    private static final int MAX_PARALLELISM = 64;
+    /* The number of directories whose mount is remembered. */
+    private static final int MAX_CACHED_DIRECTORIES = 16384;
+    /* The mount of paths of which no part exists. */
+    private static final Object UNKNOWN_MOUNT = "unknown";
+
+    private static final IoScheduler DEFAULT = new IoScheduler(null, MAX_PARALLELISM);
+
+    /* Returns the mount of a path, such as its FileStore. */
+    private final Function<Path, Object> mountOf;
+    /* The largest number of tasks run at once on a mount. */
+    private final int maxParallelism;
+    /* The tasks of every mount, by mount. */
+    private final ConcurrentHashMap<Object, MountLimit> mounts;
+    /* The mount of every directory looked up so far. */
+    private final ConcurrentHashMap<Path, Object> directoryMounts;
+    /* Makes the threads that tasks run on. */
+    private final ThreadFactory threadFactory;
+
+    /**
+     * Constructs a new IoScheduler.
+     *
+     * @param mountOf: Returns the mount of a path, or null for the FileStore of its directory. Simulated
+     *               mounts can be given instead, to try out slow file systems.
+     * @param maxParallelism: The largest number of tasks run at once on a mount.
+     */
+    IoScheduler(Function<Path, Object> mountOf, int maxParallelism) {
+        this.mountOf = mountOf != null ? mountOf : this::fileStoreOf;
+        this.maxParallelism = maxParallelism;
+        this.mounts = new ConcurrentHashMap<>();
+        this.directoryMounts = new ConcurrentHashMap<>();
+        this.threadFactory = newThreadFactory("io-");
+    }
+
+    /**
+     * @return The IoScheduler shared by every part of this application touching files.
+     */
+    public static IoScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Runs a task on another thread, once the mount of a path has room for it.
+     *
+     * @param path: The file or directory the task touches.
+     * @param task: The task.
+     * @return The result of the task, to come.
+     */
+    public <T> Future<T> submit(Path path, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        this.mountFor(path).execute(future);
+        return future;
+    }
+
+    /**
+     * Runs a task on the calling thread if the tasks on the mount of a path are so quick, such as on
+     * a local disk with its files cached, that handing them to another thread would only slow them
+     * down, or like submit otherwise.
+     *
+     * @param path: The file or directory the task touches.
+     * @param task: The task.
+     * @return The result of the task, done already if it was run on the calling thread.
+     */
+    public <T> Future<T> runOrSubmit(Path path, Callable<T> task) {
+        MountLimit mount = this.mountFor(path);
+        FutureTask<T> future = new FutureTask<>(task);
+        if (mount.isFast()) {
+            long start = System.nanoTime();
+            future.run();
+            mount.record(System.nanoTime() - start);
+        } else {
+            mount.execute(future);
+        }
+        return future;
+    }
+
+    /**
+     * @param path: A file or directory.
+     * @return The number of tasks currently allowed to run at once on its mount.
+     */
+    public int getParallelism(Path path) {
+        return this.mountFor(path).getLimit();
+    }
+
+    /**
+     * Returns a factory of virtual threads, looked up by reflection so that the application still runs
+     * before Java 21, or else of daemon threads.
+     *
+     * @param prefix: The start of the name of every thread, followed by its number.
+     * @return A factory of threads named after this prefix.
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            AtomicLong count = new AtomicLong();
+            return task -> {
+                Thread thread = new Thread(task, prefix + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Helper that returns the tasks of the mount of a path.
+     */
+    private MountLimit mountFor(Path path) {
+        return this.mounts.computeIfAbsent(this.mountOf.apply(path),
+                mount -> new MountLimit(this.maxParallelism, this.threadFactory));
+    }
+
+    /**
+     * Helper that returns the FileStore of the directory of a path, looked up once per directory. A path
+     * that does not exist yet, such as the new name of a file, is on the mount of its closest parent
+     * that does.
+     */
+    private Object fileStoreOf(Path path) {
+        Path absolute = path.toAbsolutePath();
+        Path dir = absolute.getParent() != null ? absolute.getParent() : absolute;
+        Object mount = this.directoryMounts.get(dir);
+        if (mount == null) {
+            mount = UNKNOWN_MOUNT;
+            for (Path existing = dir; existing != null; existing = existing.getParent()) {
+                try {
+                    mount = Files.getFileStore(existing);
+                    break;
+                } catch (IOException e) {
+                    /* Looked up on its parent instead. */
+                }
+            }
+            if (this.directoryMounts.size() >= MAX_CACHED_DIRECTORIES) {
+                this.directoryMounts.clear();
+            }
+            this.directoryMounts.put(dir, mount);
+        }
+        return mount;
+    }
+}
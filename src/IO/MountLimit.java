@@ -0,0 +1,205 @@
+package IO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The tasks of an IoScheduler touching a single mount, and how many of them may run at once. Tasks
+ * beyond this limit wait in a queue, rather than on a thread, until a running task is done.
+ *
+ * The limit follows the latency of the tasks: it is raised a little every round of tasks, that is
+ * about one task per task allowed at once, while tasks take no longer than they did with few of them
+ * running, and lowered in proportion as they start taking longer, which is when the mount, or the
+ * file server behind it, is kept busy by the tasks already running. On a network mount whose latency
+ * comes from the network, the limit climbs until the server is saturated; on a local disk that is
+ * already busy, it stays low.
+ */
+class MountLimit {
+
+    /* The number of tasks allowed at once before any latency was measured. */
+    private static final int INITIAL_LIMIT = 4;
+    /* The weight of each task in the average latency of the latest tasks. */
+    private static final double RECENT_WEIGHT = 0.1;
+    /* How fast the base latency, the lowest seen, drifts towards the latency of each task above it. */
+    private static final double BASE_DRIFT = 0.001;
+    /* How much slower than the base latency tasks may get before the limit is lowered. */
+    private static final double TOLERANCE = 1.5;
+    /* The weight of each new limit, against the current one. */
+    private static final double SMOOTHING = 0.2;
+    /* Tasks taking less than this, in nanoseconds, are cheaper to run on the calling thread than on another. */
+    private static final double INLINE_NANOS = 100_000;
+    /* The number of tasks measured before they can be run on the calling thread. */
+    private static final int INLINE_SAMPLES = 16;
+
+    /* The largest number of tasks allowed at once. */
+    private final int maxLimit;
+    /* Makes the threads that tasks run on. */
+    private final ThreadFactory threadFactory;
+    private final ReentrantLock lock;
+    /* The tasks waiting for a running task to be done. */
+    private final ArrayDeque<Runnable> waiting;
+    /* The number of tasks allowed at once, and running. */
+    private double limit;
+    private int running;
+    /* The average latency of the latest tasks, and the lowest latency seen, drifting up over time. */
+    private double recentLatency;
+    private double baseLatency;
+    /* The number of tasks measured, in all and in the current round. */
+    private long samples;
+    private int roundSamples;
+
+    /**
+     * Constructs a new MountLimit, with no task running.
+     *
+     * @param maxLimit: The largest number of tasks allowed at once.
+     * @param threadFactory: Makes the threads that tasks run on.
+     */
+    MountLimit(int maxLimit, ThreadFactory threadFactory) {
+        this.maxLimit = maxLimit;
+        this.threadFactory = threadFactory;
+        this.lock = new ReentrantLock();
+        this.waiting = new ArrayDeque<>();
+        this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    /**
+     * Runs a task on a new thread once fewer tasks than the limit are running.
+     *
+     * @param task: The task, such as a FutureTask.
+     */
+    void execute(Runnable task) {
+        this.lock.lock();
+        try {
+            if (this.running >= (int) this.limit) {
+                this.waiting.add(task);
+                return;
+            }
+            this.running++;
+        } finally {
+            this.lock.unlock();
+        }
+        this.start(task);
+    }
+
+    /**
+     * Records how long a task took, such as one run on the calling thread, and adjusts the limit.
+     *
+     * @param nanos: The time the task took, in nanoseconds.
+     */
+    void record(long nanos) {
+        this.lock.lock();
+        try {
+            this.sample(nanos);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether tasks on this mount are so quick that they are best run one after another on the
+     * calling thread.
+     */
+    boolean isFast() {
+        this.lock.lock();
+        try {
+            return this.samples >= INLINE_SAMPLES && this.recentLatency < INLINE_NANOS;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of tasks allowed at once.
+     */
+    int getLimit() {
+        this.lock.lock();
+        try {
+            return (int) this.limit;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Helper that starts a thread running a task, and then the waiting tasks while the limit allows it.
+     */
+    private void start(Runnable task) {
+        this.threadFactory.newThread(() -> {
+            Runnable next = task;
+            while (next != null) {
+                next = this.runAndTakeNext(next);
+            }
+        }).start();
+    }
+
+    /**
+     * Helper that runs a task, and returns the next waiting task this thread runs, or null if it is done.
+     */
+    private Runnable runAndTakeNext(Runnable task) {
+        boolean cancelled = task instanceof Future && ((Future<?>) task).isCancelled();
+        Runnable next = null;
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            next = this.finish(cancelled ? -1 : System.nanoTime() - start);
+        }
+        return next;
+    }
+
+    /**
+     * Helper that records a task as done, and returns the next waiting task to run on its thread, or null
+     * if there is none or the limit was lowered. Starts more threads if the limit was raised.
+     */
+    private Runnable finish(long nanos) {
+        List<Runnable> started = new ArrayList<>();
+        Runnable next;
+        this.lock.lock();
+        try {
+            /* Tasks cancelled before they ran did not touch the mount. */
+            if (nanos >= 0) {
+                this.sample(nanos);
+            }
+            next = this.running <= (int) this.limit ? this.waiting.poll() : null;
+            if (next == null) {
+                this.running--;
+            }
+            while (this.running < (int) this.limit && !this.waiting.isEmpty()) {
+                this.running++;
+                started.add(this.waiting.poll());
+            }
+        } finally {
+            this.lock.unlock();
+        }
+        for (Runnable task : started) {
+            this.start(task);
+        }
+        return next;
+    }
+
+    /**
+     * Helper that adds the latency of a task to the averages, and adjusts the limit once every round.
+     */
+    private void sample(long nanos) {
+        this.samples++;
+        if (this.samples == 1) {
+            this.recentLatency = nanos;
+            this.baseLatency = nanos;
+        } else {
+            this.recentLatency += (nanos - this.recentLatency) * RECENT_WEIGHT;
+            this.baseLatency = nanos < this.baseLatency ? nanos
+                    : this.baseLatency + (nanos - this.baseLatency) * BASE_DRIFT;
+        }
+        if (++this.roundSamples >= this.limit) {
+            this.roundSamples = 0;
+            double gradient = this.recentLatency <= TOLERANCE * this.baseLatency ? 1
+                    : Math.max(0.5, this.baseLatency / this.recentLatency);
+            double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+            this.limit = Math.max(1, Math.min(this.maxLimit, this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING));
+        }
+    }
+}
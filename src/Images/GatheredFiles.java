@@ -0,0 +1,86 @@
+package Images;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of the locations of ImageFiles, such as the results of a search, which also knows the id of the
+ * ImageFile at each position, so that the ids of the files shown do not have to be looked up again. The
+ * locations are those of the ImageFiles themselves rather than copies.
+ *
+ * Like a list of Files, it keeps the locations the ImageFiles had when it was made.
+ */
+public class GatheredFiles extends AbstractList<File> implements RandomAccess {
+
+    /* The location of each ImageFile. */
+    private final File[] files;
+    /* The id of each ImageFile, within its ImageFileManager. */
+    private final int[] ids;
+
+    /**
+     * Constructs a list of ImageFiles, as made by ImageFileManager.gatherFiles.
+     *
+     * @param files: The location of each ImageFile.
+     * @param ids: The id of each ImageFile.
+     */
+    GatheredFiles(File[] files, int[] ids) {
+        this.files = files;
+        this.ids = ids;
+    }
+
+    /**
+     * Joins lists of files one after the other, keeping the ids of the ImageFiles if all lists know them.
+     *
+     * @param lists: The lists being joined, such as the results of a search in several ImageFileManagers.
+     * @return All files of these lists, in order.
+     */
+    public static List<File> concat(List<? extends List<File>> lists) {
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int size = 0;
+        boolean allGathered = true;
+        for (List<File> files : lists) {
+            size += files.size();
+            allGathered &= files instanceof GatheredFiles;
+        }
+        if (!allGathered) {
+            ArrayList<File> joined = new ArrayList<>(size);
+            for (List<File> files : lists) {
+                joined.addAll(files);
+            }
+            return joined;
+        }
+        File[] files = new File[size];
+        int[] ids = new int[size];
+        int start = 0;
+        for (List<File> list : lists) {
+            GatheredFiles gathered = (GatheredFiles) list;
+            System.arraycopy(gathered.files, 0, files, start, gathered.files.length);
+            System.arraycopy(gathered.ids, 0, ids, start, gathered.ids.length);
+            start += gathered.files.length;
+        }
+        return new GatheredFiles(files, ids);
+    }
+
+    @Override
+    public File get(int index) {
+        return this.files[index];
+    }
+
+    @Override
+    public int size() {
+        return this.files.length;
+    }
+
+    /**
+     * @param index: A position within this list.
+     * @return The id of the ImageFile at this position, within the ImageFileManager of its root.
+     */
+    public int getId(int index) {
+        return this.ids[index];
+    }
+}
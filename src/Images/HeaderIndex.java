@@ -0,0 +1,108 @@
+package Images;
+
+import Application.SaveFile;
+import Application.SaveOperation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The headers of all image files seen while scanning directories, by their path. A header is only
+ * returned while its file has the size and modification time it had when the header was read, so
+ * that scanning a directory again does not read the headers of files that have not changed.
+ */
+public class HeaderIndex implements SaveFile {
+
+    /* The header of every image file, by its path. */
+    private HashMap<String, ImageHeader> headers;
+    /* Whether headers were added or removed since this index was last saved. */
+    private boolean changed;
+
+    public HeaderIndex() {
+        this.headers = new HashMap<>();
+        this.changed = false;
+    }
+
+    /**
+     * @return The number of headers in this index.
+     */
+    public synchronized int size() {
+        return this.headers.size();
+    }
+
+    /**
+     * Returns the header of a file, as long as the file has not changed since it was read.
+     *
+     * @param file: The image file.
+     * @param length: The current size of the file in bytes.
+     * @param lastModified: When the file was last modified.
+     * @return The header of this file, or null if it was never read or the file has changed since.
+     */
+    public synchronized ImageHeader get(File file, long length, long lastModified) {
+        ImageHeader header = this.headers.get(file.getPath());
+        return header != null && header.isCurrent(length, lastModified) ? header : null;
+    }
+
+    /**
+     * Returns the last header read from a file, whether or not the file has changed since.
+     *
+     * @param file: The image file.
+     * @return The header of this file, or null if it was never read.
+     */
+    public synchronized ImageHeader get(File file) {
+        return this.headers.get(file.getPath());
+    }
+
+    /**
+     * Adds the header of a file, replacing any header read from it before.
+     *
+     * @param header: The header being added.
+     */
+    public synchronized void put(ImageHeader header) {
+        this.headers.put(header.getPath(), header);
+        this.changed = true;
+    }
+
+    /**
+     * Forgets the header of a file, such as when it is no longer a valid image.
+     *
+     * @param file: The file whose header is forgotten.
+     */
+    public synchronized void remove(File file) {
+        if (this.headers.remove(file.getPath()) != null) {
+            this.changed = true;
+        }
+    }
+
+    /**
+     * Reads all headers from a .ser file, creating it if it does not exist yet.
+     *
+     * @param filePath: The location of the file to be read from.
+     */
+    @Override
+    public synchronized void readFromFile(String filePath) {
+        boolean existed = new File(filePath).exists();
+        SaveOperation<ImageHeader> headerSave = new SaveOperation<>(new ArrayList<>());
+        headerSave.readFromFile(filePath);
+        this.headers.clear();
+        for (ImageHeader header : headerSave.getData()) {
+            this.headers.put(header.getPath(), header);
+        }
+        /* A new save file is empty until it is written to once. */
+        this.changed = !existed;
+    }
+
+    /**
+     * Writes all headers to a .ser file, if any changed since they were last read or written.
+     *
+     * @param filePath: The location of the file to be written to.
+     */
+    @Override
+    public synchronized void saveToFile(String filePath) {
+        if (this.changed) {
+            new SaveOperation<>(new ArrayList<>(this.headers.values())).saveToFile(filePath);
+            this.changed = false;
+        }
+    }
+}
@@ -4,48 +4,106 @@ import Tags.Tag;
 import Tags.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Observable;
 
 /**
  * A class representing a single ImageFile.
+ *
+ * Its tags are kept as a sorted array of tag ids, given by the TagManager, rather than as a list of
+ * Tags, so that each ImageFile holds a single small array, and sets of tags are compared without
+ * allocating. The order of the tags in its name, the order they were added in, is kept as a second
+ * array of the same ids, from which its displayName is built.
+ *
+ * Every change is recorded in its nameHistory with the tags it added and removed, so that changes can
+ * be undone and redone, and the ImageFile reverted to any earlier state, by applying these deltas to
+ * its tag ids.
  */
 class ImageFile extends Observable implements Serializable {
 
+    private static final long serialVersionUID = 6222920222839325549L;
+
+    /* The tag ids of an ImageFile without tags. */
+    private static final int[] NO_TAGS = new int[0];
+
     /* This ImageFile's original name, without any tags or a file extension. */
     private String originalName;
     /* This ImageFile's name, as seen it is seen by the user. Includes all tags, and file extension. */
     private String displayName;
     /* This ImageFile's file extension. */
     private String fileExt;
-    /* The current directory path to the location of this ImageFile. */
-    private File currentDir;
-    /* An ArrayList of all Tags currently attached to this ImageFile. */
+    /* The current directory path to the location of this ImageFile, as seen by the user. */
+    private volatile File currentDir;
+    /* Where the file of this ImageFile is on disk while it waits to be renamed to currentDir, or null
+     * if it is at currentDir. Saved, so that a rename still waiting when the application stops is not lost. */
+    private File writtenDir;
+    /* All Tags attached to this ImageFile, in the order of its name. Only set while this ImageFile is
+     * saved or read, so that saved ImageFiles keep their format; see tagIds. */
     private ArrayList<Tag> tags;
     /* An ArrayList of all alterations made to this ImageFile's names or tags. */
     private ArrayList<ImageFileHistoryEntry> nameHistory;
+    /* The number of entries at the end of nameHistory that were undone, and can be redone. */
+    private int undoneEntries;
     /* The HistoryManager managing all history entries. */
     private ImageFileHistoryManager historyManager;
+    /* This ImageFile's position within its ImageFileManager, assigned when it is added or loaded. */
+    private transient int id;
+    /* The index of all tags, kept up to date with this ImageFile's tags once it has an id. */
+    private transient TagIndex tagIndex;
+    /* The index of all folders, kept up to date with this ImageFile's location once it has an id. */
+    private transient PathIndex pathIndex;
+    /* The ids of all Tags currently attached to this ImageFile, in increasing order. Replaced rather than
+     * changed, so that it can be read without locking this ImageFile. */
+    private transient volatile int[] tagIds;
+    /* The same ids as tagIds, in the order of this ImageFile's displayName. */
+    private transient int[] nameOrderIds;
+    /* The TagManager giving the id of every tag. */
+    private transient TagManager tagManager;
 
     /**
      * Constructs a new ImageFile with its displayName, its currentDir, and a TagManager.
      */
     ImageFile(File selectedFile, TagManager observerTagManager, ImageFileHistoryManager historyManager) {
+        this(selectedFile, selectedFile.getName(), observerTagManager, historyManager);
+    }
+
+    /**
+     * Constructs a new ImageFile whose displayName, with its tags, is not the name of its file, such as
+     * when its tags were kept in the file's attributes rather than in its name.
+     */
+    ImageFile(File selectedFile, String displayName, TagManager observerTagManager,
+              ImageFileHistoryManager historyManager) {
         this.addObserver(observerTagManager);
+        this.tagManager = observerTagManager;
         this.currentDir = selectedFile;
-        this.originalName = this.buildOriginalString(selectedFile.getName());
-        this.tagConstructor(this.buildTagList(selectedFile.getName()));
-        this.fileExt = selectedFile.getName().substring(selectedFile.getName().lastIndexOf("."),
-                selectedFile.getName().length());
-        this.displayName = selectedFile.getName();
+        this.displayName = displayName;
+        ImageFileName parsedName = ImageFileName.parse(this.displayName, observerTagManager);
+        this.originalName = parsedName.getOriginalName();
+        this.fileExt = parsedName.getFileExt();
+        this.tagConstructor(parsedName.getTags());
         this.historyManager = historyManager;
         this.nameHistory = new ArrayList<>();
-        this.addNameToHistory(this.originalName + this.fileExt, this.displayName);
+        this.addNameToHistory(this.originalName + this.fileExt, NO_TAGS);
     }
 
-    ArrayList<Tag> getTags() {
-        return this.tags;
+    int getId() {
+        return this.id;
+    }
+
+    /**
+     * @return All tags of this ImageFile, in the order of its name.
+     */
+    synchronized ArrayList<Tag> getTags() {
+        return this.tagsInNameOrder();
     }
 
     ArrayList<ImageFileHistoryEntry> getNameHistory() {
@@ -57,42 +115,193 @@ class ImageFile extends Observable implements Serializable {
     }
 
     /**
-     * Sets this ImageFile to a new Directory.
+     * @return Where the file of this ImageFile is on disk, which is not currentDir while it waits to be renamed.
+     */
+    synchronized File getFileOnDisk() {
+        return this.writtenDir != null ? this.writtenDir : this.currentDir;
+    }
+
+    /**
+     * @return Whether the file of this ImageFile waits to be renamed to currentDir.
+     */
+    synchronized boolean hasPendingName() {
+        return this.writtenDir != null;
+    }
+
+    String getDisplayName() {
+        return this.displayName;
+    }
+
+    /**
+     * Sets this ImageFile to a new Directory. Never replaces another file: if one is already there, nothing
+     * changes.
      *
      * @param newDir: The new location/name for this ImageFile.
      */
-    void setFileDirectory(File newDir) {
-        boolean isSuccess = this.currentDir.renameTo(newDir);
-        if (isSuccess) {
-            this.currentDir = newDir;
+    synchronized void setFileDirectory(File newDir) {
+        try {
+            Files.move(this.getFileOnDisk().toPath(), newDir.toPath());
+        } catch (IOException e) {
+            return;
+        }
+        this.setCurrentDir(newDir);
+        this.writtenDir = null;
+    }
+
+    /**
+     * Sets the location of this ImageFile after its file was moved there, without touching the file.
+     *
+     * @param newDir: Where the file of this ImageFile now is.
+     */
+    synchronized void setLocation(File newDir) {
+        this.setCurrentDir(newDir);
+        this.writtenDir = null;
+    }
+
+    /**
+     * Helper that changes currentDir, keeping the indexes of this ImageFile's location up to date.
+     */
+    private void setCurrentDir(File newDir) {
+        if (this.pathIndex != null && !newDir.getParentFile().equals(this.currentDir.getParentFile())) {
+            this.pathIndex.remove(this.currentDir, this.id);
+            this.pathIndex.add(newDir, this.id);
+        }
+        this.currentDir = newDir;
+    }
+
+    /**
+     * Gives this ImageFile its displayName as its location right away, leaving its file where it is on disk
+     * until writePendingName is called. Edits that bring back the name of the file on disk cancel the rename.
+     *
+     * @return Whether the file now waits to be renamed.
+     */
+    synchronized boolean markNamePending() {
+        File checkParent = this.currentDir.getParentFile();
+        if (checkParent == null) {
+            return false;
+        }
+        File newDir = new File(checkParent, this.displayName);
+        if (this.writtenDir == null) {
+            this.writtenDir = this.currentDir;
+        }
+        this.setCurrentDir(newDir);
+        if (newDir.equals(this.writtenDir)) {
+            this.writtenDir = null;
+        }
+        return this.writtenDir != null;
+    }
+
+    /**
+     * Renames the file of this ImageFile to currentDir, if it waits to be renamed. Never replaces another
+     * file: if one is already at currentDir, the file is given the first free name with a number after its
+     * original name instead, such as "pic (2) @tag.jpg", which becomes the name of this ImageFile.
+     *
+     * @return Whether the file is now at currentDir.
+     */
+    synchronized boolean writePendingName() {
+        if (this.writtenDir == null) {
+            return true;
         }
+        try {
+            Files.move(this.writtenDir.toPath(), this.currentDir.toPath());
+        } catch (FileAlreadyExistsException e) {
+            return this.writeNumberedName(this.writtenDir);
+        } catch (IOException e) {
+            return false;
+        }
+        this.writtenDir = null;
+        return true;
+    }
+
+    /**
+     * Helper that renames the file of this ImageFile, whose displayName is taken by another file, to the first
+     * free name with a number after its original name, recording the change in its nameHistory.
+     *
+     * @param source: Where the file of this ImageFile is on disk.
+     */
+    private boolean writeNumberedName(File source) {
+        File parent = this.currentDir.getParentFile();
+        for (int number = 2; ; number++) {
+            String numberedName = this.originalName + " (" + number + ")";
+            File newDir = new File(parent, this.buildDisplayString(numberedName, this.nameOrderIds, this.fileExt));
+            try {
+                Files.move(source.toPath(), newDir.toPath());
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            } catch (IOException e) {
+                return false;
+            }
+            String oldName = this.displayName;
+            this.originalName = numberedName;
+            this.displayName = newDir.getName();
+            this.setCurrentDir(newDir);
+            this.writtenDir = null;
+            this.addNameToHistory(oldName, this.tagIds);
+            return true;
+        }
+    }
+
+    /**
+     * Renames the file of this ImageFile to its displayName, if it is not named so already, so that its
+     * tags are written in its name. Like writePendingName, never replaces another file.
+     *
+     * @return Whether the file was renamed.
+     */
+    synchronized boolean writeName() {
+        if (this.writtenDir != null) {
+            return this.writePendingName();
+        }
+        File checkParent = this.currentDir.getParentFile();
+        if (this.displayName.equals(this.currentDir.getName()) || checkParent == null || !checkParent.isDirectory()) {
+            return false;
+        }
+        File newDir = new File(checkParent, this.displayName);
+        try {
+            Files.move(this.currentDir.toPath(), newDir.toPath());
+        } catch (FileAlreadyExistsException e) {
+            return this.writeNumberedName(this.currentDir);
+        } catch (IOException e) {
+            return false;
+        }
+        this.setCurrentDir(newDir);
+        return true;
     }
 
     /**
      * Adds a tag to this ImageFile. Updates its displayName and nameHistory accordingly
-     * and notifies the TagManager.
+     * and notifies the TagManager. The file itself is not renamed; see writeName.
      *
      * @param newTag: The new Tag added to this ImageFile.
+     * @return Whether the tag was added, as it was not there already.
      */
-    void addTag(Tag newTag) {
-        if (!this.tags.contains(newTag)) {
-            this.tags.add(newTag);
-            this.updateImageFile();
-            this.setChanged();
-            this.notifyObservers(newTag);
+    synchronized boolean addTag(Tag newTag) {
+        int tagId = this.tagManager.getTagId(newTag);
+        int position = Arrays.binarySearch(this.tagIds, tagId);
+        if (position >= 0) {
+            return false;
         }
+        int[] oldIds = this.tagIds;
+        this.insertTagId(-position - 1, tagId, newTag, System.currentTimeMillis());
+        this.updateImageFile(oldIds);
+        return true;
     }
 
     /**
-     * Removes a tag from this ImageFile. Updates its displayName, nameHistory, and File directory accordingly.
+     * Removes a tag from this ImageFile. Updates its displayName and nameHistory accordingly. The file
+     * itself is not renamed; see writeName.
      *
      * @param oldTag: The tag to be removed from this ImageFile.
+     * @return Whether the tag was removed, as it was there.
      */
-    void removeTag(Tag oldTag) {
-        if (this.tags.contains(oldTag)) {
-            this.tags.remove(oldTag);
-            this.updateImageFile();
+    synchronized boolean removeTag(Tag oldTag) {
+        int position = Arrays.binarySearch(this.tagIds, this.tagManager.getTagId(oldTag));
+        if (position < 0) {
+            return false;
         }
+        int[] oldIds = this.tagIds;
+        this.deleteTagId(position);
+        this.updateImageFile(oldIds);
+        return true;
     }
 
     /**
@@ -102,11 +311,32 @@ class ImageFile extends Observable implements Serializable {
      * @return Whether or not this ImageFile has these tags.
      */
     boolean hasAllTags(Tag[] tags) {
-        for (Tag tag : tags) {
-            if (!this.tags.contains(tag)) {
+        return this.hasAllTags(this.tagManager.getTagIds(tags));
+    }
+
+    /**
+     * Returns true iff this ImageFile carries every tag of a set, by walking both sorted sets of ids
+     * at once. Does not allocate, so it can be called on every ImageFile of a filter.
+     *
+     * @param sortedTagIds The ids of the tags being filtered for, in increasing order; see TagManager.getTagIds.
+     * @return Whether or not this ImageFile has these tags.
+     */
+    boolean hasAllTags(int[] sortedTagIds) {
+        int[] ids = this.tagIds;
+        if (sortedTagIds.length > ids.length) {
+            return false;
+        }
+        int i = 0;
+        for (int tagId : sortedTagIds) {
+            while (i < ids.length && ids[i] < tagId) {
+                i++;
+            }
+            if (i == ids.length || ids[i] != tagId) {
                 return false;
             }
-        } return true;
+            i++;
+        }
+        return true;
     }
 
     /**
@@ -116,45 +346,254 @@ class ImageFile extends Observable implements Serializable {
      */
     void hardUpdate(TagManager observerTagManager, ImageFileHistoryManager masterLog) {
         this.addObserver(observerTagManager);
-        this.tagConstructor(this.tags);
+        this.tagManager = observerTagManager;
+        /* The Tags read from the save file are only kept as their ids. */
+        this.tagConstructor(this.tags != null ? this.tags
+                : ImageFileName.parse(this.displayName, observerTagManager).getTags());
+        this.tags = null;
         this.historyManager = masterLog;
     }
 
     /**
-     * Reverts this ImageFile back to some pre-existing state.
+     * Gives this ImageFile its id, and adds all of its tags and its location to the indexes. Holds the lock
+     * of this ImageFile, so that a tag added or removed at the same time, such as through the ImageFileManager
+     * it is being moved from, is counted exactly once.
+     *
+     * @param newId: This ImageFile's position within its ImageFileManager.
+     * @param newTagIndex: The index kept up to date with this ImageFile's tags.
+     * @param newPathIndex: The index kept up to date with this ImageFile's location.
+     */
+    synchronized void index(int newId, TagIndex newTagIndex, PathIndex newPathIndex) {
+        this.id = newId;
+        this.tagIndex = newTagIndex;
+        this.pathIndex = newPathIndex;
+        this.pathIndex.add(this.currentDir, this.id);
+        /* The tags were there as of this ImageFile's last change, which is when they are counted as last used. */
+        long lastChanged = this.nameHistory.isEmpty() ? 0
+                : this.nameHistory.get(this.nameHistory.size() - 1).getTimestamp().getTime();
+        for (int i = 0; i < this.tagIds.length; i++) {
+            this.indexAddedTag(i, new TagIdList(this.tagIds, i, -1, this.tagManager), lastChanged);
+        }
+    }
+
+    /**
+     * Removes all of this ImageFile's tags and its location from its indexes, such as before it is
+     * indexed again or moved to another ImageFileManager, so that its tags stop being counted.
+     */
+    synchronized void unindex() {
+        if (this.tagIndex == null) {
+            return;
+        }
+        for (int i = this.tagIds.length - 1; i >= 0; i--) {
+            this.indexRemovedTag(this.tagManager.getTag(this.tagIds[i]),
+                    new TagIdList(this.tagIds, i, -1, this.tagManager));
+        }
+        this.pathIndex.remove(this.currentDir, this.id);
+        this.tagIndex = null;
+        this.pathIndex = null;
+    }
+
+    /**
+     * Reverts this ImageFile back to some pre-existing state, as a new change. Its tags are changed by
+     * undoing, or redoing, the changes between its current state and that one. The file itself is not
+     * renamed; see writeName.
      *
      * @param historyEntry: Some previous state within this ImageFile.nameHistory.
      */
-    void revertState(ImageFileHistoryEntry historyEntry) {
-        String parse = historyEntry.getDisplayName();
-        this.originalName = this.buildOriginalString(parse);
-        this.tagConstructor(this.buildTagList(parse));
-        this.updateImageFile();
+    synchronized void revertState(ImageFileHistoryEntry historyEntry) {
+        int[] oldIds = this.tagIds;
+        String oldName = this.displayName;
+        this.changeTo(historyEntry, this.nameHistory.indexOf(historyEntry));
+        this.addNameToHistory(oldName, oldIds);
     }
 
     /**
-     * Updates the nameHistory of this ImageFile as it pertains to any changes made.
+     * Undoes the latest change of this ImageFile that is not undone yet, bringing back its previous name
+     * and tags. Its first entry, when it was found, cannot be undone. The file itself is not renamed;
+     * see writeName.
      *
-     * @param newDisplayName: The updated name of the ImageFile.
+     * @return Whether a change was undone.
      */
-    private void addNameToHistory(String oldName, String newDisplayName) {
-        ImageFileHistoryEntry newEntry = new ImageFileHistoryEntry(oldName, newDisplayName);
+    synchronized boolean undo() {
+        int position = this.nameHistory.size() - 1 - this.undoneEntries;
+        if (position <= 0) {
+            return false;
+        }
+        this.logChangeTo(position - 1);
+        this.undoneEntries++;
+        return true;
+    }
+
+    /**
+     * Redoes the latest change of this ImageFile that was undone. The file itself is not renamed; see writeName.
+     *
+     * @return Whether a change was redone.
+     */
+    synchronized boolean redo() {
+        if (this.undoneEntries == 0) {
+            return false;
+        }
+        this.logChangeTo(this.nameHistory.size() - this.undoneEntries);
+        this.undoneEntries--;
+        return true;
+    }
+
+    /**
+     * Updates the nameHistory of this ImageFile as it pertains to any changes made. Changes that were
+     * undone can no longer be redone once another change is made.
+     *
+     * @param oldName: The name of the ImageFile before the change.
+     * @param oldIds: The tag ids of the ImageFile before the change.
+     */
+    private void addNameToHistory(String oldName, int[] oldIds) {
+        if (this.undoneEntries > 0) {
+            this.nameHistory.subList(this.nameHistory.size() - this.undoneEntries, this.nameHistory.size()).clear();
+            this.undoneEntries = 0;
+        }
+        ImageFileHistoryEntry newEntry = this.newHistoryEntry(oldName, oldIds);
         this.nameHistory.add(newEntry);
         this.historyManager.addEntry(newEntry);
     }
 
     /**
-     * Helper that fulfills the operations of adding/removing a tag for this ImageFile.
+     * Helper that changes this ImageFile to the state of an entry of its nameHistory, such as when undoing
+     * or redoing, recording the change in the master log only.
      */
-    private void updateImageFile() {
+    private void logChangeTo(int index) {
+        int[] oldIds = this.tagIds;
         String oldName = this.displayName;
-        this.displayName = this.buildDisplayString(this.originalName, this.tags, this.fileExt);
-        File checkParent = this.currentDir.getParentFile();
-        if (checkParent.isDirectory()) {
-            File testFile = new File(checkParent.getPath() + File.separator + this.displayName);
-            this.setFileDirectory(testFile);
+        this.changeTo(this.nameHistory.get(index), index);
+        this.historyManager.addEntry(this.newHistoryEntry(oldName, oldIds));
+    }
+
+    /**
+     * Helper that records the change from a previous name and tags to the current ones.
+     */
+    private ImageFileHistoryEntry newHistoryEntry(String oldName, int[] oldIds) {
+        return new ImageFileHistoryEntry(oldName, this.displayName, this.tagNames(this.tagIds, oldIds),
+                this.tagNames(oldIds, this.tagIds));
+    }
+
+    /**
+     * Helper that gives this ImageFile the name and tags it had as of an entry of its nameHistory. Only the
+     * tags that differ are added or removed, and the TagManager is only told of those added.
+     *
+     * @param historyEntry: The entry whose state is brought back.
+     * @param index: The position of the entry within nameHistory, or -1 if it is not in it.
+     */
+    private void changeTo(ImageFileHistoryEntry historyEntry, int index) {
+        int[] newIds = index >= 0 ? this.tagIdsAt(index) : null;
+        ImageFileName parsedName;
+        if (newIds == null) {
+            /* Recorded before changes kept their tags, so its state can only be read from its name. */
+            parsedName = ImageFileName.parse(historyEntry.getDisplayName(), this.tagManager);
+            newIds = this.tagManager.getTagIds(parsedName.getTags().toArray(new Tag[0]));
+        } else {
+            /* Its tags are known, so that only its name is read from the entry, without creating any tag. */
+            parsedName = ImageFileName.parseWithoutTags(historyEntry.getDisplayName());
+        }
+        /* Both may differ from the current ones, such as after writeNumberedName gave it "pic (2)". */
+        this.originalName = parsedName.getOriginalName();
+        this.fileExt = parsedName.getFileExt();
+        int[] oldIds = this.tagIds;
+        for (int i = oldIds.length - 1; i >= 0; i--) {
+            if (Arrays.binarySearch(newIds, oldIds[i]) < 0) {
+                this.deleteTagId(Arrays.binarySearch(this.tagIds, oldIds[i]));
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (int tagId : newIds) {
+            int position = Arrays.binarySearch(this.tagIds, tagId);
+            if (position < 0) {
+                this.insertTagId(-position - 1, tagId, this.tagManager.getTag(tagId), now);
+            }
+        }
+        this.displayName = historyEntry.getDisplayName();
+        this.nameOrderIds = ImageFileName.orderTagIds(this.displayName, this.nameOrderIds, this.tagManager);
+    }
+
+    /**
+     * Helper that returns the tag ids this ImageFile had as of an entry of its nameHistory, by undoing the
+     * changes after it, or redoing those up to it, from the current ones. Returns null if one of these
+     * changes did not record its tags.
+     */
+    private int[] tagIdsAt(int index) {
+        int position = this.nameHistory.size() - 1 - this.undoneEntries;
+        BitSet ids = new BitSet();
+        for (int tagId : this.tagIds) {
+            ids.set(tagId);
+        }
+        for (int i = position; i > index; i--) {
+            ImageFileHistoryEntry entry = this.nameHistory.get(i);
+            if (!entry.hasTagChanges()) {
+                return null;
+            }
+            this.applyTagChanges(ids, entry.getRemovedTags(), entry.getAddedTags());
+        }
+        for (int i = position + 1; i <= index; i++) {
+            ImageFileHistoryEntry entry = this.nameHistory.get(i);
+            if (!entry.hasTagChanges()) {
+                return null;
+            }
+            this.applyTagChanges(ids, entry.getAddedTags(), entry.getRemovedTags());
+        }
+        return ids.stream().toArray();
+    }
+
+    /**
+     * Helper that adds and removes tags, by name, from a set of tag ids. Names are only looked up, so that
+     * history does not give ids to names again; those without an id, which no ImageFile carries since this
+     * TagManager was made, are skipped.
+     */
+    private void applyTagChanges(BitSet ids, List<String> added, List<String> removed) {
+        for (String name : removed) {
+            int tagId = this.tagManager.findTagId(name);
+            if (tagId >= 0) {
+                ids.clear(tagId);
+            }
+        }
+        for (String name : added) {
+            int tagId = this.tagManager.findTagId(name);
+            if (tagId >= 0) {
+                ids.set(tagId);
+            }
+        }
+    }
+
+    /**
+     * Helper that returns the names of the tags of a set of tag ids that are not in another.
+     */
+    private String[] tagNames(int[] ids, int[] without) {
+        ArrayList<String> names = new ArrayList<>();
+        for (int tagId : ids) {
+            if (Arrays.binarySearch(without, tagId) < 0) {
+                names.add(this.tagManager.getTag(tagId).getName());
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Saves this ImageFile with its tags as a list of Tags, as ImageFiles have always been saved.
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+        this.tags = this.tagsInNameOrder();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            this.tags = null;
         }
-        this.addNameToHistory(oldName, this.displayName);
+    }
+
+    /**
+     * Helper that fulfills the operations of adding/removing a tag for this ImageFile, without touching its file.
+     *
+     * @param oldIds: The tag ids of this ImageFile before the change.
+     */
+    private void updateImageFile(int[] oldIds) {
+        String oldName = this.displayName;
+        this.displayName = this.buildDisplayString(this.originalName, this.nameOrderIds, this.fileExt);
+        this.addNameToHistory(oldName, oldIds);
     }
 
     /**
@@ -162,75 +601,155 @@ class ImageFile extends Observable implements Serializable {
      *
      * @return String representing this ImageFile's new name.
      */
-    private String buildDisplayString(String givenName, ArrayList<Tag> tagList, String fileExt) {
-        StringBuilder allTags = new StringBuilder();
-        for (Tag tag : tagList) {
+    private String buildDisplayString(String givenName, int[] nameOrder, String fileExt) {
+        StringBuilder allTags = new StringBuilder(givenName);
+        for (int tagId : nameOrder) {
             allTags.append(" ");
-            allTags.append(tag.toString());
+            allTags.append(this.tagManager.getTag(tagId).toString());
         }
-        return givenName + allTags.toString() + fileExt;
+        return allTags.append(fileExt).toString();
     }
 
     /**
      * Helper for constructing an ImageFile with pre-existing tags.
-     * Operates on the following file format: "FILENAME @TAG1 @TAG2.jpg"
-     * Presupposes a space before any tags.
      *
-     * @param givenName: The whole name given to this ImageFile.
-     * @return The original name of this ImageFile.
+     * @param preExistingTags: ***
      */
-    private String buildOriginalString(String givenName) {
-        if (givenName.contains("@")) {
-            return givenName.substring(0, givenName.indexOf("@") - 1);
+    private void tagConstructor(ArrayList<Tag> preExistingTags) {
+        if (this.tagIds != null) {
+            for (int i = this.tagIds.length - 1; i >= 0; i--) {
+                this.indexRemovedTag(this.tagManager.getTag(this.tagIds[i]),
+                        new TagIdList(this.tagIds, i, -1, this.tagManager));
+            }
+        }
+        int[] newIds = preExistingTags.isEmpty() ? NO_TAGS
+                : this.tagManager.getTagIds(preExistingTags.toArray(new Tag[0]));
+        this.tagIds = newIds;
+        int[] nameOrder = new int[newIds.length];
+        int size = 0;
+        BitSet named = new BitSet();
+        for (Tag tag : preExistingTags) {
+            int tagId = this.tagManager.getTagId(tag);
+            if (!named.get(tagId)) {
+                named.set(tagId);
+                nameOrder[size++] = tagId;
+            }
+        }
+        this.nameOrderIds = nameOrder;
+        long now = System.currentTimeMillis();
+        for (Tag tag : preExistingTags) {
+            this.setChanged();
+            this.notifyObservers(tag);
+        }
+        /* Only the tags before each one are paired with it, so that every pair of tags is counted once. */
+        for (int i = 0; i < newIds.length; i++) {
+            this.indexAddedTag(i, new TagIdList(newIds, i, -1, this.tagManager), now);
         }
-        return givenName.substring(0, givenName.lastIndexOf("."));
     }
 
     /**
-     * Helper for constructing an ImageFile with pre-existing tags.
-     * Creates an ArrayList<Tag> from the File's String.
-     *
-     * @param fullFileName: The entire FileName for this ImageFile.
-     * @return All tags found in this name.
-     */
-    private ArrayList<Tag> buildTagList(String fullFileName) {
-        if (fullFileName.contains("@")) {
-            ArrayList<Tag> preTags = new ArrayList<Tag>();
-            String onlyFileName = fullFileName.substring(fullFileName.indexOf("@"),
-                    fullFileName.lastIndexOf("."));
-
-            for (int i = 0; i < onlyFileName.length(); i++) {
-                if (onlyFileName.charAt(i) == '@') {
-
-                    int nextIndex = onlyFileName.indexOf("@", i + 1);
-                    if (nextIndex != -1) {
-                        String newTag = onlyFileName.substring(i + 1, nextIndex - 1);
-                        preTags.add(new Tag(newTag));
-                    } else {
-                        String newTag = onlyFileName.substring(i + 1, onlyFileName.length());
-                        preTags.add(new Tag(newTag));
-                    }
-                }
-            }
-            return preTags;
-        } else {
-            return new ArrayList<Tag>();
+     * Helper that returns this ImageFile's tags in the order of its displayName, which is the order they were
+     * added in.
+     */
+    private ArrayList<Tag> tagsInNameOrder() {
+        ArrayList<Tag> nameOrder = new ArrayList<>(this.nameOrderIds.length + 1);
+        for (int tagId : this.nameOrderIds) {
+            nameOrder.add(this.tagManager.getTag(tagId));
         }
+        return nameOrder;
     }
 
     /**
-     * Helper for constructing an ImageFile with pre-existing tags.
+     * Helper that adds a tag id to tagIds, and last in nameOrderIds, telling the TagManager and the index.
      *
-     * @param preExistingTags: ***
+     * @param position: Where the id goes within tagIds.
      */
-    private void tagConstructor(ArrayList<Tag> preExistingTags) {
-        this.tags = new ArrayList<Tag>();
-        if (!preExistingTags.isEmpty()) {
-            for (Tag tag : preExistingTags) {
-                this.tags.add(tag);
-                this.setChanged();
-                this.notifyObservers(tag);
+    private void insertTagId(int position, int tagId, Tag tag, long time) {
+        int[] newIds = new int[this.tagIds.length + 1];
+        System.arraycopy(this.tagIds, 0, newIds, 0, position);
+        newIds[position] = tagId;
+        System.arraycopy(this.tagIds, position, newIds, position + 1, this.tagIds.length - position);
+        this.tagIds = newIds;
+        int[] newNameOrder = Arrays.copyOf(this.nameOrderIds, this.nameOrderIds.length + 1);
+        newNameOrder[this.nameOrderIds.length] = tagId;
+        this.nameOrderIds = newNameOrder;
+        /* The TagManager learns of the tag before the index counts it. */
+        this.setChanged();
+        this.notifyObservers(tag);
+        this.indexAddedTag(position, new TagIdList(newIds, newIds.length, position, this.tagManager), time);
+    }
+
+    /**
+     * Helper that removes the tag id at some position of tagIds, and from nameOrderIds, telling the index.
+     */
+    private void deleteTagId(int position) {
+        int tagId = this.tagIds[position];
+        Tag tag = this.tagManager.getTag(tagId);
+        int[] newIds = new int[this.tagIds.length - 1];
+        System.arraycopy(this.tagIds, 0, newIds, 0, position);
+        System.arraycopy(this.tagIds, position + 1, newIds, position, newIds.length - position);
+        this.tagIds = newIds;
+        int[] newNameOrder = new int[newIds.length];
+        int size = 0;
+        for (int namedId : this.nameOrderIds) {
+            if (namedId != tagId) {
+                newNameOrder[size++] = namedId;
             }
         }
+        this.nameOrderIds = newNameOrder;
+        this.indexRemovedTag(tag, new TagIdList(newIds, newIds.length, -1, this.tagManager));
+    }
+
+    /**
+     * Helper that records a tag being added to this ImageFile in the index, if it has one.
+     *
+     * @param position: The position of the tag within tagIds.
+     * @param otherTags: The tags paired with it.
+     */
+    private void indexAddedTag(int position, List<Tag> otherTags, long time) {
+        if (this.tagIndex != null) {
+            this.tagIndex.add(this.tagManager.getTag(this.tagIds[position]), this.id, otherTags, time);
+        }
+    }
+
+    /**
+     * Helper that records a tag being removed from this ImageFile in the index, if it has one.
+     */
+    private void indexRemovedTag(Tag tag, List<Tag> otherTags) {
+        if (this.tagIndex != null) {
+            this.tagIndex.remove(tag, this.id, otherTags);
+        }
+    }
+
+    /**
+     * A view of the Tags of some of an ImageFile's tag ids, so that the index can be told of the other tags
+     * of an ImageFile without copying them. Tag ids are never changed in place, so the view stays valid.
+     */
+    private static class TagIdList extends AbstractList<Tag> {
+
+        /* The tag ids seen through this view. */
+        private final int[] ids;
+        /* The number of ids seen, from the first. */
+        private final int size;
+        /* The position of an id left out of the view, or -1 for none. */
+        private final int skipped;
+        private final TagManager tagManager;
+
+        TagIdList(int[] ids, int size, int skipped, TagManager tagManager) {
+            this.ids = ids;
+            this.size = size;
+            this.skipped = skipped;
+            this.tagManager = tagManager;
+        }
+
+        @Override
+        public Tag get(int index) {
+            return this.tagManager.getTag(this.ids[this.skipped >= 0 && index >= this.skipped ? index + 1 : index]);
+        }
+
+        @Override
+        public int size() {
+            return this.skipped >= 0 ? this.size - 1 : this.size;
+        }
     }
 }
@@ -2,42 +2,87 @@ package Images;
 
 import java.io.Serializable;
 import java.sql.Timestamp;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 /**
  * A class representing a new ImageFile update.
+ *
+ * Besides the names of the ImageFile before and after the update, it records what the update did to
+ * its tags, so that the update can be undone or redone without reading the tags back out of a name.
+ * Tags are recorded by name, since tag ids only last as long as their TagManager.
  */
 
 public class ImageFileHistoryEntry implements Serializable {
 
+    private static final long serialVersionUID = -2699177607746371848L;
+
     /* The timestamp for when this update was made. */
     private Timestamp timestamp;
     /* This ImageFileHistoryEntry's name as it appears to the user, with tags. */
     private String displayName;
     /* The previous entry's name. */
     private String oldName;
+    /* The names of the tags added and removed by this update, or null for updates saved before they were
+     * recorded, whose tags can only be read from their names. */
+    private String[] addedTags;
+    private String[] removedTags;
 
     /**
      * Constructs a new ImageFileHistoryEntry with its current displayName and list of tags.
      *
      * @param oldName: The previous name of the corresponding ImageFile.
      * @param newName: The ImageFile's display name at the time of modification.
+     * @param addedTags: The names of the tags added by this update.
+     * @param removedTags: The names of the tags removed by this update.
      *
      * This code was adapted from:
      * @link https://stackoverflow.com/questions/8345023/need-to-get-current-timestamp-in-java
      */
-    ImageFileHistoryEntry(String oldName, String newName) {
+    ImageFileHistoryEntry(String oldName, String newName, String[] addedTags, String[] removedTags) {
         Date date = new Date();
         this.timestamp = new Timestamp(date.getTime());
         this.displayName = newName;
         this.oldName = oldName;
+        this.addedTags = addedTags;
+        this.removedTags = removedTags;
     }
 
-    String getDisplayName() {
+    public String getDisplayName() {
         return this.displayName;
     }
 
+    public String getOldName() {
+        return this.oldName;
+    }
+
+    public Timestamp getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return Whether this update recorded the tags it added and removed.
+     */
+    public boolean hasTagChanges() {
+        return this.addedTags != null;
+    }
+
+    /**
+     * @return The names of the tags added by this update, or an empty list if it did not record them.
+     */
+    public List<String> getAddedTags() {
+        return this.addedTags == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(this.addedTags));
+    }
+
+    /**
+     * @return The names of the tags removed by this update, or an empty list if it did not record them.
+     */
+    public List<String> getRemovedTags() {
+        return this.removedTags == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(this.removedTags));
+    }
+
     @Override
     public String toString() {
         return this.timestamp.toString() + ": " + this.displayName;
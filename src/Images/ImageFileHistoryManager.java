@@ -13,6 +13,8 @@ import java.util.ArrayList;
 
 public class ImageFileHistoryManager implements Serializable, SaveFile {
 
+    private static final long serialVersionUID = -8944668907505834649L;
+
     /* The list of all history entries. */
     private ArrayList<ImageFileHistoryEntry> allHistory;
     /* Enables saving of all data. */
@@ -23,7 +25,7 @@ public class ImageFileHistoryManager implements Serializable, SaveFile {
         this.ifhmSave = new SaveOperation<>(this.allHistory);
     }
 
-    void addEntry(ImageFileHistoryEntry newEntry) {
+    synchronized void addEntry(ImageFileHistoryEntry newEntry) {
         this.allHistory.add(newEntry);
     }
 
@@ -2,10 +2,18 @@ package Images;
 
 import Application.SaveFile;
 import Application.SaveOperation;
+import Diagnostics.Metrics;
+import IO.IoScheduler;
 import Tags.*;
 import java.io.*;
-import java.lang.reflect.Array;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Observer;
 import java.util.Observable;
 import java.io.File;
@@ -28,6 +36,20 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
     private ImageFileHistoryManager masterLog;
     /* The file that the user has currently selected. */
     private File currentFile;
+    /* The id of the ImageFile of currentFile, or -1 if it is not an ImageFile. */
+    private int currentId;
+    /* The ids of all ImageFiles carrying each tag. */
+    private transient TagIndex tagIndex;
+    /* The ids of all ImageFiles in each folder. */
+    private transient PathIndex pathIndex;
+    /* The EXIF and XMP metadata of all ImageFiles, by their id. */
+    private transient MetadataIndex metadataIndex;
+    /* Where the tags of ImageFiles are kept when they change. */
+    private TagStorage tagStorage;
+    /* The ids of all ImageFiles whose tags changed since their attributes were last written. */
+    private BitSet attributesToWrite;
+    /* Renames files to their tagged names in the background, when tags are written in file names. */
+    private transient NameMaterializer nameMaterializer;
 
     /**
      * Constructs an ImageFileManager.
@@ -38,12 +60,26 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
         this.ifmSave = new SaveOperation<>(this.imageFiles);
         this.masterLog = masterLog;
         this.currentFile = null;
+        this.currentId = -1;
+        this.tagIndex = new TagIndex(tagManager);
+        this.pathIndex = new PathIndex();
+        this.metadataIndex = new MetadataIndex();
+        this.tagStorage = TagStorage.FILE_NAME;
+        this.attributesToWrite = new BitSet();
+        this.nameMaterializer = new NameMaterializer(this, IoScheduler.getDefault());
     }
 
     public File getCurrentFile() {
         return this.currentFile;
     }
 
+    /**
+     * @return The id of the ImageFile of the currentFile, or -1 if it is not an ImageFile.
+     */
+    public int getCurrentId() {
+        return this.currentId;
+    }
+
     /**
      * @return An ArrayList of all ImageFiles.
      */
@@ -51,6 +87,48 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
         return this.imageFiles;
     }
 
+    /**
+     * @return The index from each tag to the ids of all ImageFiles carrying it.
+     */
+    public TagIndex getTagIndex() {
+        return this.tagIndex;
+    }
+
+    /**
+     * @return The index from each folder to the ids of all ImageFiles inside it.
+     */
+    public PathIndex getPathIndex() {
+        return this.pathIndex;
+    }
+
+    /**
+     * @return The index of the metadata of all ImageFiles.
+     */
+    public MetadataIndex getMetadataIndex() {
+        return this.metadataIndex;
+    }
+
+    public TagStorage getTagStorage() {
+        return this.tagStorage;
+    }
+
+    /**
+     * Sets where the tags of ImageFiles are kept from now on. Files already tagged keep their names; see
+     * exportNames to write their tags in their names.
+     *
+     * @param tagStorage: Where the tags of ImageFiles are kept when they change.
+     */
+    public void setTagStorage(TagStorage tagStorage) {
+        this.tagStorage = tagStorage;
+    }
+
+    /**
+     * @return The number of ImageFiles, which is also one more than the largest id.
+     */
+    public synchronized int size() {
+        return this.imageFiles.size();
+    }
+
     /**
      * Gets all tags belonging to an ImageFile.
      *
@@ -81,59 +159,194 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
      * Updates an ImageFile with a new tag. Checks whether it exists already–if not,
      * creates a new one and adds it.
      *
+     * May be called from several threads at once, as long as they update different files.
+     *
      * @param selectedFile: The file that is being updated.
      * @param someTag: Tag to be added to the file.
+     * @return The location of the file after the update, which is also the new currentFile.
      */
-    public void updateFileAdd(File selectedFile, Tag someTag) {
-
-        /* Create a temporary ImageFile to check for its existence. */
-        ImageFile testImage = this.findImage(selectedFile);
-
-        /* If it exists, we update and set currentFile to this reference. */
-        if (testImage != null) {
-            testImage.addTag(someTag);
-            this.currentFile = testImage.getCurrentDir();
-        }
+    public File updateFileAdd(File selectedFile, Tag someTag) {
+        return this.updateFileAdd(selectedFile, -1, someTag);
+    }
 
-        /* If not, we create a new one, add it to imageFiles, and set it. */
-        else {
-            ImageFile newImage = new ImageFile(selectedFile, this.tagManager, this.masterLog);
-            newImage.addTag(someTag);
-            this.imageFiles.add(newImage);
-            this.currentFile = newImage.getCurrentDir();
+    /**
+     * Updates an ImageFile with a new tag, given the id of its ImageFile if it is known, so
+     * that it does not need to be looked up.
+     *
+     * May be called from several threads at once, as long as they update different files.
+     *
+     * @param selectedFile: The file that is being updated.
+     * @param id: The id of the ImageFile of this file, or -1 if it is not known.
+     * @param someTag: Tag to be added to the file.
+     * @return The location of the file after the update, which is also the new currentFile.
+     */
+    public File updateFileAdd(File selectedFile, int id, Tag someTag) {
+        long start = Metrics.UPDATE_FILE_ADD.start();
+        try {
+            ImageFile image = this.getImage(id);
+            if (image == null || !selectedFile.equals(image.getCurrentDir())) {
+                image = this.findOrAddImage(selectedFile);
+            }
+            if (image.addTag(someTag)) {
+                this.storeTags(image);
+            }
+            File location = image.getCurrentDir();
+            this.currentFile = location;
+            this.currentId = image.getId();
+            return location;
+        } finally {
+            Metrics.UPDATE_FILE_ADD.stop(start);
         }
     }
 
     /**
      * Checks whether an ImageFile already exists; updates its tags accordingly.
      *
+     * May be called from several threads at once, as long as they update different files.
+     *
      * @param selectedFile: The file that is being updated.
      * @param someTag: Tag of which is to be added to the file.
+     * @return The location of the file after the update, or null if it is not an ImageFile.
      */
-    public void updateFileRemove(File selectedFile, Tag someTag) {
-        ImageFile testImage = this.findImage(selectedFile);
-        if (testImage != null) {
-            testImage.removeTag(someTag);
-            this.currentFile =  testImage.getCurrentDir();
-        } else {
-            this.currentFile = null;
+    public File updateFileRemove(File selectedFile, Tag someTag) {
+        long start = Metrics.UPDATE_FILE_REMOVE.start();
+        try {
+            ImageFile testImage = this.findImage(selectedFile);
+            File location = null;
+            if (testImage != null) {
+                if (testImage.removeTag(someTag)) {
+                    this.storeTags(testImage);
+                }
+                location = testImage.getCurrentDir();
+            }
+            this.currentFile = location;
+            this.currentId = testImage == null ? -1 : testImage.getId();
+            return location;
+        } finally {
+            Metrics.UPDATE_FILE_REMOVE.stop(start);
         }
     }
 
     /**
      * Updates the location of an ImageFile.
      *
+     * May be called from several threads at once, as long as they update different files.
+     *
      * @param selectedFile: The ImageFile whose location is being updated.
      * @param newDir: The new location of the ImageFile.
+     * @return The location of the file after the update, or null if it is not an ImageFile.
      */
-    public void updateLocation(File selectedFile, File newDir) {
+    public File updateLocation(File selectedFile, File newDir) {
         ImageFile testImage = this.findImage(selectedFile);
+        File location = null;
         if (testImage != null) {
             testImage.setFileDirectory(newDir);
-            this.currentFile = testImage.getCurrentDir();
-        } else {
+            location = testImage.getCurrentDir();
+        }
+        this.currentFile = location;
+        this.currentId = testImage == null ? -1 : testImage.getId();
+        return location;
+    }
+
+    /**
+     * Updates the location of every ImageFile within files or directories that were moved, once each,
+     * without touching their files.
+     *
+     * @param moved: The location of every moved file or directory, by its location before the move.
+     */
+    public synchronized void updateMovedFiles(Map<File, File> moved) {
+        HashMap<Integer, File> newLocations = new HashMap<>();
+        for (Map.Entry<File, File> entry : moved.entrySet()) {
+            Path source = entry.getKey().getAbsoluteFile().toPath().normalize();
+            BitSet ids = this.findIdsAt(entry.getKey());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                Path location = this.imageFiles.get(id).getCurrentDir().getAbsoluteFile().toPath()
+                        .normalize();
+                newLocations.put(id, new File(entry.getValue(), source.relativize(location).toString()));
+            }
+        }
+        for (Map.Entry<Integer, File> entry : newLocations.entrySet()) {
+            this.imageFiles.get(entry.getKey()).setLocation(entry.getValue());
+        }
+    }
+
+    /**
+     * Moves every ImageFile at or within a location to another ImageFileManager sharing the same TagManager,
+     * such as when a directory becomes a library root of its own. The ImageFiles are given new ids in both
+     * ImageFileManagers, and keep their tags, history, metadata, pending renames and attributes still to be written.
+     *
+     * @param location: The file or directory whose ImageFiles are moved.
+     * @param target: The ImageFileManager they are moved to.
+     * @return The number of ImageFiles moved.
+     */
+    public int transferUnder(File location, ImageFileManager target) {
+        this.nameMaterializer.flush();
+        ArrayList<ImageFile> transferred = new ArrayList<>();
+        ArrayList<ImageMetadata> transferredMetadata = new ArrayList<>();
+        BitSet transferredAttributes = new BitSet();
+        synchronized (this) {
+            BitSet ids = this.findIdsAt(location);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            ArrayList<ImageFile> kept = new ArrayList<>();
+            ArrayList<ImageMetadata> keptMetadata = new ArrayList<>();
+            for (int id = 0; id < this.imageFiles.size(); id++) {
+                ImageFile image = this.imageFiles.get(id);
+                image.unindex();
+                (ids.get(id) ? transferred : kept).add(image);
+                (ids.get(id) ? transferredMetadata : keptMetadata).add(this.metadataIndex.get(id));
+            }
+            this.imageFiles = kept;
+            this.ifmSave = new SaveOperation<>(kept);
+            this.pathIndex.clear();
+            this.metadataIndex.clear();
+            this.nameMaterializer.clear();
+            synchronized (this.attributesToWrite) {
+                /* Attributes still to be written are kept by the new ids, here or in the target. */
+                BitSet keptAttributes = new BitSet();
+                int keptId = 0;
+                int transferredId = 0;
+                for (int id = 0; id < ids.length() || id < this.attributesToWrite.length(); id++) {
+                    if (ids.get(id)) {
+                        transferredAttributes.set(transferredId++, this.attributesToWrite.get(id));
+                    } else {
+                        keptAttributes.set(keptId++, this.attributesToWrite.get(id));
+                    }
+                }
+                this.attributesToWrite.clear();
+                this.attributesToWrite.or(keptAttributes);
+            }
             this.currentFile = null;
+            this.currentId = -1;
+            for (int id = 0; id < kept.size(); id++) {
+                kept.get(id).index(id, this.tagIndex, this.pathIndex);
+                if (keptMetadata.get(id) != null) {
+                    this.metadataIndex.put(id, keptMetadata.get(id));
+                }
+                if (kept.get(id).hasPendingName()) {
+                    this.nameMaterializer.schedule(id);
+                }
+            }
+        }
+        synchronized (target) {
+            for (int i = 0; i < transferred.size(); i++) {
+                ImageFile image = transferred.get(i);
+                target.addImage(image);
+                if (transferredMetadata.get(i) != null) {
+                    target.metadataIndex.put(image.getId(), transferredMetadata.get(i));
+                }
+                if (image.hasPendingName()) {
+                    target.nameMaterializer.schedule(image.getId());
+                }
+                if (transferredAttributes.get(i)) {
+                    synchronized (target.attributesToWrite) {
+                        target.attributesToWrite.set(image.getId());
+                    }
+                }
+            }
         }
+        return transferred.size();
     }
 
     /**
@@ -145,15 +358,104 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
     public void addDirectoryFile(File selectedFile) {
 
         /* Arrives here iff the File had an "@" in it. */
-        ImageFile testImage = this.findImage(selectedFile);
-        if (testImage == null) {
-            ImageFile newImage = new ImageFile(selectedFile, this.tagManager, this.masterLog);
-            this.imageFiles.add(newImage);
+        this.findOrAddImage(selectedFile);
+    }
+
+    /**
+     * Adds the files among a list that are not ImageFiles yet, but whose attributes hold tags written by a
+     * library keeping its tags in attributes, as ImageFiles with these tags.
+     *
+     * @param dir: The directory all of these files are within, such as the scanned directory.
+     * @param files: The files being processed, such as all image files of a scanned directory.
+     */
+    public void addAttributeFiles(File dir, List<File> files) {
+        /* Only the ImageFiles within the directory are looked at, through the index of folders. */
+        Map<File, Integer> knownFiles = this.mapIdsUnder(dir);
+        for (File file : files) {
+            if (!knownFiles.containsKey(file)) {
+                String displayName = TagAttributes.read(file);
+                if (displayName != null && displayName.contains("@")) {
+                    this.findOrAddImage(file, displayName);
+                }
+            }
         }
     }
 
     /**
-     * Reverts the state of an ImageFile to some previous state.
+     * Renames the files of all ImageFiles still waiting to be renamed to their tagged names right away,
+     * rather than in the background.
+     */
+    public void writePendingNames() {
+        this.nameMaterializer.flush();
+    }
+
+    /**
+     * Renames the files of the ImageFiles at or within a location that are still waiting to be renamed to
+     * their tagged names right away, leaving all others to be renamed in the background.
+     *
+     * @param location: The file or directory whose ImageFiles are renamed, as seen by the user.
+     */
+    public void writePendingNamesAt(File location) {
+        BitSet ids = this.findIdsAt(location);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            ImageFile image = this.getImage(id);
+            /* Still scheduled in the background, where it is then found renamed already. */
+            if (image != null && image.hasPendingName()) {
+                image.writePendingName();
+            }
+        }
+    }
+
+    /**
+     * Renames the files still waiting to be renamed and stops the threads of this ImageFileManager, once it
+     * is no longer used, such as when its ImageFiles were moved to another one.
+     */
+    public void close() {
+        this.nameMaterializer.close();
+    }
+
+    /**
+     * Returns where a file is on disk, which is not where it is seen by the user while its ImageFile waits
+     * to be renamed to its tagged name. Only needed to read the file itself.
+     *
+     * @param selectedFile: The location of a file, as seen by the user.
+     * @return Where this file is on disk.
+     */
+    public File getFileOnDisk(File selectedFile) {
+        if (selectedFile.exists()) {
+            return selectedFile;
+        }
+        ImageFile image = this.findImage(selectedFile);
+        return image == null ? selectedFile : image.getFileOnDisk();
+    }
+
+    /**
+     * Writes the tags of all ImageFiles within a directory in their file names, renaming every file whose
+     * name does not match its tags, such as after tagging with tags kept out of file names.
+     *
+     * @param dir: The directory whose ImageFiles are renamed, with its sub-directories; or null for all.
+     * @return The number of files renamed.
+     */
+    public int exportNames(File dir) {
+        BitSet ids;
+        synchronized (this) {
+            ids = dir == null ? new BitSet() : this.pathIndex.findIdsUnder(dir);
+            if (dir == null) {
+                ids.set(0, this.imageFiles.size());
+            }
+        }
+        int renamed = 0;
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            if (this.getImage(id).writeName()) {
+                renamed++;
+            }
+        }
+        return renamed;
+    }
+
+    /**
+     * Reverts the state of an ImageFile to some previous state. Its file is renamed once, however many
+     * changes are undone.
      *
      * @param selectedFile: The File of which is being reverted.
      * @param oldState: The information as to how it is being reverted.
@@ -162,9 +464,53 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
         ImageFile test = this.findImage(selectedFile);
         if (test != null) {
             test.revertState(oldState);
-            this.currentFile = test.getCurrentDir();
+            this.storeTags(test);
+        }
+        this.setCurrent(selectedFile, test);
+    }
+
+    /**
+     * Undoes the latest change to an ImageFile's tags that is not undone yet.
+     *
+     * @param selectedFile: The file whose change is undone.
+     * @return Whether a change was undone. The location of the file afterwards is the new currentFile.
+     */
+    public boolean undo(File selectedFile) {
+        ImageFile test = this.findImage(selectedFile);
+        boolean isUndone = test != null && test.undo();
+        if (isUndone) {
+            this.storeTags(test);
+        }
+        this.setCurrent(selectedFile, test);
+        return isUndone;
+    }
+
+    /**
+     * Redoes the latest change to an ImageFile's tags that was undone.
+     *
+     * @param selectedFile: The file whose change is redone.
+     * @return Whether a change was redone. The location of the file afterwards is the new currentFile.
+     */
+    public boolean redo(File selectedFile) {
+        ImageFile test = this.findImage(selectedFile);
+        boolean isRedone = test != null && test.redo();
+        if (isRedone) {
+            this.storeTags(test);
+        }
+        this.setCurrent(selectedFile, test);
+        return isRedone;
+    }
+
+    /**
+     * Helper that makes an ImageFile, or a file without one, the current file.
+     */
+    private void setCurrent(File selectedFile, ImageFile image) {
+        if (image != null) {
+            this.currentFile = image.getCurrentDir();
+            this.currentId = image.getId();
         } else {
             this.currentFile = selectedFile;
+            this.currentId = -1;
         }
     }
 
@@ -172,52 +518,212 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
      * Returns all ImageFiles with the set of tags specified.
      *
      * @param tags Tags specified by the user to be searched for.
-     * @return An ArrayList containing all files with relevant tags.
-     */
-    public ArrayList<File> gatherFilesWithTags(Tag[] tags, File dir, boolean filterOnlyDirFiles) {
-        ArrayList<File> gatheredFiles = new ArrayList<>();
-        for (ImageFile imageFile : imageFiles) {
-            if (imageFile.hasAllTags(tags)) {
-                if (!filterOnlyDirFiles) {
-                    gatheredFiles.add(imageFile.getCurrentDir());
-                } else if (isInSubDirectory(dir, imageFile.getCurrentDir())) {
-                    gatheredFiles.add(imageFile.getCurrentDir());
+     * @return A list containing all files with relevant tags.
+     */
+    public List<File> gatherFilesWithTags(Tag[] tags, File dir, boolean filterOnlyDirFiles) {
+        return this.gatherFiles(this.findIdsWithAllTags(tags), filterOnlyDirFiles ? dir : null);
+    }
+
+    /**
+     * Returns the ids of all ImageFiles with the set of tags specified, by intersecting their
+     * posting lists from the shortest to the longest.
+     *
+     * @param tags Tags specified by the user to be searched for.
+     * @return The ids of all ImageFiles carrying every tag.
+     */
+    public BitSet findIdsWithAllTags(Tag[] tags) {
+        BitSet ids = new BitSet();
+        if (tags.length == 0) {
+            ids.set(0, this.size());
+            return ids;
+        }
+        synchronized (this.tagIndex) {
+            PostingList[] postingLists = new PostingList[tags.length];
+            for (int i = 0; i < tags.length; i++) {
+                postingLists[i] = this.tagIndex.get(tags[i]);
+                if (postingLists[i] == null) {
+                    return ids;
                 }
             }
+            Arrays.sort(postingLists, Comparator.comparingInt(PostingList::size));
+            postingLists[0].addTo(ids);
+            for (int i = 1; i < postingLists.length && !ids.isEmpty(); i++) {
+                postingLists[i].retainIn(ids);
+            }
         }
-        return gatheredFiles;
+        return ids;
     }
 
     /**
-     * Helper that checks whether a file is in a subdirectory.
+     * Returns the location of every ImageFile in a set of ids, in order of id, along with their ids.
      *
-     * @param dirToSearch The directory we're checking.
-     * @param checkFile The file we're checking for.
-     * @return Whether this is within the directory.
+     * @param ids The ids of the ImageFiles being gathered.
+     * @param dir The only directory, with its sub-directories, from which files are gathered; or null for all.
+     * @return A list containing the location of each of these ImageFiles, as they were when it was made.
+     */
+    public synchronized List<File> gatherFiles(BitSet ids, File dir) {
+        if (dir != null) {
+            ids = (BitSet) ids.clone();
+            ids.and(this.pathIndex.findIdsUnder(dir));
+        }
+        if (ids.length() > this.imageFiles.size()) {
+            ids = ids.get(0, this.imageFiles.size());
+        }
+        int[] gatheredIds = ids.stream().toArray();
+        File[] gatheredFiles = new File[gatheredIds.length];
+        for (int i = 0; i < gatheredIds.length; i++) {
+            gatheredFiles[i] = this.imageFiles.get(gatheredIds[i]).getCurrentDir();
+        }
+        return new GatheredFiles(gatheredFiles, gatheredIds);
+    }
+
+    /**
+     * Returns the ids of all ImageFiles within a directory or any of its sub-directories, by their
+     * location, so that the id of each file in the directory can be found without looking it up.
      *
-     * @link https://stackoverflow.com/questions/18227634/check-if-file-is-in-subdirectory
+     * @param dir: The directory being looked through, or null for all ImageFiles.
+     * @return The id of the ImageFile of every file under this directory that is an ImageFile.
      */
-    private boolean isInSubDirectory(File dirToSearch, File checkFile) {
-        if (checkFile == null)
-            return false;
-        if (checkFile.equals(dirToSearch))
-            return true;
-        return isInSubDirectory(dirToSearch, checkFile.getParentFile());
+    public synchronized HashMap<File, Integer> mapIdsUnder(File dir) {
+        BitSet ids;
+        if (dir != null) {
+            ids = this.pathIndex.findIdsUnder(dir);
+        } else {
+            ids = new BitSet();
+            ids.set(0, this.imageFiles.size());
+        }
+        HashMap<File, Integer> idsByFile = new HashMap<>();
+        for (int id = ids.nextSetBit(0); id >= 0 && id < this.imageFiles.size(); id = ids.nextSetBit(id + 1)) {
+            idsByFile.put(this.imageFiles.get(id).getCurrentDir(), id);
+        }
+        return idsByFile;
     }
 
     /**
-     * Helper that returns an ImageFile with a memory reference to the correct ImageFile.
+     * @param id: The id of an ImageFile.
+     * @return The ImageFile with this id, or null if there is none.
+     */
+    public synchronized ImageFile getImage(int id) {
+        return id >= 0 && id < this.imageFiles.size() ? this.imageFiles.get(id) : null;
+    }
+
+    /**
+     * @param id: The id of an ImageFile.
+     * @return Where the file of the ImageFile with this id is on disk, or null if there is none.
+     */
+    public synchronized File getLocation(int id) {
+        ImageFile image = this.getImage(id);
+        return image == null ? null : image.getFileOnDisk();
+    }
+
+    /**
+     * Helper that returns an ImageFile with a memory reference to the correct ImageFile. Only the ImageFiles
+     * in the folder of the file are looked at.
      *
      * @param selectedFile: The ImageFile containing the relevant content.
      * @return An ImageFile with the correct reference to memory address.
      */
-    public ImageFile findImage(File selectedFile) {
-        for (ImageFile thisImage : this.imageFiles) {
-            if (selectedFile.equals(thisImage.getCurrentDir())) {
-                return thisImage;
+    public synchronized ImageFile findImage(File selectedFile) {
+        long start = Metrics.FIND_IMAGE.start();
+        try {
+            for (int id : this.pathIndex.findIdsBeside(selectedFile)) {
+                ImageFile thisImage = this.imageFiles.get(id);
+                if (selectedFile.equals(thisImage.getCurrentDir())) {
+                    return thisImage;
+                }
+            }
+            return null;
+        } finally {
+            Metrics.FIND_IMAGE.stop(start);
+        }
+    }
+
+    /**
+     * Helper that returns the ImageFile of a File, creating it if this File has not been treated yet.
+     *
+     * @param selectedFile: The File being looked up.
+     * @return The ImageFile of this File.
+     */
+    private synchronized ImageFile findOrAddImage(File selectedFile) {
+        return this.findOrAddImage(selectedFile, selectedFile.getName());
+    }
+
+    /**
+     * Helper that returns the ImageFile of a File, creating it with some tagged name if this File has not
+     * been treated yet.
+     */
+    private synchronized ImageFile findOrAddImage(File selectedFile, String displayName) {
+        ImageFile image = this.findImage(selectedFile);
+        if (image == null) {
+            image = new ImageFile(selectedFile, displayName, this.tagManager, this.masterLog);
+            this.addImage(image);
+        }
+        return image;
+    }
+
+    /**
+     * Helper that returns the ids of all ImageFiles at or within a location, whether it is a file or a
+     * directory.
+     */
+    private synchronized BitSet findIdsAt(File location) {
+        Path path = location.getAbsoluteFile().toPath().normalize();
+        BitSet ids = this.pathIndex.findIdsUnder(location);
+        BitSet siblings = this.pathIndex.findIdsIn(location.getAbsoluteFile().getParentFile());
+        for (int id = siblings.nextSetBit(0); id >= 0; id = siblings.nextSetBit(id + 1)) {
+            if (this.imageFiles.get(id).getCurrentDir().getAbsoluteFile().toPath().normalize().equals(path)) {
+                ids.set(id);
             }
         }
-        return null;
+        return ids;
+    }
+
+    /**
+     * Helper that keeps the tags of an ImageFile after they changed, as set by tagStorage: by renaming its
+     * file in the background, by doing nothing as they are already in this ImageFileManager, or by writing
+     * its attributes when this ImageFileManager is next saved.
+     */
+    private void storeTags(ImageFile image) {
+        switch (this.tagStorage) {
+            case FILE_NAME:
+                if (image.markNamePending()) {
+                    this.nameMaterializer.schedule(image.getId());
+                }
+                break;
+            case ATTRIBUTE:
+                synchronized (this.attributesToWrite) {
+                    this.attributesToWrite.set(image.getId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Helper that writes the attributes of every ImageFile whose tags changed since they were last written.
+     */
+    private void writeAttributes() {
+        BitSet ids;
+        synchronized (this.attributesToWrite) {
+            ids = (BitSet) this.attributesToWrite.clone();
+            this.attributesToWrite.clear();
+        }
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            ImageFile image = this.getImage(id);
+            if (image != null) {
+                TagAttributes.write(image.getFileOnDisk(), image.getDisplayName());
+            }
+        }
+    }
+
+    /**
+     * Adds a new ImageFile, giving it the next id.
+     *
+     * @param image: The ImageFile being added.
+     */
+    synchronized void addImage(ImageFile image) {
+        image.index(this.imageFiles.size(), this.tagIndex, this.pathIndex);
+        this.imageFiles.add(image);
     }
 
     /**
@@ -230,16 +736,19 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
     }
 
     /**
-     * Updates all ImageFiles to remove all tags. Called from the TagManager.
+     * Updates all ImageFiles to remove all tags. Called from the TagManager, outside of its lock; holds the
+     * lock of this ImageFileManager, so that no ImageFile is added or given a new id meanwhile.
      *
      * @param o: The TagManager being updated.
      * @param arg: The Tag to be deleted.
      */
     @Override
-    public void update(java.util.Observable o, Object arg) {
+    public synchronized void update(java.util.Observable o, Object arg) {
         Tag tag = (Tag) arg;
         for (ImageFile imageFile : this.imageFiles) {
-            imageFile.removeTag(tag);
+            if (imageFile.removeTag(tag)) {
+                this.storeTags(imageFile);
+            }
         }
     }
 
@@ -250,18 +759,40 @@ public class ImageFileManager implements Observer, Serializable, SaveFile {
      */
     @Override
     public void readFromFile(String filePath)  {
+        long start = Metrics.READ_FROM_FILE.start();
+        /* The tags of the ImageFiles being replaced stop being counted by the shared TagManager. */
+        for (ImageFile image : this.imageFiles) {
+            image.unindex();
+        }
         this.ifmSave.readFromFile(filePath);
         this.imageFiles = this.ifmSave.getData();
         this.hardUpdate();
+        this.tagIndex.clear();
+        this.pathIndex.clear();
+        this.metadataIndex.clear();
+        synchronized (this.attributesToWrite) {
+            this.attributesToWrite.clear();
+        }
+        this.nameMaterializer.clear();
+        for (int id = 0; id < this.imageFiles.size(); id++) {
+            this.imageFiles.get(id).index(id, this.tagIndex, this.pathIndex);
+            /* Renames that were still waiting when the file was saved. */
+            if (this.imageFiles.get(id).hasPendingName()) {
+                this.nameMaterializer.schedule(id);
+            }
+        }
+        Metrics.READ_FROM_FILE.stop(start);
     }
 
     /**
-     * Serializes all imageFileManager data and writes it to a file.
+     * Serializes all imageFileManager data and writes it to a file. If tags are kept in attributes, also
+     * writes the attributes of every ImageFile whose tags changed since the last save.
      *
      * @param filePath: The location of the file to be read from.
      */
     @Override
     public void saveToFile(String filePath) {
         this.ifmSave.saveToFile(filePath);
+        this.writeAttributes();
     }
 }
@@ -0,0 +1,159 @@
+package Images;
+
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+/**
+ * A class representing a parsed ImageFile name.
+ * Operates on the following file format: "FILENAME @TAG1 @TAG2.jpg"
+ */
+final class ImageFileName {
+
+    /* The name without any tags or a file extension. */
+    private final String originalName;
+    /* The file extension, including its leading ".". */
+    private final String fileExt;
+    /* The tags found in the name, interned through the TagManager. */
+    private final ArrayList<Tag> tags;
+
+    private ImageFileName(String originalName, String fileExt, ArrayList<Tag> tags) {
+        this.originalName = originalName;
+        this.fileExt = fileExt;
+        this.tags = tags;
+    }
+
+    String getOriginalName() {
+        return this.originalName;
+    }
+
+    String getFileExt() {
+        return this.fileExt;
+    }
+
+    ArrayList<Tag> getTags() {
+        return this.tags;
+    }
+
+    /**
+     * Parses a whole file name, looking at each of its characters at most once. Only the original name, the file
+     * extension and each tag name are ever copied out of the given String; tag names that already
+     * exist are resolved to the TagManager's Tag instead of allocating a new one.
+     * Presupposes a space before any tags.
+     *
+     * @param fullFileName: The entire FileName for an ImageFile.
+     * @param tagManager: The TagManager used to intern all tags found in the name.
+     * @return The parsed name.
+     */
+    static ImageFileName parse(String fullFileName, TagManager tagManager) {
+        ArrayList<Tag> tags = new ArrayList<>(4);
+        return parse(fullFileName, (start, end) -> addTag(fullFileName, start, end, tagManager, tags), tags);
+    }
+
+    /**
+     * Parses the original name and file extension of a whole file name, without creating any tag, such as to
+     * bring back those of an earlier name of an ImageFile whose tags are known already.
+     *
+     * @param fullFileName: The entire FileName for an ImageFile.
+     * @return The parsed name, with no tags.
+     */
+    static ImageFileName parseWithoutTags(String fullFileName) {
+        return parse(fullFileName, (start, end) -> {
+        }, new ArrayList<>(0));
+    }
+
+    /**
+     * Helper that parses a whole file name, handing each of its tags to a visitor which fills the given tags.
+     */
+    private static ImageFileName parse(String fullFileName, TagVisitor visitor, ArrayList<Tag> tags) {
+        int extStart = extensionStart(fullFileName);
+        String fileExt = fullFileName.substring(extStart);
+        int firstTag = forEachTag(fullFileName, extStart, visitor);
+        if (firstTag == -1) {
+            return new ImageFileName(fullFileName.substring(0, extStart), fileExt, tags);
+        }
+        return new ImageFileName(fullFileName.substring(0, Math.max(firstTag - 1, 0)), fileExt, tags);
+    }
+
+    /**
+     * Orders some tag ids as their tags appear in a file name, without creating any tag, such as to bring
+     * back the order of the tags of an earlier name of an ImageFile.
+     *
+     * @param fullFileName: The entire FileName for an ImageFile.
+     * @param tagIds: The ids being ordered, each once.
+     * @param tagManager: The TagManager giving the id of every tag name.
+     * @return The same ids, in the order of the name; those whose tag is not in it come last, in their given order.
+     */
+    static int[] orderTagIds(String fullFileName, int[] tagIds, TagManager tagManager) {
+        BitSet wanted = new BitSet();
+        for (int tagId : tagIds) {
+            wanted.set(tagId);
+        }
+        int[] ordered = new int[tagIds.length];
+        int[] size = new int[1];
+        forEachTag(fullFileName, extensionStart(fullFileName), (start, end) -> {
+            int tagId = end > start ? tagManager.findTagId(fullFileName.substring(start, end)) : -1;
+            if (tagId >= 0 && wanted.get(tagId)) {
+                wanted.clear(tagId);
+                ordered[size[0]++] = tagId;
+            }
+        });
+        for (int tagId : tagIds) {
+            if (wanted.get(tagId)) {
+                ordered[size[0]++] = tagId;
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Helper that returns where the file extension of a name starts, or its length if it has none.
+     */
+    private static int extensionStart(String fullFileName) {
+        int extStart = fullFileName.lastIndexOf('.');
+        return extStart == -1 ? fullFileName.length() : extStart;
+    }
+
+    /**
+     * Helper that hands the start and end of every tag name within a file name, in order, to a visitor.
+     *
+     * @return The position of the first tag's "@", or -1 if the name has no tags.
+     */
+    private static int forEachTag(String fullFileName, int extStart, TagVisitor visitor) {
+        int firstTag = fullFileName.indexOf('@');
+        if (firstTag == -1 || firstTag > extStart) {
+            return -1;
+        }
+        int tagStart = firstTag + 1;
+        int nextTag = fullFileName.indexOf('@', tagStart);
+        while (nextTag != -1 && nextTag < extStart) {
+            visitor.visit(tagStart, nextTag - 1);
+            tagStart = nextTag + 1;
+            nextTag = fullFileName.indexOf('@', tagStart);
+        }
+        visitor.visit(tagStart, extStart);
+        return firstTag;
+    }
+
+    /**
+     * Is handed the start and end of each tag name found within a file name.
+     */
+    private interface TagVisitor {
+        void visit(int start, int end);
+    }
+
+    /**
+     * Helper that interns the tag found between start and end, skipping empty or repeated tags.
+     */
+    private static void addTag(String fullFileName, int start, int end, TagManager tagManager, ArrayList<Tag> tags) {
+        if (end <= start) {
+            return;
+        }
+        Tag tag = tagManager.createTag(fullFileName, start, end);
+        if (!tags.contains(tag)) {
+            tags.add(tag);
+        }
+    }
+}
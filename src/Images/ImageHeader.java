@@ -0,0 +1,81 @@
+package Images;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * What the header of an image file says about it: its format and its dimensions. Read when a
+ * directory is scanned, without decoding the image, and kept with the size and modification time
+ * the file had then, so that it is only read again once the file changes.
+ */
+public class ImageHeader implements Serializable {
+
+    private static final long serialVersionUID = 3071840459235521774L;
+
+    /**
+     * The formats of image files recognized by their header.
+     */
+    public enum Format {
+        JPEG, PNG, BMP, GIF, TIFF
+    }
+
+    /* The path of the image file. */
+    private final String path;
+    /* The size of the file in bytes, and when it was last modified, as of when its header was read. */
+    private final long length;
+    private final long lastModified;
+    /* The format of the image. */
+    private final Format format;
+    /* The dimensions of the image in pixels, or 0 if the header does not give them. */
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructs a new ImageHeader.
+     *
+     * @param file: The image file.
+     * @param length: The size of the file in bytes, as of when its header was read.
+     * @param lastModified: When the file was last modified, as of when its header was read.
+     * @param format: The format of the image.
+     * @param width: The width of the image in pixels, or 0 if unknown.
+     * @param height: The height of the image in pixels, or 0 if unknown.
+     */
+    public ImageHeader(File file, long length, long lastModified, Format format, int width, int height) {
+        this.path = file.getPath();
+        this.length = length;
+        this.lastModified = lastModified;
+        this.format = format;
+        this.width = width;
+        this.height = height;
+    }
+
+    public String getPath() {
+        return this.path;
+    }
+
+    public Format getFormat() {
+        return this.format;
+    }
+
+    public int getWidth() {
+        return this.width;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * @param length: The current size of the file in bytes.
+     * @param lastModified: When the file was last modified.
+     * @return Whether the file is unchanged since its header was read.
+     */
+    boolean isCurrent(long length, long lastModified) {
+        return this.length == length && this.lastModified == lastModified;
+    }
+
+    @Override
+    public String toString() {
+        return this.width + "x" + this.height + " " + this.format;
+    }
+}
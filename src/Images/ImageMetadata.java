@@ -0,0 +1,45 @@
+package Images;
+
+/**
+ * The metadata of an image read from its EXIF or XMP data: when it was taken, with which camera,
+ * and how it should be rotated to be shown upright.
+ */
+public class ImageMetadata {
+
+    /* When the image was taken, in milliseconds since the epoch in the local time zone, or 0 if unknown. */
+    private final long captureTime;
+    /* The make and model of the camera, or null if unknown. */
+    private final String camera;
+    /* The EXIF orientation of the image, from 1 to 8, or 0 if unknown. */
+    private final int orientation;
+
+    /**
+     * Constructs new ImageMetadata.
+     *
+     * @param captureTime: When the image was taken, in milliseconds since the epoch, or 0 if unknown.
+     * @param camera: The make and model of the camera, or null if unknown.
+     * @param orientation: The EXIF orientation of the image, from 1 to 8, or 0 if unknown.
+     */
+    public ImageMetadata(long captureTime, String camera, int orientation) {
+        this.captureTime = captureTime;
+        this.camera = camera;
+        this.orientation = orientation;
+    }
+
+    public long getCaptureTime() {
+        return this.captureTime;
+    }
+
+    public String getCamera() {
+        return this.camera;
+    }
+
+    public int getOrientation() {
+        return this.orientation;
+    }
+
+    @Override
+    public String toString() {
+        return "taken " + this.captureTime + " with " + this.camera + ", orientation " + this.orientation;
+    }
+}
@@ -0,0 +1,158 @@
+package Images;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * The metadata of all ImageFiles, by their id, stored as one array per field so that a query on
+ * one field only reads that field. Camera names are stored once each, and referred to by number.
+ *
+ * Filled in the background after directories are scanned, so the metadata of an ImageFile may not
+ * be there yet; such ImageFiles match no query on metadata.
+ */
+public class MetadataIndex {
+
+    /* The initial number of ImageFiles there is room for. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /* When each ImageFile was taken, or 0 if unknown. */
+    private long[] captureTimes;
+    /* The number of the camera of each ImageFile, counting from 1, or 0 if unknown. */
+    private int[] cameras;
+    /* The EXIF orientation of each ImageFile, or 0 if unknown. */
+    private byte[] orientations;
+    /* The ids of all ImageFiles whose metadata was read. */
+    private BitSet read;
+    /* The name of every camera, and the number of each name. */
+    private ArrayList<String> cameraNames;
+    private HashMap<String, Integer> cameraNumbers;
+
+    MetadataIndex() {
+        this.captureTimes = new long[INITIAL_CAPACITY];
+        this.cameras = new int[INITIAL_CAPACITY];
+        this.orientations = new byte[INITIAL_CAPACITY];
+        this.read = new BitSet();
+        this.cameraNames = new ArrayList<>();
+        this.cameraNumbers = new HashMap<>();
+    }
+
+    /**
+     * @param id: The id of an ImageFile.
+     * @return Whether the metadata of this ImageFile was read.
+     */
+    public synchronized boolean contains(int id) {
+        return this.read.get(id);
+    }
+
+    /**
+     * @return The number of ImageFiles whose metadata was read.
+     */
+    public synchronized int size() {
+        return this.read.cardinality();
+    }
+
+    /**
+     * Records the metadata of an ImageFile, replacing any read before.
+     *
+     * @param id: The id of the ImageFile.
+     * @param metadata: Its metadata.
+     */
+    public synchronized void put(int id, ImageMetadata metadata) {
+        if (id >= this.captureTimes.length) {
+            int capacity = Math.max(id + 1, this.captureTimes.length * 2);
+            this.captureTimes = Arrays.copyOf(this.captureTimes, capacity);
+            this.cameras = Arrays.copyOf(this.cameras, capacity);
+            this.orientations = Arrays.copyOf(this.orientations, capacity);
+        }
+        this.captureTimes[id] = metadata.getCaptureTime();
+        this.cameras[id] = metadata.getCamera() == null ? 0 : this.cameraNumbers.computeIfAbsent(metadata.getCamera(),
+                name -> {
+                    this.cameraNames.add(name);
+                    return this.cameraNames.size();
+                });
+        this.orientations[id] = (byte) metadata.getOrientation();
+        this.read.set(id);
+    }
+
+    /**
+     * @param id: The id of an ImageFile.
+     * @return The metadata of this ImageFile, or null if it was not read.
+     */
+    public synchronized ImageMetadata get(int id) {
+        if (!this.read.get(id)) {
+            return null;
+        }
+        return new ImageMetadata(this.captureTimes[id],
+                this.cameras[id] == 0 ? null : this.cameraNames.get(this.cameras[id] - 1), this.orientations[id]);
+    }
+
+    /**
+     * Returns the ids of all ImageFiles taken within a period of time.
+     *
+     * @param from: The start of the period, in milliseconds since the epoch.
+     * @param to: The end of the period, excluded.
+     * @return The ids of all ImageFiles taken at or after from, and before to.
+     */
+    public synchronized BitSet findIdsTakenBetween(long from, long to) {
+        BitSet ids = new BitSet();
+        long[] times = this.captureTimes;
+        for (int id = this.read.nextSetBit(0); id >= 0; id = this.read.nextSetBit(id + 1)) {
+            if (times[id] != 0 && times[id] >= from && times[id] < to) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the ids of all ImageFiles taken with a camera whose make or model contains some text,
+     * whatever its case.
+     *
+     * @param text: The text being looked for, such as "canon".
+     * @return The ids of all ImageFiles taken with a matching camera.
+     */
+    public synchronized BitSet findIdsWithCamera(String text) {
+        String lowerText = text.toLowerCase();
+        boolean[] matches = new boolean[this.cameraNames.size() + 1];
+        boolean any = false;
+        for (int i = 0; i < this.cameraNames.size(); i++) {
+            matches[i + 1] = this.cameraNames.get(i).toLowerCase().contains(lowerText);
+            any |= matches[i + 1];
+        }
+        BitSet ids = new BitSet();
+        if (!any) {
+            return ids;
+        }
+        for (int id = this.read.nextSetBit(0); id >= 0; id = this.read.nextSetBit(id + 1)) {
+            if (matches[this.cameras[id]]) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @param orientation: An EXIF orientation, from 1 to 8.
+     * @return The ids of all ImageFiles with this orientation.
+     */
+    public synchronized BitSet findIdsWithOrientation(int orientation) {
+        BitSet ids = new BitSet();
+        for (int id = this.read.nextSetBit(0); id >= 0; id = this.read.nextSetBit(id + 1)) {
+            if (this.orientations[id] == orientation) {
+                ids.set(id);
+            }
+        }
+        return ids;
+    }
+
+    synchronized void clear() {
+        Arrays.fill(this.captureTimes, 0);
+        Arrays.fill(this.cameras, 0);
+        Arrays.fill(this.orientations, (byte) 0);
+        this.read.clear();
+        this.cameraNames.clear();
+        this.cameraNumbers.clear();
+    }
+}
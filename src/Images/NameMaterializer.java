@@ -0,0 +1,157 @@
+package Images;
+
+import IO.IoScheduler;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renames the files of ImageFiles to their tagged names in the background, when tags are written in
+ * file names. Tag edits only mark an ImageFile as waiting to be renamed; shortly after, all waiting
+ * ImageFiles are renamed through the IoScheduler, as many at once as the mount of each file allows.
+ * An ImageFile edited many times while it waits is renamed once, to its latest name.
+ *
+ * A file whose new name is taken by another file is given a numbered name instead; see
+ * ImageFile.writePendingName. A rename that fails otherwise, such as on a share that is briefly
+ * unreachable, is tried again a few times, after which the ImageFile keeps waiting until it is edited
+ * again or its library is loaded again.
+ */
+class NameMaterializer {
+
+    /* How long edits are gathered before their files are renamed, in milliseconds. */
+    private static final long DELAY = 250;
+    /* The number of times the rename of an ImageFile is tried before it is given up. */
+    private static final int MAX_ATTEMPTS = 5;
+
+    /* The ImageFileManager whose ImageFiles are renamed. */
+    private final ImageFileManager imageFileManager;
+    /* Starts renaming the waiting ImageFiles once edits were gathered. */
+    private final ScheduledExecutorService scheduler;
+    /* Renames files in the background. */
+    private final IoScheduler ioScheduler;
+    /* The ids of all ImageFiles waiting to be renamed. */
+    private final BitSet pending;
+    /* The number of failed renames of each ImageFile whose last rename failed, by its id. */
+    private final HashMap<Integer, Integer> failures;
+    /* Whether renaming the waiting ImageFiles is already scheduled. */
+    private boolean scheduled;
+
+    /**
+     * Constructs a new NameMaterializer.
+     *
+     * @param imageFileManager: The ImageFileManager whose ImageFiles are renamed.
+     * @param ioScheduler: Renames files in the background.
+     */
+    NameMaterializer(ImageFileManager imageFileManager, IoScheduler ioScheduler) {
+        this.imageFileManager = imageFileManager;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "name-materializer-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ioScheduler = ioScheduler;
+        this.pending = new BitSet();
+        this.failures = new HashMap<>();
+        this.scheduled = false;
+    }
+
+    /**
+     * Renames the file of an ImageFile to its tagged name soon, along with all other waiting ImageFiles.
+     *
+     * @param id: The id of the ImageFile waiting to be renamed.
+     */
+    void schedule(int id) {
+        synchronized (this.pending) {
+            this.pending.set(id);
+            /* Once closed, waiting ImageFiles are only renamed by flush. */
+            if (!this.scheduled && !this.scheduler.isShutdown()) {
+                this.scheduled = true;
+                this.scheduler.schedule(this::renamePending, DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Renames the files of all waiting ImageFiles right away, on the calling thread, such as before a
+     * directory is scanned or the application stops. Renames already running in the background are not
+     * waited for; they hold the lock of their ImageFile while they run.
+     */
+    void flush() {
+        BitSet ids = this.takePending();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            this.rename(id);
+        }
+    }
+
+    /**
+     * Renames the files of all waiting ImageFiles, and stops the thread scheduling renames, such as once
+     * the ImageFiles of its ImageFileManager were moved to another one.
+     */
+    void close() {
+        this.scheduler.shutdownNow();
+        this.flush();
+    }
+
+    /**
+     * Forgets all waiting ImageFiles, such as when all ImageFiles are loaded again.
+     */
+    void clear() {
+        synchronized (this.pending) {
+            this.pending.clear();
+            this.failures.clear();
+        }
+    }
+
+    /**
+     * Helper that hands the waiting ImageFiles to the IoScheduler, on the mount of their file.
+     */
+    private void renamePending() {
+        BitSet ids = this.takePending();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            File location = this.imageFileManager.getLocation(id);
+            if (location != null) {
+                int renamed = id;
+                this.ioScheduler.submit(location.toPath(), () -> {
+                    this.rename(renamed);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Helper that takes the ids of all waiting ImageFiles, which no longer wait once taken.
+     */
+    private BitSet takePending() {
+        synchronized (this.pending) {
+            BitSet ids = (BitSet) this.pending.clone();
+            this.pending.clear();
+            this.scheduled = false;
+            return ids;
+        }
+    }
+
+    /**
+     * Helper that renames the file of an ImageFile, scheduling it again if the rename failed.
+     */
+    private void rename(int id) {
+        ImageFile image = this.imageFileManager.getImage(id);
+        if (image == null) {
+            return;
+        }
+        boolean renamed = image.writePendingName();
+        synchronized (this.pending) {
+            if (renamed) {
+                this.failures.remove(id);
+            } else if (this.failures.merge(id, 1, Integer::sum) < MAX_ATTEMPTS) {
+                this.schedule(id);
+            } else {
+                this.failures.remove(id);
+            }
+        }
+    }
+}
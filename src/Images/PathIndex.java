@@ -0,0 +1,134 @@
+package Images;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An index from every folder to the ids of the ImageFiles directly inside it. Folders are sorted
+ * by their normalized path, so all folders within a directory are next to each other, and the
+ * ImageFiles under a directory are found with a single range lookup. Kept up to date by the
+ * ImageFiles themselves whenever they are moved.
+ */
+public class PathIndex {
+
+    /* The ids of the ImageFiles in each folder, by the folder's normalized path. */
+    private TreeMap<String, PostingList> idsByFolder;
+    /* The normalized path of every folder seen so far, by its path as given. */
+    private HashMap<String, String> normalizedPaths;
+
+    PathIndex() {
+        this.idsByFolder = new TreeMap<>();
+        this.normalizedPaths = new HashMap<>();
+    }
+
+    /**
+     * Returns the ids of all ImageFiles within a directory or any of its sub-directories.
+     *
+     * @param dir: The directory being looked through.
+     * @return The ids of all ImageFiles under this directory.
+     */
+    public synchronized BitSet findIdsUnder(File dir) {
+        BitSet ids = new BitSet();
+        for (PostingList postingList : this.foldersUnder(dir).values()) {
+            postingList.addTo(ids);
+        }
+        return ids;
+    }
+
+    /**
+     * @param dir: The directory being looked through.
+     * @return The ids of the ImageFiles directly inside this directory, not in its sub-directories.
+     */
+    public synchronized BitSet findIdsIn(File dir) {
+        BitSet ids = new BitSet();
+        PostingList postingList = this.idsByFolder.get(this.normalize(dir));
+        if (postingList != null) {
+            postingList.addTo(ids);
+        }
+        return ids;
+    }
+
+    /**
+     * @param location: The location of a file.
+     * @return The ids of the ImageFiles in the same folder as this file, in increasing order.
+     */
+    synchronized int[] findIdsBeside(File location) {
+        PostingList postingList = this.idsByFolder.get(this.folderOf(location));
+        if (postingList == null) {
+            return new int[0];
+        }
+        int[] ids = new int[postingList.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = postingList.get(i);
+        }
+        return ids;
+    }
+
+    /**
+     * @param dir: The directory being looked through.
+     * @return The number of ImageFiles within this directory or any of its sub-directories.
+     */
+    public synchronized int countUnder(File dir) {
+        int count = 0;
+        for (PostingList postingList : this.foldersUnder(dir).values()) {
+            count += postingList.size();
+        }
+        return count;
+    }
+
+    synchronized void add(File location, int id) {
+        this.idsByFolder.computeIfAbsent(this.folderOf(location), key -> new PostingList()).add(id);
+    }
+
+    synchronized void remove(File location, int id) {
+        String folder = this.folderOf(location);
+        PostingList postingList = this.idsByFolder.get(folder);
+        if (postingList != null) {
+            postingList.remove(id);
+            if (postingList.size() == 0) {
+                this.idsByFolder.remove(folder);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        this.idsByFolder.clear();
+        this.normalizedPaths.clear();
+    }
+
+    /**
+     * Helper that returns the folders within a directory: those whose normalized path starts with the directory's.
+     */
+    private Map<String, PostingList> foldersUnder(File dir) {
+        String prefix = this.normalize(dir);
+        return this.idsByFolder.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /**
+     * Helper that returns the normalized path of the folder containing a file.
+     */
+    private String folderOf(File location) {
+        File parent = location.getParentFile();
+        return parent == null ? this.normalize(location.getAbsoluteFile().getParentFile()) : this.normalize(parent);
+    }
+
+    /**
+     * Helper that returns a directory's absolute path without any "." or "..", ending with a separator so that
+     * it is a prefix of the paths of its sub-directories only. Paths are not case sensitive on Windows.
+     */
+    private String normalize(File dir) {
+        if (dir == null) {
+            return File.separator;
+        }
+        return this.normalizedPaths.computeIfAbsent(dir.getPath(), path -> {
+            String normalized = dir.getAbsoluteFile().toPath().normalize().toString();
+            if (!normalized.endsWith(File.separator)) {
+                normalized += File.separator;
+            }
+            return File.separatorChar == '\\' ? normalized.toLowerCase() : normalized;
+        });
+    }
+}
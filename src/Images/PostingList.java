@@ -0,0 +1,101 @@
+package Images;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A sorted set of ImageFile ids, such as all images carrying some tag.
+ */
+public class PostingList {
+
+    /* The ids in this list, in increasing order, followed by unused space. */
+    private int[] ids;
+    /* The number of ids in this list. */
+    private int size;
+
+    PostingList() {
+        this.ids = new int[4];
+        this.size = 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int get(int index) {
+        return this.ids[index];
+    }
+
+    /**
+     * Adds an id to this list, keeping it sorted. Ids are usually added in increasing order,
+     * in which case they are simply appended.
+     *
+     * @param id: The id being added.
+     */
+    void add(int id) {
+        int index = this.size == 0 || this.ids[this.size - 1] < id ? this.size
+                : Arrays.binarySearch(this.ids, 0, this.size, id);
+        if (index < 0) {
+            index = -index - 1;
+        } else if (index < this.size) {
+            return;
+        }
+        if (this.size == this.ids.length) {
+            this.ids = Arrays.copyOf(this.ids, this.size * 2);
+        }
+        System.arraycopy(this.ids, index, this.ids, index + 1, this.size - index);
+        this.ids[index] = id;
+        this.size++;
+    }
+
+    /**
+     * Removes an id from this list, if it is in it.
+     *
+     * @param id: The id being removed.
+     */
+    void remove(int id) {
+        int index = Arrays.binarySearch(this.ids, 0, this.size, id);
+        if (index >= 0) {
+            System.arraycopy(this.ids, index + 1, this.ids, index, this.size - index - 1);
+            this.size--;
+        }
+    }
+
+    /**
+     * Sets the bit of every id in this list.
+     *
+     * @param bits: The set receiving the ids.
+     */
+    public void addTo(BitSet bits) {
+        for (int i = 0; i < this.size; i++) {
+            bits.set(this.ids[i]);
+        }
+    }
+
+    /**
+     * Clears the bit of every id of a set that is not in this list.
+     *
+     * @param bits: The set being intersected with this list.
+     */
+    public void retainIn(BitSet bits) {
+        int next = 0;
+        for (int i = 0; i < this.size; i++) {
+            if (next < this.ids[i]) {
+                bits.clear(next, this.ids[i]);
+            }
+            next = this.ids[i] + 1;
+        }
+        bits.clear(next, Math.max(next, bits.length()));
+    }
+
+    /**
+     * Clears the bit of every id in this list.
+     *
+     * @param bits: The set the ids of this list are removed from.
+     */
+    public void removeFrom(BitSet bits) {
+        for (int i = 0; i < this.size; i++) {
+            bits.clear(this.ids[i]);
+        }
+    }
+}
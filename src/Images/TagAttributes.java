@@ -0,0 +1,61 @@
+package Images;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+/**
+ * Reads and writes the tagged name of an ImageFile in a user-defined extended attribute of its file, for
+ * libraries keeping tags out of file names. File systems without extended attributes are ignored.
+ */
+class TagAttributes {
+
+    /* The name of the attribute, stored as "user.memories.name" on Linux. */
+    private static final String NAME = "memories.name";
+
+    private TagAttributes() {
+    }
+
+    /**
+     * @param file: The file being read.
+     * @return The tagged name written to this file's attributes, or null if there is none.
+     */
+    static String read(File file) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file.toPath(),
+                UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(view.size(NAME));
+            view.read(NAME, buffer);
+            buffer.flip();
+            return StandardCharsets.UTF_8.decode(buffer).toString();
+        } catch (IOException | UnsupportedOperationException e) {
+            /* The attribute does not exist, or the file system does not support any. */
+            return null;
+        }
+    }
+
+    /**
+     * @param file: The file being written.
+     * @param name: The tagged name of its ImageFile.
+     * @return Whether the attribute was written.
+     */
+    static boolean write(File file, String name) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(file.toPath(),
+                UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return false;
+        }
+        try {
+            view.write(NAME, StandardCharsets.UTF_8.encode(name));
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package Images;
+
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index from every Tag to the ids of all ImageFiles carrying it. Kept up to date by the
+ * ImageFiles themselves whenever their tags change.
+ *
+ * The TagManager is told of every tag added or removed, rather than of the size of each posting
+ * list, so that the indexes of several ImageFileManagers can share it.
+ */
+public class TagIndex {
+
+    /* The posting list of every tag carried by at least one ImageFile. */
+    private HashMap<Tag, PostingList> postings;
+    /* The TagManager told how many images carry each tag. */
+    private TagManager tagManager;
+
+    TagIndex(TagManager tagManager) {
+        this.postings = new HashMap<>();
+        this.tagManager = tagManager;
+    }
+
+    /**
+     * Returns the ids of all ImageFiles carrying a tag. The returned list must not be used
+     * while the index may be changed by another thread; lock this index to prevent that.
+     *
+     * @param tag: The tag being looked up.
+     * @return The ids of all ImageFiles with this tag, or null if there are none.
+     */
+    public synchronized PostingList get(Tag tag) {
+        return this.postings.get(tag);
+    }
+
+    /**
+     * @param tag: The tag being counted.
+     * @return The number of ImageFiles carrying this tag.
+     */
+    public synchronized int count(Tag tag) {
+        PostingList postingList = this.postings.get(tag);
+        return postingList == null ? 0 : postingList.size();
+    }
+
+    /**
+     * Records a tag being added to an ImageFile.
+     *
+     * @param tag: The tag added.
+     * @param id: The id of the ImageFile.
+     * @param otherTags: The ImageFile's other tags, whose pairs with this tag are counted.
+     * @param time: When the tag was added, in milliseconds since the epoch, or 0 if unknown.
+     */
+    synchronized void add(Tag tag, int id, List<Tag> otherTags, long time) {
+        PostingList postingList = this.postings.computeIfAbsent(tag, key -> new PostingList());
+        int size = postingList.size();
+        postingList.add(id);
+        if (postingList.size() > size) {
+            this.tagManager.recordTagAdded(tag, otherTags, time);
+        }
+    }
+
+    /**
+     * Records a tag being removed from an ImageFile.
+     *
+     * @param tag: The tag removed.
+     * @param id: The id of the ImageFile.
+     * @param otherTags: The ImageFile's remaining tags, whose pairs with this tag are no longer counted.
+     */
+    synchronized void remove(Tag tag, int id, List<Tag> otherTags) {
+        PostingList postingList = this.postings.get(tag);
+        if (postingList != null) {
+            int size = postingList.size();
+            postingList.remove(id);
+            if (postingList.size() < size) {
+                this.tagManager.recordTagRemoved(tag, otherTags);
+            }
+            if (postingList.size() == 0) {
+                this.postings.remove(tag);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        this.postings.clear();
+    }
+}
@@ -0,0 +1,24 @@
+package Images;
+
+/**
+ * Where the tags of ImageFiles are kept when they change.
+ */
+public enum TagStorage {
+
+    /* Tags are written in the name of each file, such as "beach @sea @2017.jpg", renaming it on every change. */
+    FILE_NAME,
+    /* Tags are only kept in the save file of the ImageFileManager; files are never renamed when tagged. */
+    INDEX,
+    /* As INDEX, and the tagged name of each changed file is also written to an extended attribute of the file
+     * when the library is saved, so that its tags are found again when it is scanned into another library. */
+    ATTRIBUTE;
+
+    /**
+     * @param text: The name of a TagStorage, such as "file-name" or "index", whatever its case.
+     * @return The TagStorage with this name.
+     * @throws IllegalArgumentException if there is no such TagStorage.
+     */
+    public static TagStorage parse(String text) {
+        return TagStorage.valueOf(text.toUpperCase().replace('-', '_'));
+    }
+}
@@ -1,11 +1,15 @@
 package Navigation;
 
 import Application.AppRunner;
-import Images.ImageFileManager;
+import Core.BulkMove;
+import Diagnostics.Metrics;
+import javafx.application.Platform;
 import javafx.stage.DirectoryChooser;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Manages all tasks related to directories.
@@ -13,6 +17,9 @@ import java.util.ArrayList;
 
 class DirectoryManager {
 
+    /* The number of files moved or copied at once by a bulk move. */
+    private static final int MOVE_THREADS = 4;
+
     /* Runs this application. */
     private AppRunner appRunner;
 
@@ -35,20 +42,6 @@ class DirectoryManager {
         return dirChooser.showDialog(appRunner.getStage());
     }
 
-    /**
-     * Finds the File associated with the list of directory files. Accomplishes this by matching the File name
-     * to the index of the directory file names, and then returning it.
-     *
-     * @param selectedFileName The name of the file being searched for.
-     * @param dirFileNames     The list of corresponding directory file names.
-     * @param dirFiles         The list of corresponding directory files.
-     * @return The directory file associated with this name, from this list.
-     */
-    File findAssociatedDirFile(String selectedFileName, ArrayList<String> dirFileNames, ArrayList<File> dirFiles) {
-        int chosenFileIndex = dirFileNames.indexOf(selectedFileName);
-        return dirFiles.get(chosenFileIndex);
-    }
-
     /**
      * Returns a list of image files in the current directory. Checks for files with pre-existing tags,
      * and passes them over to the ImageFileManager. This method gets used anytime the UIManager gets
@@ -56,71 +49,63 @@ class DirectoryManager {
      *
      * @param currentDir The directory that the user has chosen to look through.
      * @return A list of all image files within the directory.
-     *
-     * Code adapted from this post:
-     * @link https://stackoverflow.com/questions/5694385/getting-the-filenames-of-all-files-in-a-folder
      */
     ArrayList<File> getDirectoryFiles(File currentDir) {
-        File[] listOfFiles = currentDir.listFiles();
-        ArrayList<File> allDirFiles = new ArrayList<>();
-
-        if (listOfFiles != null) {
-            for (File someFile : listOfFiles) {
-                if (someFile.isFile()) {
-                    String test = someFile.getName();
-                    if (test.toLowerCase().endsWith(".jpg") || test.toLowerCase().endsWith((".png"))
-                            || test.toLowerCase().endsWith(".bmp") || test.toLowerCase().endsWith(".gif")
-                            || test.toLowerCase().endsWith(".tiff") || test.toLowerCase().endsWith(".jpeg")) {
-
-                        /* Checks if the image has any tags.*/
-                        if (test.contains("@")) {
-                            ImageFileManager ourManager = appRunner.getImageFileManager();
-                            ourManager.addDirectoryFile(someFile);
-                        }
-                        allDirFiles.add(someFile);
-                    }
-
-                  /* If it's a directory instead, we recurse and call the function on it. */
-                } else if (someFile.isDirectory()) {
-                    allDirFiles.addAll(getDirectoryFiles(someFile));
-                }
-            }
+        long start = Metrics.GET_DIRECTORY_FILES.start();
+        try {
+            return appRunner.getLibrary().scanDirectory(currentDir);
+        } finally {
+            Metrics.GET_DIRECTORY_FILES.stop(start);
         }
-
-        return allDirFiles;
     }
 
     /**
-     * Prompts user to select a destination folder. Searches through destination folder
-     * for any files with the same name. If a copy name is found, no changes are made.
-     * Otherwise, the file is moved to new folder and recorded in history.
-     *
-     * Code adapted from this post:
-     * @link https://www.mkyong.com/java/how-to-move-file-to-another-directory-in-java/
+     * Moves the selected file to the destination folder chosen by the user. If the destination folder
+     * already contains a file with the same name, no changes are made. Otherwise, the file is moved and
+     * recorded in history.
      */
     void moveSomeFile() {
         try {
-            String newLocationName = appRunner.getMoveTargetDir().getPath() +
-                    File.separator + appRunner.getSelectedFile().getName();
-            File newFileLocation = new File(newLocationName);
-
-            /* If the file doesn't already exist... */
-            if (!newFileLocation.exists()) {
-                ImageFileManager imageManager = appRunner.getImageFileManager();
-
-                /* Update the ImageFile's location, check if it exists in our database. */
-//                File updatedImageFile = imageManager.updateLocation(appRunner.getSelectedFile(), newFileLocation);
-                imageManager.updateLocation(appRunner.getSelectedFile(), newFileLocation);
-                File updatedImageFile = imageManager.getCurrentFile();
-                if (updatedImageFile != null) {
-                    appRunner.setSelectedFile(updatedImageFile);
-                } else { // If this File hasn't been treated by our program.
-                    appRunner.getSelectedFile().renameTo(newFileLocation);
-                    appRunner.setSelectedFile(updatedImageFile);
-                }
-            }
+            File movedFile = appRunner.getLibrary().moveFile(appRunner.getSelectedFile(),
+                    appRunner.getMoveTargetDir());
+            appRunner.setSelectedFile(movedFile);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Moves all selected files to a directory on a background thread. Files whose name is already taken
+     * there are left where they are.
+     *
+     * @param targetDir  The directory chosen by the user.
+     * @param onProgress Called on the JavaFX thread as files are moved; at most one call waits on the
+     *                   JavaFX thread at a time, however many files are moved before it runs.
+     * @param onDone     Called on the JavaFX thread once the move is done or cancelled.
+     * @return The move, which can be cancelled.
+     */
+    BulkMove moveSelectedFiles(File targetDir, Runnable onProgress, Runnable onDone) {
+        BulkMove move = appRunner.getLibrary().moveFiles(Arrays.asList(appRunner.getSelectedFiles()), targetDir,
+                MOVE_THREADS);
+        AtomicBoolean progressPosted = new AtomicBoolean(false);
+        Thread thread = new Thread(() -> {
+            try {
+                move.run(progress -> {
+                    if (progressPosted.compareAndSet(false, true)) {
+                        Platform.runLater(() -> {
+                            progressPosted.set(false);
+                            onProgress.run();
+                        });
+                    }
+                });
+            } catch (InterruptedException e) {
+                move.cancel();
+            } finally {
+                Platform.runLater(onDone);
+            }
+        }, "bulk-move");
+        thread.setDaemon(true);
+        thread.start();
+        return move;
+    }
 }
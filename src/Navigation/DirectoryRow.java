@@ -0,0 +1,43 @@
+package Navigation;
+
+import java.io.File;
+
+/**
+ * A row of the directory display: an image file, the id of its ImageFile, and the name shown for it.
+ * Selecting rows gives their files and ids directly, without looking them up by name.
+ */
+class DirectoryRow {
+
+    /* The image file shown in this row. */
+    private final File file;
+    /* The id of the ImageFile of this file, or -1 if it is not an ImageFile yet. */
+    private final int id;
+    /* The name shown for this file. */
+    private final String name;
+
+    /**
+     * Constructs a new DirectoryRow.
+     *
+     * @param file The image file shown in this row.
+     * @param id The id of the ImageFile of this file, or -1 if it is not an ImageFile yet.
+     * @param name The name shown for this file.
+     */
+    DirectoryRow(File file, int id, String name) {
+        this.file = file;
+        this.id = id;
+        this.name = name;
+    }
+
+    File getFile() {
+        return this.file;
+    }
+
+    int getId() {
+        return this.id;
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
@@ -0,0 +1,244 @@
+package Navigation;
+
+import javafx.collections.ObservableListBase;
+
+import java.io.File;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The rows of the directory display, made from a list of files only as they are read. The ListView only
+ * reads the rows it shows, so that showing millions of files only ever makes a few hundred rows; the
+ * files themselves are only made as they are read too when the list of files is lazy, such as the
+ * results of a search.
+ */
+class DirectoryRows extends ObservableListBase<DirectoryRow> {
+
+    /* The number of rows most recently read that are kept, rather than made again. */
+    private static final int CACHED_ROWS = 256;
+
+    /* The rows shown. Replaced rather than changed when rows are set or removed, so that the rows from
+     * before a change can still be read by those listening to it. */
+    private Rows rows;
+    /* The rows most recently read, by position. */
+    private final LinkedHashMap<Integer, DirectoryRow> cached;
+
+    /**
+     * Constructs a new, empty DirectoryRows.
+     */
+    DirectoryRows() {
+        this.rows = new Rows(List.of(), row -> -1, "", new HashMap<>());
+        this.cached = new LinkedHashMap<>(CACHED_ROWS, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DirectoryRow> eldest) {
+                return this.size() > CACHED_ROWS;
+            }
+        };
+    }
+
+    @Override
+    public DirectoryRow get(int index) {
+        DirectoryRow row = this.cached.get(index);
+        if (row == null) {
+            row = this.rows.get(index);
+            this.cached.put(index, row);
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return this.rows.size();
+    }
+
+    /**
+     * @param index The position of a row.
+     * @return The file shown in this row, without making the row.
+     */
+    File getFile(int index) {
+        return this.rows.getFile(index);
+    }
+
+    /**
+     * @param index The position of a row.
+     * @return The id of the ImageFile shown in this row, or -1 if it is not an ImageFile.
+     */
+    int getId(int index) {
+        return this.rows.getId(index);
+    }
+
+    /**
+     * @param file A file.
+     * @return The position of the first row showing this file, or -1 if it is not shown.
+     */
+    int rowOf(File file) {
+        return this.rows.rowOf(file);
+    }
+
+    /**
+     * Shows a new list of files, telling the ListView that only some of the rows changed.
+     *
+     * @param files All files to be shown.
+     * @param ids The id of the ImageFile of the file at each position, or -1 if it is not an ImageFile.
+     * @param pathName The path of the directory the files are shown relative to.
+     * @param start The position of the first row that changed.
+     * @param oldEnd The position after the last row that changed, among the rows shown before.
+     * @param newEnd The position after the last row that changed, among the new rows.
+     */
+    void setFiles(List<File> files, IntUnaryOperator ids, String pathName, int start, int oldEnd, int newEnd) {
+        Rows oldRows = this.rows;
+        this.rows = new Rows(files, ids, pathName, new HashMap<>());
+        this.cached.clear();
+        if (start != oldEnd || start != newEnd) {
+            this.beginChange();
+            this.nextReplace(start, newEnd, oldRows.subList(start, oldEnd));
+            this.endChange();
+        }
+    }
+
+    /**
+     * Shows another file in a single row, such as after the file was renamed.
+     *
+     * @param index The position of the row.
+     * @param file The file now shown in this row.
+     * @param id The id of the ImageFile of this file, or -1 if it is not an ImageFile.
+     */
+    void setRow(int index, File file, int id) {
+        DirectoryRow old = this.get(index);
+        this.rows.replaced.put(index, new DirectoryRow(file, id, nameOf(file, this.rows.pathName)));
+        this.cached.remove(index);
+        this.beginChange();
+        this.nextSet(index, old);
+        this.endChange();
+    }
+
+    /**
+     * Removes a single row, and moves all rows after it up.
+     *
+     * @param index The position of the row.
+     */
+    void removeRow(int index) {
+        DirectoryRow old = this.get(index);
+        this.rows = this.rows.without(index);
+        this.cached.clear();
+        this.beginChange();
+        this.nextRemove(index, old);
+        this.endChange();
+    }
+
+    /**
+     * Returns the name of a file shown in a list: its name if it is directly in the directory, its path
+     * from the directory if it is in a sub-directory, or its whole path otherwise.
+     *
+     * @param file The file shown.
+     * @param pathName The path of the directory the file is shown relative to.
+     * @return The name shown for this file.
+     */
+    static String nameOf(File file, String pathName) {
+        if (file.getParent().equals(pathName)) {
+            return file.getName();
+        } else if (!file.getPath().startsWith(pathName)) {
+            return file.getPath();
+        }
+        return file.getPath().substring(pathName.length());
+    }
+
+    /**
+     * The rows of a list of files, each made as it is read, apart from the rows set one by one since.
+     */
+    private static class Rows extends AbstractList<DirectoryRow> {
+
+        /* The file shown in each row. */
+        private final List<File> files;
+        /* The id of the ImageFile of the file in each row. */
+        private final IntUnaryOperator ids;
+        /* The path of the directory the files are shown relative to. */
+        private final String pathName;
+        /* The rows set one by one, by position. */
+        private final HashMap<Integer, DirectoryRow> replaced;
+
+        private Rows(List<File> files, IntUnaryOperator ids, String pathName, HashMap<Integer, DirectoryRow> replaced) {
+            this.files = files;
+            this.ids = ids;
+            this.pathName = pathName;
+            this.replaced = replaced;
+        }
+
+        @Override
+        public DirectoryRow get(int index) {
+            DirectoryRow row = this.replaced.get(index);
+            if (row != null) {
+                return row;
+            }
+            File file = this.files.get(index);
+            return new DirectoryRow(file, this.ids.applyAsInt(index), nameOf(file, this.pathName));
+        }
+
+        @Override
+        public int size() {
+            return this.files.size();
+        }
+
+        private File getFile(int index) {
+            DirectoryRow row = this.replaced.get(index);
+            return row != null ? row.getFile() : this.files.get(index);
+        }
+
+        private int getId(int index) {
+            DirectoryRow row = this.replaced.get(index);
+            return row != null ? row.getId() : this.ids.applyAsInt(index);
+        }
+
+        private int rowOf(File file) {
+            int found = -1;
+            for (Map.Entry<Integer, DirectoryRow> entry : this.replaced.entrySet()) {
+                if (entry.getValue().getFile().equals(file) && (found < 0 || entry.getKey() < found)) {
+                    found = entry.getKey();
+                }
+            }
+            int index = this.files.indexOf(file);
+            /* A row set since may still show this file in the list of files. */
+            while (index >= 0 && this.replaced.containsKey(index)) {
+                index++;
+                while (index < this.files.size() && !this.getFile(index).equals(file)) {
+                    index++;
+                }
+                if (index == this.files.size()) {
+                    index = -1;
+                }
+            }
+            return found < 0 || (index >= 0 && index < found) ? index : found;
+        }
+
+        /**
+         * @return The same rows, without the row at some position.
+         */
+        private Rows without(int removed) {
+            List<File> files = this.files;
+            List<File> remaining = new AbstractList<>() {
+                @Override
+                public File get(int index) {
+                    return files.get(index < removed ? index : index + 1);
+                }
+
+                @Override
+                public int size() {
+                    return files.size() - 1;
+                }
+            };
+            IntUnaryOperator ids = this.ids;
+            HashMap<Integer, DirectoryRow> replaced = new HashMap<>();
+            for (Map.Entry<Integer, DirectoryRow> entry : this.replaced.entrySet()) {
+                if (entry.getKey() != removed) {
+                    replaced.put(entry.getKey() < removed ? entry.getKey() : entry.getKey() - 1, entry.getValue());
+                }
+            }
+            return new Rows(remaining, index -> ids.applyAsInt(index < removed ? index : index + 1), this.pathName,
+                    replaced);
+        }
+    }
+}
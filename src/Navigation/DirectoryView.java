@@ -0,0 +1,186 @@
+package Navigation;
+
+import javafx.scene.control.ListView;
+import javafx.scene.control.MultipleSelectionModel;
+import javafx.scene.control.SelectionMode;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The list of image files shown in the directory display. The same ListView and list of rows are
+ * kept for as long as the application runs; changes are applied to them row by row, so that the
+ * ListView keeps its scroll position and selection, and a change to one file only updates one row.
+ * Rows are only made as the ListView shows them; see DirectoryRows.
+ */
+class DirectoryView {
+
+    /* The list shown to the user. */
+    private ListView<DirectoryRow> listView;
+    /* The rows shown in the list. */
+    private DirectoryRows items;
+    /* The directory whose files are shown, or null if nothing has been shown yet. */
+    private File dir;
+    /* Whether the files shown may no longer match those on disk. */
+    private boolean stale;
+
+    /**
+     * Constructs a new, empty DirectoryView.
+     */
+    DirectoryView() {
+        this.items = new DirectoryRows();
+        this.listView = new ListView<>(this.items);
+        this.listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        this.dir = null;
+        this.stale = true;
+    }
+
+    ListView<DirectoryRow> getListView() {
+        return this.listView;
+    }
+
+    /**
+     * @return The rows currently selected by the user, in the order they were selected.
+     */
+    List<DirectoryRow> getSelectedRows() {
+        return this.listView.getSelectionModel().getSelectedItems();
+    }
+
+    /**
+     * Returns the files of the rows around the row of a file, the closest first, and each row after
+     * it before the row as far before it.
+     *
+     * @param file     The file whose neighbours are returned.
+     * @param distance The largest number of rows away from this file.
+     * @return The files of the rows around this file, or none if it is not shown.
+     */
+    List<File> neighboursOf(File file, int distance) {
+        ArrayList<File> neighbours = new ArrayList<>();
+        int row = this.rowOf(file);
+        if (row < 0) {
+            return neighbours;
+        }
+        for (int offset = 1; offset <= distance; offset++) {
+            if (row + offset < this.items.size()) {
+                neighbours.add(this.items.getFile(row + offset));
+            }
+            if (row - offset >= 0) {
+                neighbours.add(this.items.getFile(row - offset));
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Selects only the row some number of rows away from the row of a file, and scrolls to it.
+     *
+     * @param file   The file shown in the row stepped from.
+     * @param offset The number of rows stepped, backwards if negative.
+     * @return Whether there is such a row.
+     */
+    boolean selectNeighbour(File file, int offset) {
+        int row = this.rowOf(file);
+        if (row < 0 || row + offset < 0 || row + offset >= this.items.size()) {
+            return false;
+        }
+        this.listView.getSelectionModel().clearAndSelect(row + offset);
+        this.listView.scrollTo(row + offset);
+        return true;
+    }
+
+    /**
+     * @return Whether the rows need to be set again before this directory is shown.
+     */
+    boolean needsUpdate(File currentDir) {
+        return this.stale || !currentDir.equals(this.dir);
+    }
+
+    /**
+     * Marks the rows as possibly out of date, such as after a change to many files at once.
+     */
+    void invalidate() {
+        this.stale = true;
+    }
+
+    /**
+     * Shows a new list of files. If the directory is the same as before, only the rows between the
+     * first and the last that differ are replaced, so the rows around them keep their selection
+     * and the list does not scroll.
+     *
+     * @param currentDir The directory the files are shown relative to.
+     * @param newFiles All files to be shown.
+     * @param ids The id of the ImageFile of the file at each position, or -1 if it is not an ImageFile.
+     */
+    void setFiles(File currentDir, List<File> newFiles, IntUnaryOperator ids) {
+        String pathName = currentDir.getPath();
+        if (!currentDir.equals(this.dir)) {
+            this.listView.getSelectionModel().clearSelection();
+            this.items.setFiles(newFiles, ids, pathName, 0, this.items.size(), newFiles.size());
+            this.listView.scrollTo(0);
+        } else {
+            int start = 0;
+            int oldEnd = this.items.size();
+            int newEnd = newFiles.size();
+            while (start < oldEnd && start < newEnd && this.sameRow(start, newFiles.get(start), ids.applyAsInt(start))) {
+                start++;
+            }
+            while (oldEnd > start && newEnd > start
+                    && this.sameRow(oldEnd - 1, newFiles.get(newEnd - 1), ids.applyAsInt(newEnd - 1))) {
+                oldEnd--;
+                newEnd--;
+            }
+            this.items.setFiles(newFiles, ids, pathName, start, oldEnd, newEnd);
+        }
+        this.dir = currentDir;
+        this.stale = false;
+    }
+
+    /**
+     * Updates the row of a file that was renamed or moved. If it was moved out of the directory,
+     * its row is removed. Files that are not shown are ignored.
+     *
+     * @param oldFile The previous location of the file.
+     * @param newFile The current location of the file.
+     * @param id The id of the ImageFile of this file, or -1 if it is not an ImageFile.
+     */
+    void updateFile(File oldFile, File newFile, int id) {
+        int row = this.rowOf(oldFile);
+        if (row < 0 || (oldFile.equals(newFile) && this.items.getId(row) == id)) {
+            return;
+        }
+        String pathName = this.dir.getPath();
+        boolean moved = !newFile.getParentFile().equals(oldFile.getParentFile());
+        if (moved && !newFile.getPath().startsWith(pathName + File.separator)) {
+            this.items.removeRow(row);
+            return;
+        }
+        MultipleSelectionModel<DirectoryRow> selectionModel = this.listView.getSelectionModel();
+        boolean selected = selectionModel.isSelected(row);
+        this.items.setRow(row, newFile, id);
+        if (selected) {
+            selectionModel.select(row);
+        }
+    }
+
+    /**
+     * Helper that returns the row of a file, looking at the selected rows first, since the file looked for
+     * is most often the one selected.
+     */
+    private int rowOf(File file) {
+        for (int row : this.listView.getSelectionModel().getSelectedIndices()) {
+            if (row >= 0 && row < this.items.size() && this.items.getFile(row).equals(file)) {
+                return row;
+            }
+        }
+        return this.items.rowOf(file);
+    }
+
+    /**
+     * Helper that returns whether a row shows a file, as the same ImageFile.
+     */
+    private boolean sameRow(int row, File file, int id) {
+        return this.items.getFile(row).equals(file) && this.items.getId(row) == id;
+    }
+}
@@ -1,6 +1,7 @@
 package Navigation;
 
 import Application.AppRunner;
+import Core.BulkMove;
 import Tags.*;
 import Images.ImageFileManager;
 import javafx.event.ActionEvent;
@@ -10,8 +11,8 @@ import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Handles all actions performed by the user.
@@ -25,6 +26,8 @@ class EventsManager {
     private DirectoryManager directoryManager;
     /* Manages all UI-related tasks. */
     private UIManager uiManager;
+    /* The move of the selected files running in the background, or null. */
+    private BulkMove bulkMove;
 
     /**
      * Constructs a new EventsManager.
@@ -68,7 +71,7 @@ class EventsManager {
             appRunner.setDir(directoryManager.chooseDirectory());
         }
         appRunner.setSelectedFile(null);
-        uiManager.setUpDirectoryDisplay();
+        uiManager.showDirectoryDisplay();
     };
 
     /**
@@ -93,6 +96,18 @@ class EventsManager {
         }
     };
 
+    /**
+     * Displays the previous or the next image of the directory. These methods are called by
+     * previousImageButton and nextImageButton, and appear when viewing an ImageFile.
+     */
+    final EventHandler<ActionEvent> PREVIOUS_IMAGE_EVENT_HANDLER = event -> {
+        uiManager.stepImage(-1);
+    };
+
+    final EventHandler<ActionEvent> NEXT_IMAGE_EVENT_HANDLER = event -> {
+        uiManager.stepImage(1);
+    };
+
     /**
      * Adds a tag to the selected ImageFile, and to the TagManager. This method is called by
      * addTagButton and appears when viewing an ImageFile.
@@ -107,18 +122,26 @@ class EventsManager {
         }
 
         TagManager tagManager = appRunner.getTagManager();
-        ImageFileManager imageFileManager = appRunner.getImageFileManager();
         Tag newTag = tagManager.createTag(textField.getText());
 
         if (appRunner.getSelectedFile() != null) { // Treats a single image.
 //            File updatedFile = imageFileManager.updateFileAdd(appRunner.getSelectedFile(), newTag);
-            imageFileManager.updateFileAdd(appRunner.getSelectedFile(), newTag);
+            File oldFile = appRunner.getSelectedFile();
+            ImageFileManager imageFileManager = appRunner.getImageFileManager(oldFile);
+            imageFileManager.updateFileAdd(oldFile, newTag);
             File updatedFile = imageFileManager.getCurrentFile();
+            uiManager.updateDirectoryFile(oldFile, updatedFile, imageFileManager.getCurrentId());
             appRunner.setSelectedFile(updatedFile);
             uiManager.disableImageRemoveTagUI();
         } else { // Treats multiple images.
-            for (File file : appRunner.getSelectedFiles()) {
-                imageFileManager.updateFileAdd(file, newTag);
+            File[] selectedFiles = appRunner.getSelectedFiles();
+            int[] selectedIds = appRunner.getSelectedIds();
+            for (int i = 0; i < selectedFiles.length; i++) {
+                ImageFileManager imageFileManager = appRunner.getImageFileManager(selectedFiles[i]);
+                File updatedFile = imageFileManager.updateFileAdd(selectedFiles[i], selectedIds[i], newTag);
+                selectedIds[i] = imageFileManager.getCurrentId();
+                uiManager.updateDirectoryFile(selectedFiles[i], updatedFile, selectedIds[i]);
+                selectedFiles[i] = updatedFile;
             }
         }
         textField.clear();
@@ -127,7 +150,7 @@ class EventsManager {
         if (appRunner.getSelectedFile() != null) {
             uiManager.setUpImageDisplay();
         } else {
-            uiManager.setUpDirectoryDisplay();
+            uiManager.showDirectoryDisplay();
         }
     };
 
@@ -138,13 +161,14 @@ class EventsManager {
     final EventHandler<ActionEvent> ADD_SELECTED_TAG_EVENT_HANDLER = event -> {
         File selectedFile = appRunner.getSelectedFile();
         Tag[] selectedTags = appRunner.getSelectedTags();
-        ImageFileManager imageFileManager = appRunner.getImageFileManager();
+        ImageFileManager imageFileManager = appRunner.getImageFileManager(selectedFile);
 
         if (selectedFile != null && selectedTags.length != 0) {
             for (Tag tag : selectedTags) {
                 imageFileManager.updateFileAdd(selectedFile, tag);
                 selectedFile = imageFileManager.getCurrentFile();
             }
+            uiManager.updateDirectoryFile(appRunner.getSelectedFile(), selectedFile, imageFileManager.getCurrentId());
             appRunner.setSelectedFile(selectedFile);
         }
         appRunner.saveToFiles();
@@ -173,9 +197,9 @@ class EventsManager {
      * Removes a tag from the selected ImageFile. Appears when viewing an ImageFile.
      */
     final EventHandler<ActionEvent> REMOVE_TAG_EVENT_HANDLER = event -> {
-        ImageFileManager imageFileManager = appRunner.getImageFileManager();
         Tag[] tags = appRunner.getSelectedImageTags();
         File selectedFile = appRunner.getSelectedFile();
+        ImageFileManager imageFileManager = appRunner.getImageFileManager(selectedFile);
 
         if (appRunner.getSelectedFile() != null) {
             for (Tag tag : tags) {
@@ -183,6 +207,7 @@ class EventsManager {
                 imageFileManager.updateFileRemove(selectedFile, tag);
                 selectedFile = imageFileManager.getCurrentFile();
             }
+            uiManager.updateDirectoryFile(appRunner.getSelectedFile(), selectedFile, imageFileManager.getCurrentId());
             appRunner.setSelectedFile(selectedFile);
             appRunner.saveToFiles();
         }
@@ -196,10 +221,41 @@ class EventsManager {
     final EventHandler<ActionEvent> MOVE_FILE_EVENT_HANDLER = event -> {
         File newDir = directoryManager.chooseDirectory();
         if (newDir != null) {
+            File oldFile = appRunner.getSelectedFile();
             appRunner.setMoveTargetDir(newDir);
             directoryManager.moveSomeFile();
+            uiManager.updateDirectoryFile(oldFile, appRunner.getSelectedFile(),
+                    appRunner.getImageFileManager(appRunner.getSelectedFile()).getCurrentId());
             appRunner.saveToFiles();
-            uiManager.setUpDirectoryDisplay();
+            uiManager.showDirectoryDisplay();
+        }
+    };
+
+    /**
+     * Moves all selected files to a new directory in the background, showing its progress. Appears when
+     * viewing a directory.
+     */
+    final EventHandler<ActionEvent> MOVE_FILES_EVENT_HANDLER = event -> {
+        if (bulkMove != null || appRunner.getSelectedFiles() == null || appRunner.getSelectedFiles().length == 0) {
+            return;
+        }
+        File newDir = directoryManager.chooseDirectory();
+        if (newDir != null) {
+            bulkMove = directoryManager.moveSelectedFiles(newDir, () -> uiManager.updateMoveProgress(bulkMove), () -> {
+                bulkMove = null;
+                appRunner.saveToFiles();
+                uiManager.hideMoveProgress();
+            });
+            uiManager.showMoveProgress();
+        }
+    };
+
+    /**
+     * Cancels the move of the selected files. Appears while they are being moved.
+     */
+    final EventHandler<ActionEvent> CANCEL_MOVE_EVENT_HANDLER = event -> {
+        if (bulkMove != null) {
+            bulkMove.cancel();
         }
     };
 
@@ -217,14 +273,39 @@ class EventsManager {
     final EventHandler<ActionEvent> REVERT_HISTORY_EVENT_HANDLER = event -> {
         if (appRunner.getSelectedHistoryEntry() != null) {
 //            File tempFile = appRunner.getImageFileManager().revertState(appRunner.getSelectedFile(), appRunner.getSelectedHistoryEntry());
-            appRunner.getImageFileManager().revertState(appRunner.getSelectedFile(), appRunner.getSelectedHistoryEntry());
-            File tempFile = appRunner.getImageFileManager().getCurrentFile();
-            appRunner.setSelectedFile(tempFile);
+            ImageFileManager imageFileManager = appRunner.getImageFileManager(appRunner.getSelectedFile());
+            imageFileManager.revertState(appRunner.getSelectedFile(), appRunner.getSelectedHistoryEntry());
+            historyHelper(imageFileManager);
         }
         appRunner.saveToFiles();
         uiManager.setUpHistoryDisplay();
     };
 
+    /**
+     * Undoes the latest change to the selected ImageFile's tags. Appears when viewing an ImageFile's history.
+     */
+    final EventHandler<ActionEvent> UNDO_EVENT_HANDLER = event -> {
+        ImageFileManager imageFileManager = appRunner.getImageFileManager(appRunner.getSelectedFile());
+        if (imageFileManager.undo(appRunner.getSelectedFile())) {
+            historyHelper(imageFileManager);
+            appRunner.saveToFiles();
+        }
+        uiManager.setUpHistoryDisplay();
+    };
+
+    /**
+     * Redoes the latest change to the selected ImageFile's tags that was undone. Appears when viewing an
+     * ImageFile's history.
+     */
+    final EventHandler<ActionEvent> REDO_EVENT_HANDLER = event -> {
+        ImageFileManager imageFileManager = appRunner.getImageFileManager(appRunner.getSelectedFile());
+        if (imageFileManager.redo(appRunner.getSelectedFile())) {
+            historyHelper(imageFileManager);
+            appRunner.saveToFiles();
+        }
+        uiManager.setUpHistoryDisplay();
+    };
+
     final EventHandler<ActionEvent> MASTER_LOG_EVENT_HANDLER = event -> {
         uiManager.setUpLogDisplay();
     };
@@ -237,6 +318,7 @@ class EventsManager {
         Tag[] selectedTags = appRunner.getSelectedTags();
         for (Tag tag : selectedTags) {
             appRunner.getTagManager().deleteTag(tag);
+            uiManager.invalidateDirectoryDisplay();
             appRunner.saveToFiles();
             uiManager.setUpTagsDisplay();
         }
@@ -261,37 +343,43 @@ class EventsManager {
      * Allows the user to select and operate upon multiple files.
      */
     final EventHandler<MouseEvent> SELECT_MULTIPLE_FILES_EVENT_HANDLER = event -> {
-        ListView<String> displayFiles = uiManager.getDisplayFiles();
-        String[] selectedFileNames = displayFiles.getSelectionModel().getSelectedItems().toArray(new String[0]);
-        String selectedFileName = displayFiles.getSelectionModel().getSelectedItem();
-
-        if (selectedFileNames.length > 0) {
-            ArrayList<File> tempList = new ArrayList<>();
-            for (String fileName : selectedFileNames) {
-                File selectedDirFile = directoryManager.findAssociatedDirFile(fileName,
-                        appRunner.getDirFileNames(), appRunner.getDirectoryFiles());
-                tempList.add(selectedDirFile);
-            }
-            File[] selectedDirFiles = tempList.toArray(new File[0]);
-            appRunner.setSelectedFiles(selectedDirFiles);
-
-            if (selectedFileNames.length == 1) {
-                File selectedDirFile = directoryManager.findAssociatedDirFile(selectedFileName,
-                        appRunner.getDirFileNames(), appRunner.getDirectoryFiles());
-                appRunner.setSelectedFile(selectedDirFile);
-                uiManager.disableTagUI();
-                uiManager.enableViewImageUI();
-            } else if (selectedDirFiles.length != 0) {
-                appRunner.setSelectedFile(null);
-                uiManager.enableTagUI();
-                uiManager.disableViewImageUI();
-            } else {
-                uiManager.disableTagUI();
-                uiManager.disableViewImageUI();
-            }
-        }
+        updateFileSelection();
     };
 
+    /**
+     * Selects the files currently selected in the directory display, and adjusts the display accordingly.
+     */
+    void updateFileSelection() {
+        ListView<DirectoryRow> displayFiles = uiManager.getDisplayFiles();
+        List<DirectoryRow> selectedRows = displayFiles.getSelectionModel().getSelectedItems();
+        File[] selectedDirFiles = new File[selectedRows.size()];
+        int[] selectedIds = new int[selectedRows.size()];
+
+        /* Each row carries its File and the id of its ImageFile, so no row needs to be looked up. */
+        int i = 0;
+        for (DirectoryRow row : selectedRows) {
+            selectedDirFiles[i] = row.getFile();
+            selectedIds[i] = row.getId();
+            i++;
+        }
+        appRunner.setSelectedFiles(selectedDirFiles);
+        appRunner.setSelectedIds(selectedIds);
+
+        if (selectedDirFiles.length == 1) {
+            appRunner.setSelectedFile(selectedDirFiles[0]);
+            uiManager.disableTagUI();
+            uiManager.enableViewImageUI();
+        } else if (selectedDirFiles.length != 0) {
+            appRunner.setSelectedFile(null);
+            uiManager.enableTagUI();
+            uiManager.disableViewImageUI();
+        } else {
+            appRunner.setSelectedFile(null);
+            uiManager.disableTagUI();
+            uiManager.disableViewImageUI();
+        }
+    }
+
     /**
      * Filters the directory for images containing tag(s) selected by the user.
      */
@@ -334,6 +422,15 @@ class EventsManager {
         }
     };
 
+    /**
+     * Helper that follows the selected file to where its history change moved it.
+     */
+    private void historyHelper(ImageFileManager imageFileManager) {
+        File tempFile = imageFileManager.getCurrentFile();
+        uiManager.updateDirectoryFile(appRunner.getSelectedFile(), tempFile, imageFileManager.getCurrentId());
+        appRunner.setSelectedFile(tempFile);
+    }
+
     private void filterHelper() {
         if (appRunner.getDir() == null) {
             appRunner.setDir(directoryManager.chooseDirectory());
@@ -0,0 +1,194 @@
+package Navigation;
+
+import Diagnostics.Metrics;
+import IO.IoScheduler;
+import javafx.scene.image.Image;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+/**
+ * Decodes images shown in the image display ahead of time. While one image is shown, the images
+ * next to it in the directory are decoded in the background, through the IoScheduler, at the size they are shown at, so
+ * that stepping to them does not wait for a decode.
+ *
+ * Decoded images are kept in a cache holding at most a given number of bytes of pixels, dropping the
+ * least recently shown images first. Prefetches of images that are no longer next to the one shown,
+ * such as after the user jumps elsewhere in the directory, are cancelled.
+ */
+class ImagePrefetcher {
+
+    /* The number of bytes of each decoded pixel. */
+    private static final int BYTES_PER_PIXEL = 4;
+
+    /* Decodes images in the background, as many at once as the mount of each file allows. */
+    private final IoScheduler ioScheduler;
+    /* Finds where a file is on disk, given where it is seen by the user. */
+    private final UnaryOperator<File> locator;
+    /* The decoded images, the least recently used first. */
+    private final LinkedHashMap<File, Image> cache;
+    /* The images being decoded in the background. */
+    private final HashMap<File, Future<Image>> pending;
+    /* The largest number of bytes of pixels kept in the cache. */
+    private final long capacity;
+    /* The number of bytes of pixels currently in the cache. */
+    private long size;
+    /* The size images are decoded at. */
+    private double width;
+    private double height;
+
+    /**
+     * Constructs a new ImagePrefetcher.
+     *
+     * @param capacity The largest number of bytes of decoded pixels kept at once.
+     * @param ioScheduler Decodes images in the background.
+     * @param locator  Finds where a file is on disk, which may not be where it is seen while it waits to be renamed.
+     */
+    ImagePrefetcher(long capacity, IoScheduler ioScheduler, UnaryOperator<File> locator) {
+        this.locator = locator;
+        this.ioScheduler = ioScheduler;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.pending = new HashMap<>();
+        this.capacity = capacity;
+        this.size = 0;
+    }
+
+    /**
+     * Sets the size at which images are decoded. Images decoded at another size are decoded again.
+     *
+     * @param width  The largest width of an image, or 0 for its own width.
+     * @param height The largest height of an image, or 0 for its own height.
+     */
+    synchronized void setSize(double width, double height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Returns a decoded image, waiting for its prefetch if it is being decoded, or decoding it right
+     * away if it was not prefetched.
+     *
+     * @param file The image file.
+     * @return The decoded image.
+     */
+    Image get(File file) {
+        Future<Image> future;
+        synchronized (this) {
+            Image image = this.cache.get(file);
+            if (image != null && this.hasSize(image)) {
+                return image;
+            }
+            future = this.pending.get(file);
+        }
+        if (future != null) {
+            try {
+                Image image = future.get();
+                if (image != null && this.hasSize(image)) {
+                    return image;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (CancellationException | ExecutionException e) {
+                /* Decoded again below. */
+            }
+        }
+        return this.decode(file);
+    }
+
+    /**
+     * Prefetches the images that may be shown next, and cancels the prefetches of all other images.
+     *
+     * @param files The images that may be shown next, the most likely first.
+     */
+    synchronized void prefetch(List<File> files) {
+        Iterator<Map.Entry<File, Future<Image>>> iterator = this.pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<File, Future<Image>> entry = iterator.next();
+            if (entry.getValue().isDone() || !files.contains(entry.getKey())) {
+                entry.getValue().cancel(false);
+                iterator.remove();
+            }
+        }
+        for (File file : files) {
+            Image image = this.cache.get(file);
+            if ((image == null || !this.hasSize(image)) && !this.pending.containsKey(file)) {
+                this.pending.put(file, this.ioScheduler.submit(this.locator.apply(file).toPath(), () -> this.decode(file)));
+            }
+        }
+    }
+
+    /**
+     * Keeps the decoded image of a file that was renamed or moved.
+     *
+     * @param oldFile The previous location of the file.
+     * @param newFile The current location of the file.
+     */
+    synchronized void moved(File oldFile, File newFile) {
+        Image image = this.cache.remove(oldFile);
+        if (image != null && newFile != null) {
+            this.cache.put(newFile, image);
+        }
+    }
+
+    /**
+     * Helper that decodes an image at the current size, and keeps it in the cache unless it could not be decoded.
+     */
+    private Image decode(File file) {
+        double decodeWidth;
+        double decodeHeight;
+        synchronized (this) {
+            decodeWidth = this.width;
+            decodeHeight = this.height;
+        }
+        long start = Metrics.DECODE.start();
+        Image image = new Image(this.locator.apply(file).toURI().toString(), decodeWidth, decodeHeight, true, true);
+        Metrics.DECODE.stop(start);
+        if (!image.isError()) {
+            synchronized (this) {
+                this.store(file, image);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Helper that adds an image to the cache, dropping the least recently used images while it holds too many bytes.
+     */
+    private void store(File file, Image image) {
+        Image old = this.cache.put(file, image);
+        if (old != null) {
+            this.size -= weight(old);
+        }
+        this.size += weight(image);
+        Iterator<Image> iterator = this.cache.values().iterator();
+        while (this.size > this.capacity && iterator.hasNext()) {
+            Image eldest = iterator.next();
+            if (eldest != image) {
+                this.size -= weight(eldest);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Helper that returns whether an image was decoded at the current size.
+     */
+    private synchronized boolean hasSize(Image image) {
+        return image.getRequestedWidth() == this.width && image.getRequestedHeight() == this.height;
+    }
+
+    /**
+     * Helper that returns the number of bytes of pixels of a decoded image.
+     */
+    private static long weight(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight() * BYTES_PER_PIXEL;
+    }
+}
@@ -37,4 +37,14 @@ class ListenersManager {
             appRunner.setSelectedHistoryEntry(newValue);
         }
     };
+
+    /**
+     * Enables or disables searching as the user writes a tag query.
+     */
+    final ChangeListener<String> SEARCH_QUERY_CHANGE_LISTENER = new ChangeListener<String>() {
+        @Override
+        public void changed(ObservableValue<? extends String> observable, String oldValue, String newValue) {
+            uiManager.updateSearchQueryUI(newValue);
+        }
+    };
 }
@@ -0,0 +1,75 @@
+package Navigation;
+
+import Tags.Tag;
+import Tags.TagManager;
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+
+import java.util.ArrayList;
+
+/**
+ * Suggests existing tags below a TextField while the user types a tag name into it.
+ */
+class TagAutoCompleter {
+
+    /* The largest number of tags suggested at once. */
+    private static final int SUGGESTION_LIMIT = 10;
+
+    /* The field being completed. */
+    private TextField textField;
+    /* The TagManager suggesting tags. */
+    private TagManager tagManager;
+    /* The popup listing all suggestions. */
+    private ContextMenu suggestionsMenu;
+
+    /**
+     * Constructs a new TagAutoCompleter, and attaches it to a TextField.
+     *
+     * @param textField: The field being completed.
+     * @param tagManager: The TagManager suggesting tags.
+     */
+    TagAutoCompleter(TextField textField, TagManager tagManager) {
+        this.textField = textField;
+        this.tagManager = tagManager;
+        this.suggestionsMenu = new ContextMenu();
+        textField.textProperty().addListener((observable, oldValue, newValue) -> this.showSuggestions(newValue));
+        textField.focusedProperty().addListener((observable, oldValue, newValue) -> {
+            if (!newValue) {
+                this.suggestionsMenu.hide();
+            }
+        });
+    }
+
+    /**
+     * Updates the suggestions for what the user has typed so far.
+     *
+     * @param text: The text of the field.
+     */
+    private void showSuggestions(String text) {
+        String prefix = text.startsWith("@") ? text.substring(1) : text;
+        if (prefix.isEmpty() || !this.textField.isFocused()) {
+            this.suggestionsMenu.hide();
+            return;
+        }
+        ArrayList<Tag> suggestions = this.tagManager.suggestTags(prefix, SUGGESTION_LIMIT);
+        if (suggestions.isEmpty() || (suggestions.size() == 1 && suggestions.get(0).getName().equals(prefix))) {
+            this.suggestionsMenu.hide();
+            return;
+        }
+        ArrayList<MenuItem> items = new ArrayList<>();
+        for (Tag tag : suggestions) {
+            MenuItem item = new MenuItem(tag.getName());
+            item.setOnAction(event -> {
+                this.textField.setText(tag.getName());
+                this.textField.positionCaret(tag.getName().length());
+            });
+            items.add(item);
+        }
+        this.suggestionsMenu.getItems().setAll(items);
+        if (!this.suggestionsMenu.isShowing()) {
+            this.suggestionsMenu.show(this.textField, Side.BOTTOM, 0, 0);
+        }
+    }
+}
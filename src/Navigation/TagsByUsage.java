@@ -0,0 +1,99 @@
+package Navigation;
+
+import Tags.Tag;
+import Tags.TagManager;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * All existing tags, those carried by the most images first, then by name, kept for as long as the
+ * application runs. The list is sorted once, then only the tags whose usage changed are moved, as the
+ * TagManager tells of them; changes made on other threads, such as by a batch job, are gathered and
+ * applied together on the JavaFX thread.
+ */
+class TagsByUsage {
+
+    private final TagManager tagManager;
+    /* The tags shown, sorted by the count each was placed with. */
+    private final ObservableList<Tag> tags;
+    /* The usage count each tag in tags was placed with. */
+    private final HashMap<Tag, Integer> placedCounts;
+    /* The order of tags, by the count each was placed with. */
+    private final Comparator<Tag> order;
+    /* The tags whose usage changed since they were last placed. */
+    private final Set<Tag> changed;
+    /* Whether placing the changed tags is already posted to the JavaFX thread. */
+    private final AtomicBoolean placePosted;
+
+    /**
+     * Constructs the list of all tags of a TagManager, and keeps it up to date. To be called on the JavaFX thread.
+     *
+     * @param tagManager The TagManager of all tags.
+     */
+    TagsByUsage(TagManager tagManager) {
+        this.tagManager = tagManager;
+        this.tags = FXCollections.observableArrayList();
+        this.placedCounts = new HashMap<>();
+        this.order = Comparator.comparingInt((Tag tag) -> -this.placedCounts.get(tag)).thenComparing(Tag::getName);
+        this.changed = ConcurrentHashMap.newKeySet();
+        this.placePosted = new AtomicBoolean(false);
+        /* Tags changing while the list is first sorted are placed again afterwards. */
+        tagManager.setUsageListener(this::usageChanged);
+        List<Tag> sortedTags = tagManager.getTagsByUsage();
+        for (Tag tag : sortedTags) {
+            this.placedCounts.put(tag, tagManager.getUsageCount(tag));
+        }
+        /* Sorted again, in case a count changed between the two. */
+        sortedTags.sort(this.order);
+        this.tags.setAll(sortedTags);
+    }
+
+    /**
+     * @return The tags, in order, to be shown by a ListView.
+     */
+    ObservableList<Tag> getTags() {
+        return this.tags;
+    }
+
+    /**
+     * Helper that takes note of a tag whose usage changed, on any thread.
+     */
+    private void usageChanged(Tag tag) {
+        this.changed.add(tag);
+        if (this.placePosted.compareAndSet(false, true)) {
+            Platform.runLater(this::placeChanged);
+        }
+    }
+
+    /**
+     * Helper that moves each tag whose usage changed to its new position, or out of the list once deleted.
+     */
+    private void placeChanged() {
+        this.placePosted.set(false);
+        for (Iterator<Tag> iterator = this.changed.iterator(); iterator.hasNext(); ) {
+            Tag tag = iterator.next();
+            iterator.remove();
+            if (this.placedCounts.containsKey(tag)) {
+                int position = Collections.binarySearch(this.tags, tag, this.order);
+                if (position >= 0) {
+                    this.tags.remove(position);
+                }
+                this.placedCounts.remove(tag);
+            }
+            if (this.tagManager.isExistingTag(tag)) {
+                this.placedCounts.put(tag, this.tagManager.getUsageCount(tag));
+                this.tags.add(-Collections.binarySearch(this.tags, tag, this.order) - 1, tag);
+            }
+        }
+    }
+}
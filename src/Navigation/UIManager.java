@@ -1,20 +1,30 @@
 package Navigation;
 
 import Application.AppRunner;
+import Core.BulkMove;
+import Diagnostics.Metrics;
+import Diagnostics.Timer;
+import IO.IoScheduler;
+import Images.GatheredFiles;
 import Images.ImageFileHistoryEntry;
 import Images.ImageFileHistoryManager;
-import Images.ImageFileManager;
+import Images.ImageHeader;
 import Tags.Tag;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import Tags.TagManager;
+import Tags.TagPair;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Font;
@@ -22,7 +32,10 @@ import javafx.scene.text.Font;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Observable;
+import java.util.function.IntUnaryOperator;
 
 /**
  * A class that deals with all tasks related to the User Interface.
@@ -30,6 +43,15 @@ import java.util.Observable;
 
 public class UIManager {
 
+    /* Shows the diagnostics screen, which has no button. */
+    private static final KeyCombination DIAGNOSTICS_KEYS = new KeyCodeCombination(KeyCode.D,
+            KeyCombination.SHORTCUT_DOWN, KeyCombination.SHIFT_DOWN);
+
+    /* The number of images prefetched on each side of the image shown. */
+    private static final int PREFETCH_DISTANCE = 3;
+    /* The largest number of bytes of prefetched images kept in memory. */
+    private static final long PREFETCH_CAPACITY = Runtime.getRuntime().maxMemory() / 8;
+
     /* Runs the application. */
     private AppRunner appRunner;
     /* Manages all directory-related operations. */
@@ -44,20 +66,54 @@ public class UIManager {
             viewImageButton, addTagButton, removeTagButton, moveFileButton, viewImageHistoryButton,
             revertToHistoryEntryButton, removeTagFromAllButton, addSelectedTagButton, filterImagesButton,
             removeFilterButton, createNewTagButton, backToImageButton, masterLogButton, addThisTagButton,
-            filterDirImagesButton;
+            filterDirImagesButton, previousImageButton, nextImageButton, moveFilesButton, cancelMoveButton,
+            undoButton, redoButton;
 
     /* The field where the user inputs the tag text. */
     private TextField newTagTextField = new TextField();
     private TextField createTagTextField = new TextField();
+    /* The field where the user inputs a tag query, such as "@beach & !@blurry". */
+    private TextField searchQueryTextField = new TextField();
+
+    /* The only Scene of the application. Each screen is shown by making its layout the root of this Scene. */
+    private Scene scene;
+    /* The layout of each screen, built the first time the screen is shown and kept afterwards. */
+    private VBox homeLayout, historyLayout, logLayout, tagsLayout, diagnosticsLayout;
+    private BorderPane directoryLayout, imageLayout;
+    /* The boxes of the screens whose contents change from one showing to the next. */
+    private HBox directoryTopBox, imageTopBox, addTagBox, createTagBox;
+    private VBox directoryLeftBox, directoryRightBox, imageListBox, imageRightBox;
 
     /* All display views. */
-    private ListView<Tag> displayTags;
-    private ListView<String> displayFiles;
-    private ListView<String> displayHistory;
-    private ListView<Tag> displayImageTags;
+    private ListView<Tag> displayTags = new ListView<>();
+    private ListView<DirectoryRow> displayFiles;
+    /* The files shown in the directory display, kept between visits and updated row by row. */
+    private DirectoryView directoryView = new DirectoryView();
+    /* The label naming the directory, or the filter, of the directory display. */
+    private Label directoryLabel = new Label();
+    private ListView<String> displayHistory = new ListView<>();
+    /* The latency of each timed operation, on the diagnostics display. */
+    private ListView<String> displayDiagnostics = new ListView<>();
+    private ListView<ImageFileHistoryEntry> displayImageHistory = new ListView<>();
+    private ListView<Tag> displayImageTags = new ListView<>();
+    /* The labels and view of the image display. */
+    private Label imageNameLabel = new Label();
+    private Label imagePathLabel = new Label();
+    private ImageView imageView = new ImageView();
+    /* Decodes the images next to the one shown, before the user steps to them. */
+    private ImagePrefetcher imagePrefetcher = new ImagePrefetcher(PREFETCH_CAPACITY, IoScheduler.getDefault(),
+            file -> appRunner.getLibrary().getFileOnDisk(file));
+    /* The label showing which tags are most often used together, on the tags display. */
+    private Label topPairsLabel = new Label();
+    /* The progress of the move of the selected files, on the directory display. */
+    private ProgressBar moveProgressBar = new ProgressBar();
+    private Label moveProgressLabel = new Label();
+    private boolean moveInProgress = false;
 
     private boolean dirToBeFiltered = false;
     private boolean filterOnlyDirFiles = false;
+    /* The tag query the directory is filtered with, or null to filter with the selected tags. */
+    private String searchQuery = null;
 
     /**
      * Constructs a new UIManager.
@@ -70,6 +126,10 @@ public class UIManager {
         eventsManager = new EventsManager(appRunner, directoryManager, this);
         listenersManager = new ListenersManager(appRunner, this);
         setUpButtons();
+        setUpListViews();
+        scene = new Scene(new StackPane(), 1080, 720);
+        scene.getAccelerators().put(DIAGNOSTICS_KEYS, this::setUpDiagnosticsDisplay);
+        appRunner.getStage().setScene(scene);
         setUpHomeDisplay();
         appRunner.getStage().show();
     }
@@ -94,6 +154,12 @@ public class UIManager {
         viewImageButton = new Button("Edit Image");
         viewImageButton.setOnAction(eventsManager.VIEW_IMAGE_EVENT_HANDLER);
 
+        /* For stepping to the previous or the next image of the directory. */
+        previousImageButton = new Button("Previous Image");
+        previousImageButton.setOnAction(eventsManager.PREVIOUS_IMAGE_EVENT_HANDLER);
+        nextImageButton = new Button("Next Image");
+        nextImageButton.setOnAction(eventsManager.NEXT_IMAGE_EVENT_HANDLER);
+
         /* For the viewing of the image, after examining its history. */
         backToImageButton = new Button("Back to Image");
         backToImageButton.setOnAction(eventsManager.VIEW_IMAGE_EVENT_HANDLER);
@@ -127,6 +193,12 @@ public class UIManager {
         moveFileButton = new Button("Move File");
         moveFileButton.setOnAction(eventsManager.MOVE_FILE_EVENT_HANDLER);
 
+        /* For the moving of all selected Files to another directory, and the cancelling of it. */
+        moveFilesButton = new Button("Move Selected Files");
+        moveFilesButton.setOnAction(eventsManager.MOVE_FILES_EVENT_HANDLER);
+        cancelMoveButton = new Button("Cancel Move");
+        cancelMoveButton.setOnAction(eventsManager.CANCEL_MOVE_EVENT_HANDLER);
+
         /* For the viewing of an Image's history of changes. */
         viewImageHistoryButton = new Button("View History");
         viewImageHistoryButton.setOnAction(eventsManager.VIEW_HISTORY_EVENT_HANDLER);
@@ -136,6 +208,12 @@ public class UIManager {
         revertToHistoryEntryButton.setText("Revert State");
         revertToHistoryEntryButton.setOnAction(eventsManager.REVERT_HISTORY_EVENT_HANDLER);
 
+        /* For undoing and redoing the changes of an Image, one at a time. */
+        undoButton = new Button("Undo");
+        undoButton.setOnAction(eventsManager.UNDO_EVENT_HANDLER);
+        redoButton = new Button("Redo");
+        redoButton.setOnAction(eventsManager.REDO_EVENT_HANDLER);
+
         /* For the viewing of the Master Log. */
         masterLogButton = new Button("Master Log");
         masterLogButton.setOnAction(eventsManager.MASTER_LOG_EVENT_HANDLER);
@@ -154,6 +232,14 @@ public class UIManager {
         filterDirImagesButton.setOnAction(eventsManager.FILTER_IMAGES_EVENT_HANDLER);
         filterDirImagesButton.setDisable(true);
 
+        /* For searching or filtering images with a tag query instead of the selected tags. */
+        searchQueryTextField.setPromptText("Search, e.g. @beach & !@blurry");
+        searchQueryTextField.textProperty().addListener(listenersManager.SEARCH_QUERY_CHANGE_LISTENER);
+
+        /* For suggesting existing tags while the user types a tag name. */
+        new TagAutoCompleter(newTagTextField, appRunner.getTagManager());
+        new TagAutoCompleter(createTagTextField, appRunner.getTagManager());
+
         /* For the ending of searching Images with some tag(s). */
         removeFilterButton = new Button("Remove Filtering");
         removeFilterButton.setOnAction(eventsManager.REMOVE_FILTERING_EVENT_HANDLER);
@@ -169,6 +255,46 @@ public class UIManager {
         disableImageRemoveTagUI();
     }
 
+    /**
+     * Sets up all lists shown to the user, which are kept for as long as the application runs.
+     */
+    private void setUpListViews() {
+        TagManager tagManager = appRunner.getTagManager();
+
+        /* The files of the current directory. */
+        displayFiles = directoryView.getListView();
+        displayFiles.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_FILES_EVENT_HANDLER);
+
+        /* All tags, each with the number of images carrying it, the most used first. */
+        displayTags.setItems(new TagsByUsage(tagManager).getTags());
+        displayTags.setCellFactory(list -> new ListCell<Tag>() {
+            @Override
+            protected void updateItem(Tag tag, boolean empty) {
+                super.updateItem(tag, empty);
+                setText(empty || tag == null ? null : tag + " (" + tagManager.getUsageCount(tag) + ")");
+            }
+        });
+        displayTags.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        displayTags.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_TAGS_EVENT_HANDLER);
+
+        /* The tags of the selected image. */
+        displayImageTags.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        displayImageTags.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_IMAGE_TAGS_EVENT_HANDLER);
+
+        /* The history of the selected image. */
+        displayImageHistory.getSelectionModel().selectedItemProperty().addListener(
+                listenersManager.HISTORY_ENTRY_CHANGE_LISTENER);
+
+        /* The selected image itself, scaled with the window. */
+        imageView.setSmooth(true);
+        imageView.setPreserveRatio(true);
+        imageView.fitWidthProperty().bind(appRunner.getStage().widthProperty().divide(2));
+        imageView.fitHeightProperty().bind(appRunner.getStage().heightProperty().divide(2));
+
+        newTagTextField.setPromptText("Add a tag!");
+        createTagTextField.setPromptText("Create a tag!");
+    }
+
     /**
      * Returns a <code> TextField </code> object that can be used to create new tags.
      * This is retrieved from a <code> TextField </code>, of which the user inputs
@@ -200,7 +326,7 @@ public class UIManager {
      *
      * @return All Files selected by the user.
      */
-    ListView<String> getDisplayFiles() {
+    ListView<DirectoryRow> getDisplayFiles() {
         return displayFiles;
     }
 
@@ -267,8 +393,21 @@ public class UIManager {
      */
     void disableAllTagsUI() {
         removeTagFromAllButton.setDisable(true);
-        filterImagesButton.setDisable(true);
-        filterDirImagesButton.setDisable(true);
+        if (searchQueryTextField.getText().trim().isEmpty()) {
+            filterImagesButton.setDisable(true);
+            filterDirImagesButton.setDisable(true);
+        }
+    }
+
+    /**
+     * Enables the search buttons once a tag query has been written, and disables them again if it is
+     * cleared while no tags are selected.
+     */
+    void updateSearchQueryUI(String query) {
+        boolean noQuery = query.trim().isEmpty();
+        boolean noTags = appRunner.getSelectedTags() == null || appRunner.getSelectedTags().length == 0;
+        filterImagesButton.setDisable(noQuery && noTags);
+        filterDirImagesButton.setDisable(noQuery && noTags);
     }
 
     void disableFilterDirUI() {
@@ -280,6 +419,8 @@ public class UIManager {
      */
     void filterDir() {
         dirToBeFiltered = true;
+        String query = searchQueryTextField.getText().trim();
+        searchQuery = query.isEmpty() ? null : query;
         removeFilterButton.setDisable(false);
     }
 
@@ -294,6 +435,7 @@ public class UIManager {
     void unFilterDir() {
         dirToBeFiltered = false;
         filterOnlyDirFiles = false;
+        searchQuery = null;
         removeFilterButton.setDisable(true);
     }
 
@@ -301,52 +443,139 @@ public class UIManager {
      * Displays the home scene. This method is accessed by opening the application.
      */
     void setUpHomeDisplay() {
-        VBox homeLayout = new VBox();
-        //set Home Title
-        Label homeTitle = new Label("@memories");
-        homeTitle.setFont(new Font(32));
-        homeTitle.setTranslateY(-160);
-        Label brehLabel = new Label("100's Only Studios");
-        brehLabel.setTranslateY(-150);
-        homeLayout.getChildren().addAll(homeTitle, brehLabel, masterLogButton, selectDirectoryButton, backToFolderButton,
-                activeTagsButton, closeButton);
-        homeLayout.setAlignment(Pos.CENTER);
-        homeLayout.setSpacing(20);
+        if (homeLayout == null) {
+            homeLayout = new VBox();
+            //set Home Title
+            Label homeTitle = new Label("@memories");
+            homeTitle.setFont(new Font(32));
+            homeTitle.setTranslateY(-160);
+            Label brehLabel = new Label("100's Only Studios");
+            brehLabel.setTranslateY(-150);
+            homeLayout.getChildren().addAll(homeTitle, brehLabel);
+            homeLayout.setAlignment(Pos.CENTER);
+            homeLayout.setSpacing(20);
+        }
+        setChildren(homeLayout, 2, masterLogButton, selectDirectoryButton, backToFolderButton, activeTagsButton,
+                closeButton);
         setUpScene(homeLayout);
     }
 
     /**
-     * Displays the files available in a directory specified by the user. It is accessed
-     * when the user opens up the home menu and chooses a directory.
+     * Displays the files available in a directory specified by the user, looking through the directory
+     * again, or searching again if it is filtered. It is accessed when the user opens up the home menu
+     * and chooses a directory, and whenever a filter changes.
      */
     void setUpDirectoryDisplay() {
         if (appRunner.getDir() == null) {
             return;
         }
-        Label label;
-        displayFiles = new ListView<>();
-        disableTagUI();
-        label = setUpDirectoryLabelHelper();
+        setUpDirectoryLabelHelper();
         setUpDirectoryObservableListHelper();
+        showDirectoryDisplay();
+    }
+
+    /**
+     * Displays the files of the directory as they were last shown, with any changes made since then
+     * through this application. Only looks through the directory again if it was never shown, or if
+     * too many of its files may have changed.
+     */
+    void showDirectoryDisplay() {
+        if (appRunner.getDir() == null) {
+            return;
+        }
+        if (directoryView.needsUpdate(appRunner.getDir())) {
+            setUpDirectoryDisplay();
+            return;
+        }
         setUpTagsListView();
-        setUpDirectorySceneHelper(label);
-        appRunner.saveToFiles();
+        setUpDirectorySceneHelper();
+        eventsManager.updateFileSelection();
+    }
+
+    /**
+     * Updates the row of a file that was renamed or moved through this application.
+     *
+     * @param oldFile The previous location of the file.
+     * @param newFile The current location of the file.
+     * @param id The id of the ImageFile of this file, or -1 if it is not an ImageFile.
+     */
+    void updateDirectoryFile(File oldFile, File newFile, int id) {
+        imagePrefetcher.moved(oldFile, newFile);
+        if (dirToBeFiltered) {
+            /* The file may no longer match the filter, so the filter is applied again. */
+            directoryView.invalidate();
+        } else if (oldFile != null && newFile != null) {
+            directoryView.updateFile(oldFile, newFile, id);
+        }
     }
 
     /**
-     * Sets up the directory up the directory or tag filter ImageFiles and label.
+     * Shows the progress of the move of the selected files on the directory display, with a button to cancel it.
+     */
+    void showMoveProgress() {
+        moveProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+        moveProgressLabel.setText("Moving files...");
+        moveFilesButton.setDisable(true);
+        moveInProgress = true;
+        setChildren(directoryTopBox, 2, moveProgressBar, moveProgressLabel, cancelMoveButton);
+    }
+
+    /**
+     * Updates the progress of the move of the selected files.
      *
-     * @return The label containing the current directory location.
+     * @param move The move being shown, or null once it is done.
+     */
+    void updateMoveProgress(BulkMove move) {
+        if (move == null || move.getTotalFiles() == 0) {
+            return;
+        }
+        moveProgressBar.setProgress((double) move.getMovedFiles() / move.getTotalFiles());
+        moveProgressLabel.setText(move.getMovedFiles() + " of " + move.getTotalFiles() + " files moved"
+                + (move.isCancelled() ? ", cancelling..." : ""));
+    }
+
+    /**
+     * Hides the progress of the move of the selected files once it is done, and looks through the
+     * directory again, showing it anew if it is being shown.
+     */
+    void hideMoveProgress() {
+        moveFilesButton.setDisable(false);
+        moveInProgress = false;
+        setChildren(directoryTopBox, 2);
+        directoryView.invalidate();
+        if (scene.getRoot() == directoryLayout) {
+            showDirectoryDisplay();
+        }
+    }
+
+    /**
+     * Makes the directory display look through the directory again the next time it is shown,
+     * such as after a change to many files at once.
+     */
+    void invalidateDirectoryDisplay() {
+        directoryView.invalidate();
+    }
+
+    /**
+     * Sets up the directory or tag filter ImageFiles and label.
      */
-    private Label setUpDirectoryLabelHelper() {
-        ArrayList<File> allDirFiles;
-        ImageFileManager imageFileManager = appRunner.getImageFileManager();
+    private void setUpDirectoryLabelHelper() {
+        List<File> allDirFiles;
         String resultLabelString = "";
-        Label label;
 
-        if (dirToBeFiltered) {
-            allDirFiles = imageFileManager.gatherFilesWithTags(appRunner.getSelectedTags(),
-                    appRunner.getDir(), filterOnlyDirFiles);
+        if (dirToBeFiltered && searchQuery != null) {
+            File searchDir = filterOnlyDirFiles ? appRunner.getDir() : null;
+            try {
+                allDirFiles = appRunner.getLibrary().search(searchQuery, searchDir);
+                resultLabelString += filterOnlyDirFiles ? appRunner.getDir().getPath() + " --- Filter: " + searchQuery
+                        : "Searching All Files For: " + searchQuery;
+            } catch (IllegalArgumentException e) {
+                allDirFiles = new ArrayList<>();
+                resultLabelString += "Invalid search \"" + searchQuery + "\" at " + e.getMessage();
+            }
+        } else if (dirToBeFiltered) {
+            allDirFiles = appRunner.getLibrary().gatherFilesWithTags(appRunner.getSelectedTags(),
+                    filterOnlyDirFiles ? appRunner.getDir() : null);
             if (filterOnlyDirFiles) {
                 resultLabelString += appRunner.getDir().getPath() +
                         " --- Filter: " + Arrays.toString(appRunner.getSelectedTags());
@@ -359,65 +588,57 @@ public class UIManager {
         }
 
         appRunner.setDirectoryFiles(allDirFiles);
-        label = new Label(resultLabelString);
-        return label;
+        directoryLabel.setText(resultLabelString);
     }
 
     /**
      * Sets up the list of image Files in the Directory, or the image Files that have the appropriate tag(s).
+     * Only the rows that changed since the list was last shown are updated.
      */
     private void setUpDirectoryObservableListHelper() {
-        ObservableList<String> items;
-        ArrayList<String> tempDirFilenames = new ArrayList<>();
-        String pathName = appRunner.getDir().getPath();
-
-        /* Sets all file names. */
-        for (File dirFile : appRunner.getDirectoryFiles()) {
-            if (dirFile.getParent().equals(pathName)) {
-                tempDirFilenames.add(dirFile.getName());
-            } else {
-                String subPath = dirFile.getPath().substring(pathName.length());
-                tempDirFilenames.add(subPath);
-            }
+        List<File> files = appRunner.getDirectoryFiles();
+        IntUnaryOperator ids;
+        if (files instanceof GatheredFiles) {
+            /* The results of a search already know the id of each of their files. */
+            ids = ((GatheredFiles) files)::getId;
+        } else {
+            File idsDir = dirToBeFiltered && !filterOnlyDirFiles ? null : appRunner.getDir();
+            HashMap<File, Integer> idsByFile = appRunner.getLibrary().mapIdsUnder(idsDir);
+            ids = row -> idsByFile.getOrDefault(files.get(row), -1);
         }
-        appRunner.setDirFileNames(tempDirFilenames);
-        items = FXCollections.observableArrayList(appRunner.getDirFileNames());
-        displayFiles.setItems(items);
-
-        /* Adds the model to allow us to retrieve the selected files. */
-        displayFiles.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        displayFiles.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_FILES_EVENT_HANDLER);
+        directoryView.setFiles(appRunner.getDir(), files, ids);
     }
 
     /**
      * Sets up the Directory Scene.
      */
-    private void setUpDirectorySceneHelper(Label label) {
-
-        BorderPane directoryDisplay = new BorderPane();
-        VBox topBox = new VBox();
-        VBox leftBox = new VBox();
-        VBox rightBox = new VBox();
-        HBox topBoxButtons = new HBox();
-        HBox topBoxLabel = new HBox();
-
-        topBoxButtons.getChildren().addAll(homeButton, selectDirectoryButton);
-        topBox.getChildren().addAll(topBoxButtons);
-        leftBox.getChildren().addAll(label, displayFiles, viewImageButton, addTagButton, newTagTextField);
-        rightBox.getChildren().addAll(new Label("All Active Tags"), displayTags, filterDirImagesButton, removeFilterButton, activeTagsButton);
-
-        topBoxButtons.setSpacing(20);
-        leftBox.setSpacing(10);
-        rightBox.setSpacing(10);
-
-        directoryDisplay.setTop(topBox);
-        directoryDisplay.setCenter(leftBox);
-        directoryDisplay.setRight(rightBox);
-
-        setUpScene(directoryDisplay);
+    private void setUpDirectorySceneHelper() {
+        if (directoryLayout == null) {
+            directoryLayout = new BorderPane();
+            directoryTopBox = new HBox();
+            directoryLeftBox = new VBox();
+            directoryRightBox = new VBox();
+            directoryTopBox.setSpacing(20);
+            directoryLeftBox.setSpacing(10);
+            directoryRightBox.setSpacing(10);
+            directoryLayout.setTop(new VBox(directoryTopBox));
+            directoryLayout.setCenter(directoryLeftBox);
+            directoryLayout.setRight(directoryRightBox);
+            directoryRightBox.getChildren().add(new Label("All Active Tags"));
+        }
+        if (moveInProgress) {
+            setChildren(directoryTopBox, 0, homeButton, selectDirectoryButton, moveProgressBar, moveProgressLabel,
+                    cancelMoveButton);
+        } else {
+            setChildren(directoryTopBox, 0, homeButton, selectDirectoryButton);
+        }
+        setChildren(directoryLeftBox, 0, directoryLabel, displayFiles, viewImageButton, addTagButton,
+                newTagTextField, moveFilesButton);
+        setChildren(directoryRightBox, 1, displayTags, searchQueryTextField, filterDirImagesButton,
+                removeFilterButton, activeTagsButton);
+        setUpScene(directoryLayout);
     }
 
-
     /**
      * Displays a single image. This allows the user to perform all tagging operations, and is accessed by
      * choosing a file from the directory display.
@@ -428,106 +649,92 @@ public class UIManager {
      * @link https://docs.oracle.com/javase/8/javafx/api/javafx/scene/image/ImageView.html
      */
     void setUpImageDisplay() {
-        Label imageName;
-        ArrayList<Tag> tagsList;
-        displayImageTags = new ListView<>();
-        ObservableList<Tag> items;
-        BorderPane imageBorderPane = new BorderPane();
-        HBox topHBox = new HBox();
-        VBox centerVBox = new VBox();
-        VBox leftVBox = new VBox();
-        VBox rightVBox = new VBox();
-        HBox addTagBox = new HBox();
-        VBox listLayout = new VBox();
-        Label tagLabel = new Label("Image Tags");
-        Label allTagsLabel = new Label("All Tags");
         enableTagUI();
 
         /* Gets all information pertaining to the selected image. */
-        Label imagePathName = new Label(appRunner.getSelectedFile().getPath());
-        imageName = new Label(appRunner.getSelectedFile().getName());
-        tagsList = appRunner.getImageFileManager().getImageTags(appRunner.getSelectedFile());
-
-        /* Gets the list of all tags to be displayed. */
-        items = FXCollections.observableArrayList(tagsList);
-        displayImageTags.setItems(items);
-        displayImageTags.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        displayImageTags.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_IMAGE_TAGS_EVENT_HANDLER);
-
-        /* Creates the text field for the user to add a tag. */
-        newTagTextField.setPromptText("Add a tag!");
-        addTagBox.getChildren().addAll(addThisTagButton, newTagTextField);
-        addTagBox.setSpacing(20);
+        ImageHeader header = appRunner.getLibrary().getHeader(appRunner.getSelectedFile());
+        imagePathLabel.setText(appRunner.getSelectedFile().getPath() + (header == null ? "" : "  (" + header + ")"));
+        imageNameLabel.setText(appRunner.getSelectedFile().getName());
+        File selectedFile = appRunner.getSelectedFile();
+        displayImageTags.getItems().setAll(appRunner.getImageFileManager(selectedFile).getImageTags(selectedFile));
+        displayImageTags.getSelectionModel().clearSelection();
+        setUpImage();
         setUpTagsListView();
 
-        /* Sets up the arrangement of all UI components. */
-        listLayout.getChildren().addAll(displayImageTags, addThisTagButton, addTagBox, removeTagButton);
-        listLayout.setSpacing(10);
-        topHBox.getChildren().addAll(backToFolderButton, moveFileButton, viewImageHistoryButton);
-        topHBox.setSpacing(20);
-        centerVBox.getChildren().addAll(imageName, imagePathName, setUpImage());
-        leftVBox.getChildren().addAll(tagLabel, listLayout);
-        rightVBox.getChildren().addAll(allTagsLabel, displayTags, addSelectedTagButton, activeTagsButton);
-        rightVBox.setSpacing(10);
-
         /* All Scene information. */
-        setUpImageSceneHelper(imageBorderPane, topHBox, centerVBox, leftVBox, rightVBox);
+        setUpImageSceneHelper();
     }
 
     /**
-     * Sets up and returns the ImageView to be displayed in the Image Display scene.
-     *
-     * @return the ImageView object with all appropriate parameters attached.
+     * Sets the image shown in the Image Display scene to the selected image, decoded at the size it is shown at,
+     * and starts decoding the images around it in the directory.
      */
-    private ImageView setUpImage() {
-        ImageView imageView;
-        Image image = new Image(appRunner.getSelectedFile().toURI().toString());
-        imageView = new ImageView(image);
-        imageView.setImage(image);
-        imageView.setSmooth(true);
-        imageView.setPreserveRatio(true);
-        imageView.fitWidthProperty().bind(appRunner.getStage().widthProperty().divide(2));
-        imageView.fitHeightProperty().bind(appRunner.getStage().heightProperty().divide(2));
-        return imageView;
+    private void setUpImage() {
+        File selectedFile = appRunner.getSelectedFile();
+        imagePrefetcher.setSize(imageView.getFitWidth(), imageView.getFitHeight());
+        imageView.setImage(imagePrefetcher.get(selectedFile));
+        imagePrefetcher.prefetch(directoryView.neighboursOf(selectedFile, PREFETCH_DISTANCE));
     }
 
     /**
-     * Sets up the BorderPane for the viewing of this image.
+     * Displays the image some number of rows away from the selected image in the directory display.
      *
-     * @param image  The BorderPane that everything is being displayed on.
-     * @param top    The box containing all buttons.
-     * @param center The box containing all image information and viewing.
-     * @param left   The box containing the tags pertaining to this image.
-     * @param right  The box containing the tags that exist globally.
+     * @param offset The number of rows stepped, backwards if negative.
      */
-    private void setUpImageSceneHelper(BorderPane image, HBox top, VBox center, VBox left, VBox right) {
-        image.setTop(top);
-        image.setCenter(center);
-        image.setLeft(left);
-        image.setRight(right);
-        setUpScene(image);
+    void stepImage(int offset) {
+        if (appRunner.getSelectedFile() != null
+                && directoryView.selectNeighbour(appRunner.getSelectedFile(), offset)) {
+            eventsManager.updateFileSelection();
+            setUpImageDisplay();
+        }
+    }
+
+    /**
+     * Sets up the BorderPane for the viewing of this image: the buttons at the top, the image and its information
+     * in the center, the tags of this image on the left, and the tags that exist globally on the right.
+     */
+    private void setUpImageSceneHelper() {
+        if (imageLayout == null) {
+            imageLayout = new BorderPane();
+            imageTopBox = new HBox();
+            addTagBox = new HBox();
+            imageListBox = new VBox();
+            imageRightBox = new VBox();
+            imageTopBox.setSpacing(20);
+            addTagBox.setSpacing(20);
+            imageListBox.setSpacing(10);
+            imageRightBox.setSpacing(10);
+            imageListBox.getChildren().add(displayImageTags);
+            imageRightBox.getChildren().add(new Label("All Tags"));
+            imageLayout.setTop(imageTopBox);
+            imageLayout.setCenter(new VBox(imageNameLabel, imagePathLabel, imageView));
+            imageLayout.setLeft(new VBox(new Label("Image Tags"), imageListBox));
+            imageLayout.setRight(imageRightBox);
+        }
+        setChildren(imageTopBox, 0, backToFolderButton, previousImageButton, nextImageButton, moveFileButton,
+                viewImageHistoryButton);
+        setChildren(addTagBox, 0, newTagTextField);
+        setChildren(imageListBox, 1, addThisTagButton, addTagBox, removeTagButton);
+        setChildren(imageRightBox, 1, displayTags, addSelectedTagButton, activeTagsButton);
+        setUpScene(imageLayout);
     }
 
     /**
      * Displays all history instances belonging to an image.
      */
     void setUpHistoryDisplay() {
-        VBox historyLayout = new VBox();
-        ListView<ImageFileHistoryEntry> displayHistory = new ListView<>();
-        ObservableList<ImageFileHistoryEntry> items;
-        ArrayList<ImageFileHistoryEntry> allHistory;
+        if (historyLayout == null) {
+            historyLayout = new VBox();
+            historyLayout.setSpacing(20);
+        }
 
         /* Gets all of the history objects. */
-        allHistory = appRunner.getImageFileManager().getImageHistory(appRunner.getSelectedFile());
-        items = FXCollections.observableArrayList(allHistory);
-        displayHistory.setItems(items);
+        File selectedFile = appRunner.getSelectedFile();
+        displayImageHistory.getItems().setAll(appRunner.getImageFileManager(selectedFile).getImageHistory(selectedFile));
 
         /* All Scene information. */
-        historyLayout.getChildren().addAll(homeButton, backToImageButton, backToFolderButton, displayHistory,
-                revertToHistoryEntryButton);
-        displayHistory.getSelectionModel().selectedItemProperty().addListener(
-                listenersManager.HISTORY_ENTRY_CHANGE_LISTENER);
-        historyLayout.setSpacing(20);
+        setChildren(historyLayout, 0, homeButton, backToImageButton, backToFolderButton, displayImageHistory,
+                revertToHistoryEntryButton, undoButton, redoButton);
         setUpScene(historyLayout);
     }
 
@@ -535,63 +742,111 @@ public class UIManager {
      * Displays the log of all operations performed by the user.
      */
     void setUpLogDisplay() {
-        displayHistory = new ListView<>();
-        VBox logLayout = new VBox();
-        ObservableList<String> items;
         ArrayList<String> tempHistoryNames = new ArrayList<>();
         ImageFileHistoryManager log = appRunner.getMasterLog();
+        if (logLayout == null) {
+            logLayout = new VBox();
+        }
 
         /* Sets all file names. */
         for (ImageFileHistoryEntry entry : log.getAllHistory()) {
             tempHistoryNames.add(entry.masterString());
         }
-        items = FXCollections.observableArrayList(tempHistoryNames);
-        displayHistory.setItems(items);
+        displayHistory.getItems().setAll(tempHistoryNames);
 
         /* All Scene information. */
-        logLayout.getChildren().addAll(homeButton, displayHistory);
+        setChildren(logLayout, 0, homeButton, displayHistory);
         setUpScene(logLayout);
     }
 
+    /**
+     * Displays how long each timed operation takes, for looking into a slow library. It has no button,
+     * and is shown with Ctrl+Shift+D (Cmd+Shift+D on macOS) from any screen, which also refreshes it.
+     */
+    void setUpDiagnosticsDisplay() {
+        if (diagnosticsLayout == null) {
+            diagnosticsLayout = new VBox();
+            diagnosticsLayout.setSpacing(20);
+            displayDiagnostics.setStyle("-fx-font-family: monospace;");
+        }
+
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(String.format("%-20s %10s %12s %12s %12s", "Operation", "Calls", "p50 (ms)", "p99 (ms)",
+                "Max (ms)"));
+        for (Timer timer : Metrics.getTimers()) {
+            lines.add(String.format("%-20s %10d %12.3f %12.3f %12.3f", timer.getName(), timer.getCount(),
+                    timer.getP50Micros() / 1000, timer.getP99Micros() / 1000, timer.getMaxMicros() / 1000));
+        }
+        displayDiagnostics.getItems().setAll(lines);
+
+        /* All Scene information. */
+        setChildren(diagnosticsLayout, 0, homeButton, displayDiagnostics);
+        setUpScene(diagnosticsLayout);
+    }
+
     /**
      * Displays all existing tags. Accessed via the "Active Tags" button.
      */
     void setUpTagsDisplay() {
-        VBox tagsLayout = new VBox();
-        HBox createTagBox = new HBox();
+        if (tagsLayout == null) {
+            tagsLayout = new VBox();
+            createTagBox = new HBox();
+            tagsLayout.setSpacing(20);
+            createTagBox.setSpacing(20);
+        }
 
         disableAllTagsUI();
         setUpTagsListView();
 
         /* Allows the user to create a tag independently. */
-        createTagTextField.setPromptText("Create a tag!");
-        createTagBox.getChildren().addAll(createNewTagButton, createTagTextField);
-        createTagBox.setSpacing(20);
+        setChildren(createTagBox, 0, createNewTagButton, createTagTextField);
+
+        /* Shows which tags are most often used together. */
+        StringBuilder topPairs = new StringBuilder("Often used together:");
+        for (TagPair pair : appRunner.getTagManager().getTopTagPairs(5)) {
+            topPairs.append("  ").append(pair);
+        }
+        topPairsLabel.setText(topPairs.toString());
 
         /* All Scene information.*/
-        tagsLayout.getChildren().addAll(homeButton, backToFolderButton, displayTags, createTagBox,
-                removeTagFromAllButton, filterImagesButton);
-        tagsLayout.setSpacing(20);
+        setChildren(tagsLayout, 0, homeButton, backToFolderButton, displayTags, topPairsLabel, createTagBox,
+                removeTagFromAllButton, searchQueryTextField, filterImagesButton);
         setUpScene(tagsLayout);
     }
 
     /**
-     * Sets up the list of tags as seen in Active Tags.
+     * Clears the selection of the list of tags as seen in Active Tags, which keeps itself sorted.
      */
     private void setUpTagsListView() {
-        displayTags = new ListView<>();
-        ObservableList<Tag> items;
         appRunner.setSelectedTags(new Tag[0]);
-
-        /* Gets all tags. */
-        items = FXCollections.observableArrayList(appRunner.getTagManager().getAllExistingTags());
-        displayTags.setItems(items);
-        displayTags.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
-        displayTags.setOnMouseClicked(eventsManager.SELECT_MULTIPLE_TAGS_EVENT_HANDLER);
+        displayTags.getSelectionModel().clearSelection();
     }
 
+    /**
+     * Shows a screen, by making its layout the root of the only Scene.
+     *
+     * @param layout The layout of the screen.
+     */
     private void setUpScene(Parent layout) {
-        Scene newScene = new Scene(layout, 1080, 720);
-        appRunner.getStage().setScene(newScene);
+        if (scene.getRoot() != layout) {
+            scene.setRoot(layout);
+        }
+    }
+
+    /**
+     * Sets the children of a box of a screen, from some position onwards, leaving them in place if they are
+     * already there. The nodes shared by several screens are moved into the box being shown this way.
+     *
+     * @param box   The box whose children are being set.
+     * @param from  The number of children at the start of the box that are never changed.
+     * @param nodes The children from this position onwards.
+     */
+    private static void setChildren(Pane box, int from, Node... nodes) {
+        List<Node> children = box.getChildren();
+        List<Node> newChildren = Arrays.asList(nodes);
+        if (!children.subList(from, children.size()).equals(newChildren)) {
+            children.subList(from, children.size()).clear();
+            children.addAll(newChildren);
+        }
     }
 }
@@ -0,0 +1,109 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Matches every ImageFile matched by all of a set of nodes.
+ *
+ * Its nodes are evaluated in order of increasing cost: the node expected to match the fewest
+ * ImageFiles is evaluated first, every other term is then intersected with its result, and NOT
+ * terms are only removed from whichever candidates remain. Evaluation stops as soon as no
+ * candidates are left.
+ */
+class AndNode extends QueryNode {
+
+    /* The nodes that must all match. */
+    private final QueryNode[] children;
+
+    AndNode(QueryNode[] children) {
+        this.children = children;
+    }
+
+    /**
+     * Orders the nodes of this query by how expensive they are to apply.
+     *
+     * @param imageFileManager: The ImageFileManager being searched.
+     * @return The nodes of this query, in the order they should be applied.
+     */
+    private QueryNode[] plan(ImageFileManager imageFileManager) {
+        QueryNode[] plan = this.children.clone();
+        int[] estimates = new int[plan.length];
+        for (int i = 0; i < plan.length; i++) {
+            estimates[i] = plan[i].isFilter() ? 0 : plan[i].estimate(imageFileManager);
+        }
+        Integer[] order = new Integer[plan.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> this.children[i].isFilter() ? 1 : 0)
+                .thenComparingInt(i -> estimates[i]));
+        for (int i = 0; i < order.length; i++) {
+            plan[i] = this.children[order[i]];
+        }
+        return plan;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        int estimate = imageFileManager.size();
+        for (QueryNode child : this.children) {
+            estimate = Math.min(estimate, child.estimate(imageFileManager));
+        }
+        return estimate;
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        QueryNode[] plan = this.plan(imageFileManager);
+        BitSet candidates;
+        int next = 0;
+        if (plan[0].isFilter()) {
+            candidates = new BitSet();
+            candidates.set(0, imageFileManager.size());
+        } else if (plan[0].estimate(imageFileManager) == 0) {
+            return new BitSet();
+        } else {
+            candidates = plan[0].evaluate(imageFileManager);
+            next = 1;
+        }
+        this.retain(candidates, plan, next, imageFileManager);
+        return candidates;
+    }
+
+    @Override
+    void retain(BitSet candidates, ImageFileManager imageFileManager) {
+        this.retain(candidates, this.plan(imageFileManager), 0, imageFileManager);
+    }
+
+    /**
+     * Helper that applies the nodes of a plan to a set of candidates, until none are left.
+     */
+    private void retain(BitSet candidates, QueryNode[] plan, int next, ImageFileManager imageFileManager) {
+        for (int i = next; i < plan.length && !candidates.isEmpty(); i++) {
+            plan[i].retain(candidates, imageFileManager);
+        }
+    }
+
+    @Override
+    boolean isFilter() {
+        for (QueryNode child : this.children) {
+            if (!child.isFilter()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < this.children.length; i++) {
+            builder.append(i == 0 ? "" : " AND ").append(this.children[i]);
+        }
+        return builder.append(")").toString();
+    }
+}
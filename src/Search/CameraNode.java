@@ -0,0 +1,34 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile taken with a camera whose make or model contains some text, according
+ * to its metadata, read from a single column of the MetadataIndex.
+ */
+class CameraNode extends QueryNode {
+
+    /* The text being looked for. */
+    private final String text;
+
+    CameraNode(String text) {
+        this.text = text;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().size();
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().findIdsWithCamera(this.text);
+    }
+
+    @Override
+    public String toString() {
+        return "camera:\"" + this.text + "\"";
+    }
+}
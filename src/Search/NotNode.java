@@ -0,0 +1,52 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile not matched by another node. Applied by removing the other node's
+ * matches from a set of candidates, so it is a filter as well.
+ */
+class NotNode extends QueryNode {
+
+    /* The node whose matches are excluded. */
+    private final QueryNode child;
+
+    NotNode(QueryNode child) {
+        this.child = child;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        return imageFileManager.size();
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        BitSet ids = new BitSet();
+        ids.set(0, imageFileManager.size());
+        this.child.remove(ids, imageFileManager);
+        return ids;
+    }
+
+    @Override
+    void retain(BitSet candidates, ImageFileManager imageFileManager) {
+        this.child.remove(candidates, imageFileManager);
+    }
+
+    @Override
+    void remove(BitSet candidates, ImageFileManager imageFileManager) {
+        this.child.retain(candidates, imageFileManager);
+    }
+
+    @Override
+    boolean isFilter() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "NOT " + this.child;
+    }
+}
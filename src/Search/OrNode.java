@@ -0,0 +1,69 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile matched by any of a set of nodes.
+ */
+class OrNode extends QueryNode {
+
+    /* The nodes of which at least one must match. */
+    private final QueryNode[] children;
+
+    OrNode(QueryNode[] children) {
+        this.children = children;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        long estimate = 0;
+        for (QueryNode child : this.children) {
+            estimate += child.estimate(imageFileManager);
+        }
+        return (int) Math.min(estimate, imageFileManager.size());
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        BitSet ids = new BitSet();
+        for (QueryNode child : this.children) {
+            if (child.isFilter() || child.estimate(imageFileManager) != 0) {
+                ids.or(child.evaluate(imageFileManager));
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    void retain(BitSet candidates, ImageFileManager imageFileManager) {
+        BitSet matched = new BitSet();
+        for (QueryNode child : this.children) {
+            BitSet childCandidates = (BitSet) candidates.clone();
+            childCandidates.andNot(matched);
+            child.retain(childCandidates, imageFileManager);
+            matched.or(childCandidates);
+        }
+        candidates.and(matched);
+    }
+
+    @Override
+    boolean isFilter() {
+        for (QueryNode child : this.children) {
+            if (child.isFilter()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("(");
+        for (int i = 0; i < this.children.length; i++) {
+            builder.append(i == 0 ? "" : " OR ").append(this.children[i]);
+        }
+        return builder.append(")").toString();
+    }
+}
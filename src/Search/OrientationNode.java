@@ -0,0 +1,34 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile with some EXIF orientation, according to its metadata, read from a
+ * single column of the MetadataIndex.
+ */
+class OrientationNode extends QueryNode {
+
+    /* The orientation being matched, from 1 to 8. */
+    private final int orientation;
+
+    OrientationNode(int orientation) {
+        this.orientation = orientation;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().size();
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().findIdsWithOrientation(this.orientation);
+    }
+
+    @Override
+    public String toString() {
+        return "orientation:" + this.orientation;
+    }
+}
@@ -0,0 +1,55 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * A part of a parsed TagQuery, matching a set of ImageFile ids.
+ * Nodes are only evaluated while the ImageFileManager and its TagIndex are locked.
+ */
+abstract class QueryNode {
+
+    /**
+     * Returns an upper bound on the number of ImageFiles this node matches, used to decide
+     * in which order the parts of a query are evaluated. Must be cheap to compute.
+     *
+     * @param imageFileManager: The ImageFileManager being searched.
+     * @return The largest number of ids this node can match.
+     */
+    abstract int estimate(ImageFileManager imageFileManager);
+
+    /**
+     * @param imageFileManager: The ImageFileManager being searched.
+     * @return A new set of the ids of every ImageFile matching this node.
+     */
+    abstract BitSet evaluate(ImageFileManager imageFileManager);
+
+    /**
+     * Clears every id of a set that is not matched by this node.
+     *
+     * @param candidates: The ids being narrowed down.
+     * @param imageFileManager: The ImageFileManager being searched.
+     */
+    void retain(BitSet candidates, ImageFileManager imageFileManager) {
+        candidates.and(this.evaluate(imageFileManager));
+    }
+
+    /**
+     * Clears every id of a set that is matched by this node.
+     *
+     * @param candidates: The ids being narrowed down.
+     * @param imageFileManager: The ImageFileManager being searched.
+     */
+    void remove(BitSet candidates, ImageFileManager imageFileManager) {
+        candidates.andNot(this.evaluate(imageFileManager));
+    }
+
+    /**
+     * @return Whether this node should be applied to the candidates of the other parts of a query,
+     * instead of being evaluated on its own.
+     */
+    boolean isFilter() {
+        return false;
+    }
+}
@@ -0,0 +1,261 @@
+package Search;
+
+import Tags.Tag;
+import Tags.TagManager;
+
+import java.io.File;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+
+/**
+ * A recursive descent parser for tag queries, such as:
+ *
+ *     (@beach OR @lake) AND NOT @blurry under:"/photos/2017" taken:2017-06..2017-08 camera:canon
+ *
+ * Grammar, from the lowest to the highest precedence:
+ *     or      := and (("|" | "OR") and)*
+ *     and     := unary (["&" | "AND"] unary)*
+ *     unary   := ("!" | "-" | "NOT") unary | primary
+ *     primary := "(" or ")" | "under:" path | "taken:" date [".." date] | "camera:" name
+ *              | "orientation:" number | ["@"] name ["*"]
+ *
+ * Names and paths may be quoted to contain spaces. A name followed by "*" matches every tag starting with it.
+ * Dates are written as a year, a month or a day, such as 2017, 2017-06 or 2017-06-21, and cover all of it.
+ */
+class QueryParser {
+
+    /* The query being parsed. */
+    private final String text;
+    /* The TagManager resolving all tag names. */
+    private final TagManager tagManager;
+    /* The index of the next character to be parsed. */
+    private int position;
+
+    QueryParser(String text, TagManager tagManager) {
+        this.text = text;
+        this.tagManager = tagManager;
+        this.position = 0;
+    }
+
+    /**
+     * Parses the whole query.
+     *
+     * @return The root of the parsed query.
+     * @throws IllegalArgumentException if the query is not well formed.
+     */
+    QueryNode parse() {
+        this.skipWhitespace();
+        if (this.atEnd()) {
+            throw this.error("empty query");
+        }
+        QueryNode root = this.parseOr();
+        if (!this.atEnd()) {
+            throw this.error("unexpected '" + this.text.charAt(this.position) + "'");
+        }
+        return root;
+    }
+
+    private QueryNode parseOr() {
+        ArrayList<QueryNode> children = new ArrayList<>();
+        children.add(this.parseAnd());
+        while (this.accept('|') || this.acceptKeyword("OR")) {
+            children.add(this.parseAnd());
+        }
+        return children.size() == 1 ? children.get(0) : new OrNode(children.toArray(new QueryNode[0]));
+    }
+
+    private QueryNode parseAnd() {
+        ArrayList<QueryNode> children = new ArrayList<>();
+        children.add(this.parseUnary());
+        while (true) {
+            if (this.accept('&') || this.acceptKeyword("AND")) {
+                children.add(this.parseUnary());
+            } else if (!this.atEnd() && this.peek() != ')' && this.peek() != '|' && !this.atKeyword("OR")) {
+                /* Terms written one after the other must all match. */
+                children.add(this.parseUnary());
+            } else {
+                break;
+            }
+        }
+        return children.size() == 1 ? children.get(0) : new AndNode(children.toArray(new QueryNode[0]));
+    }
+
+    private QueryNode parseUnary() {
+        if (this.accept('!') || this.accept('-') || this.acceptKeyword("NOT")) {
+            return new NotNode(this.parseUnary());
+        }
+        return this.parsePrimary();
+    }
+
+    private QueryNode parsePrimary() {
+        if (this.atEnd()) {
+            throw this.error("expected a tag");
+        }
+        if (this.accept('(')) {
+            QueryNode node = this.parseOr();
+            if (!this.accept(')')) {
+                throw this.error("expected ')'");
+            }
+            return node;
+        }
+        if (this.text.startsWith("under:", this.position)) {
+            this.position += "under:".length();
+            String path = this.parseName();
+            if (path.isEmpty()) {
+                throw this.error("expected a directory after under:");
+            }
+            this.skipWhitespace();
+            return new UnderNode(new File(path));
+        }
+        if (this.text.startsWith("taken:", this.position)) {
+            this.position += "taken:".length();
+            int start = this.position;
+            String period = this.parseName();
+            int separator = period.indexOf("..");
+            long from = this.parseDate(separator == -1 ? period : period.substring(0, separator), start, false);
+            long to = this.parseDate(separator == -1 ? period : period.substring(separator + 2), start, true);
+            this.skipWhitespace();
+            return new TakenNode(from, to, period);
+        }
+        if (this.text.startsWith("camera:", this.position)) {
+            this.position += "camera:".length();
+            String camera = this.parseName();
+            if (camera.isEmpty()) {
+                throw this.error("expected a camera after camera:");
+            }
+            this.skipWhitespace();
+            return new CameraNode(camera);
+        }
+        if (this.text.startsWith("orientation:", this.position)) {
+            this.position += "orientation:".length();
+            String orientation = this.parseName();
+            if (!orientation.matches("[1-8]")) {
+                throw this.error("expected an orientation from 1 to 8");
+            }
+            this.skipWhitespace();
+            return new OrientationNode(Integer.parseInt(orientation));
+        }
+        int start = this.position;
+        if (this.peek() == '@') {
+            this.position++;
+        }
+        String name = this.parseName();
+        boolean prefix = !this.atEnd() && this.peek() == '*';
+        if (prefix) {
+            this.position++;
+        } else if (name.isEmpty()) {
+            throw this.error("expected a tag");
+        }
+        String written = this.text.substring(start, this.position);
+        this.skipWhitespace();
+
+        if (prefix) {
+            ArrayList<Tag> tags = this.tagManager.findTagsWithPrefix(name);
+            return new TagNode(tags.toArray(new Tag[0]), written);
+        }
+        return new TagNode(new Tag[]{this.tagManager.createTag(name)}, written);
+    }
+
+    /**
+     * Helper that returns the start of the year, month or day written as a date, or the start of the one after it.
+     *
+     * @param date: The date, such as 2017, 2017-06 or 2017-06-21.
+     * @param start: The position of the date in the query, for errors.
+     * @param end: Whether the start of the next year, month or day is returned instead.
+     * @return The start of this date, or of the next, in milliseconds since the epoch in the local time zone.
+     */
+    private long parseDate(String date, int start, boolean end) {
+        LocalDate day;
+        try {
+            if (date.matches("\\d{4}")) {
+                day = LocalDate.of(Integer.parseInt(date), 1, 1);
+                day = end ? day.plusYears(1) : day;
+            } else if (date.matches("\\d{4}-\\d{1,2}")) {
+                day = LocalDate.of(Integer.parseInt(date.substring(0, 4)), Integer.parseInt(date.substring(5)), 1);
+                day = end ? day.plusMonths(1) : day;
+            } else {
+                day = LocalDate.parse(date);
+                day = end ? day.plusDays(1) : day;
+            }
+        } catch (DateTimeException e) {
+            this.position = start;
+            throw this.error("expected a date such as 2017, 2017-06 or 2017-06-21 after taken:");
+        }
+        return day.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Helper that reads a quoted String, or a word ending before any whitespace or operator.
+     */
+    private String parseName() {
+        if (!this.atEnd() && this.peek() == '"') {
+            int end = this.text.indexOf('"', this.position + 1);
+            if (end == -1) {
+                throw this.error("unterminated quote");
+            }
+            String name = this.text.substring(this.position + 1, end);
+            this.position = end + 1;
+            return name;
+        }
+        int start = this.position;
+        while (!this.atEnd() && !this.endsWord(this.peek())) {
+            this.position++;
+        }
+        return this.text.substring(start, this.position);
+    }
+
+    private boolean endsWord(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')' || c == '&' || c == '|' || c == '"'
+                || c == '@' || c == '*';
+    }
+
+    /**
+     * Helper that consumes a single character operator, if it is next.
+     */
+    private boolean accept(char operator) {
+        if (this.atEnd() || this.peek() != operator) {
+            return false;
+        }
+        this.position++;
+        this.skipWhitespace();
+        return true;
+    }
+
+    /**
+     * Helper that consumes a keyword, if it is the next word.
+     */
+    private boolean acceptKeyword(String keyword) {
+        if (!this.atKeyword(keyword)) {
+            return false;
+        }
+        this.position += keyword.length();
+        this.skipWhitespace();
+        return true;
+    }
+
+    private boolean atKeyword(String keyword) {
+        int end = this.position + keyword.length();
+        return this.text.startsWith(keyword, this.position)
+                && (end == this.text.length() || this.endsWord(this.text.charAt(end)));
+    }
+
+    private char peek() {
+        return this.text.charAt(this.position);
+    }
+
+    private boolean atEnd() {
+        return this.position >= this.text.length();
+    }
+
+    private void skipWhitespace() {
+        while (!this.atEnd() && Character.isWhitespace(this.peek())) {
+            this.position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("position " + (this.position + 1) + ": " + message);
+    }
+}
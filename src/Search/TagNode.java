@@ -0,0 +1,73 @@
+package Search;
+
+import Images.ImageFileManager;
+import Images.PostingList;
+import Tags.Tag;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile carrying any of a set of tags: a single tag, or every tag starting with some prefix.
+ */
+class TagNode extends QueryNode {
+
+    /* The tags being matched. */
+    private final Tag[] tags;
+    /* How this node was written in the query. */
+    private final String text;
+
+    TagNode(Tag[] tags, String text) {
+        this.tags = tags;
+        this.text = text;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        int estimate = 0;
+        for (Tag tag : this.tags) {
+            estimate += imageFileManager.getTagIndex().count(tag);
+        }
+        return estimate;
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        BitSet ids = new BitSet();
+        for (Tag tag : this.tags) {
+            PostingList postingList = imageFileManager.getTagIndex().get(tag);
+            if (postingList != null) {
+                postingList.addTo(ids);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    void retain(BitSet candidates, ImageFileManager imageFileManager) {
+        if (this.tags.length != 1) {
+            super.retain(candidates, imageFileManager);
+            return;
+        }
+        PostingList postingList = imageFileManager.getTagIndex().get(this.tags[0]);
+        if (postingList == null) {
+            candidates.clear();
+        } else {
+            postingList.retainIn(candidates);
+        }
+    }
+
+    @Override
+    void remove(BitSet candidates, ImageFileManager imageFileManager) {
+        for (Tag tag : this.tags) {
+            PostingList postingList = imageFileManager.getTagIndex().get(tag);
+            if (postingList != null) {
+                postingList.removeFrom(candidates);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
@@ -0,0 +1,58 @@
+package Search;
+
+import Images.ImageFileManager;
+import Tags.TagManager;
+
+import java.util.BitSet;
+
+/**
+ * A boolean query over the tags and locations of ImageFiles, such as "@beach & !@blurry under:/photos".
+ *
+ * Tags can be combined with AND ("&", or simply writing them one after the other), OR ("|") and
+ * NOT ("!" or "-"), grouped with parentheses, and matched by prefix with a trailing "*". A query is
+ * answered from the posting lists of the TagIndex, evaluating the least common tags first.
+ */
+public class TagQuery {
+
+    /* The root of the parsed query. */
+    private final QueryNode root;
+
+    private TagQuery(QueryNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Parses a query. Tag names are resolved when the query is parsed, so a query should be parsed
+     * again after tags are created.
+     *
+     * @param text: The query, as written by the user.
+     * @param tagManager: The TagManager resolving all tag names.
+     * @return The parsed query.
+     * @throws IllegalArgumentException if the query is not well formed.
+     */
+    public static TagQuery parse(String text, TagManager tagManager) {
+        return new TagQuery(new QueryParser(text, tagManager).parse());
+    }
+
+    /**
+     * Finds all ImageFiles matching this query.
+     *
+     * @param imageFileManager: The ImageFileManager being searched.
+     * @return The ids of all matching ImageFiles.
+     */
+    public BitSet evaluate(ImageFileManager imageFileManager) {
+        synchronized (imageFileManager) {
+            synchronized (imageFileManager.getTagIndex()) {
+                if (!this.root.isFilter() && this.root.estimate(imageFileManager) == 0) {
+                    return new BitSet();
+                }
+                return this.root.evaluate(imageFileManager);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.root.toString();
+    }
+}
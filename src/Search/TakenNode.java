@@ -0,0 +1,39 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile taken within a period of time, according to its metadata, read from a
+ * single column of the MetadataIndex.
+ */
+class TakenNode extends QueryNode {
+
+    /* The start of the period, and its end, excluded, in milliseconds since the epoch. */
+    private final long from;
+    private final long to;
+    /* The period as written in the query. */
+    private final String text;
+
+    TakenNode(long from, long to, String text) {
+        this.from = from;
+        this.to = to;
+        this.text = text;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().size();
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        return imageFileManager.getMetadataIndex().findIdsTakenBetween(this.from, this.to);
+    }
+
+    @Override
+    public String toString() {
+        return "taken:" + this.text;
+    }
+}
@@ -0,0 +1,35 @@
+package Search;
+
+import Images.ImageFileManager;
+
+import java.io.File;
+import java.util.BitSet;
+
+/**
+ * Matches every ImageFile located within a directory or any of its sub-directories, read from
+ * a single range of the PathIndex.
+ */
+class UnderNode extends QueryNode {
+
+    /* The directory being matched. */
+    private final File dir;
+
+    UnderNode(File dir) {
+        this.dir = dir;
+    }
+
+    @Override
+    int estimate(ImageFileManager imageFileManager) {
+        return imageFileManager.getPathIndex().countUnder(this.dir);
+    }
+
+    @Override
+    BitSet evaluate(ImageFileManager imageFileManager) {
+        return imageFileManager.getPathIndex().findIdsUnder(this.dir);
+    }
+
+    @Override
+    public String toString() {
+        return "under:\"" + this.dir.getPath() + "\"";
+    }
+}
@@ -0,0 +1,107 @@
+package Service;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes JSON values straight to a Writer, so that responses can be streamed without being built
+ * in memory first. Commas between values are inserted automatically.
+ */
+class JsonWriter {
+
+    /* Where all JSON is written. */
+    private final Writer writer;
+    /* Whether the next value is the first of its object or array. */
+    private boolean first;
+
+    JsonWriter(Writer writer) {
+        this.writer = writer;
+        this.first = true;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        this.separate();
+        this.writer.write('{');
+        this.first = true;
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        this.writer.write('}');
+        this.first = false;
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        this.separate();
+        this.writer.write('[');
+        this.first = true;
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        this.writer.write(']');
+        this.first = false;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of an object. Must be followed by its value.
+     *
+     * @param name: The name of the member.
+     */
+    JsonWriter name(String name) throws IOException {
+        this.separate();
+        this.writeString(name);
+        this.writer.write(':');
+        this.first = true;
+        return this;
+    }
+
+    JsonWriter value(String value) throws IOException {
+        this.separate();
+        if (value == null) {
+            this.writer.write("null");
+        } else {
+            this.writeString(value);
+        }
+        this.first = false;
+        return this;
+    }
+
+    JsonWriter value(long value) throws IOException {
+        this.separate();
+        this.writer.write(Long.toString(value));
+        this.first = false;
+        return this;
+    }
+
+    /**
+     * Helper that writes a comma unless the next value is the first of its object or array.
+     */
+    private void separate() throws IOException {
+        if (!this.first) {
+            this.writer.write(',');
+        }
+        this.first = false;
+    }
+
+    /**
+     * Helper that writes a quoted and escaped JSON string.
+     */
+    private void writeString(String value) throws IOException {
+        this.writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                this.writer.write('\\');
+                this.writer.write(c);
+            } else if (c < 0x20) {
+                this.writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                this.writer.write(c);
+            }
+        }
+        this.writer.write('"');
+    }
+}
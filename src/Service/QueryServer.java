@@ -0,0 +1,390 @@
+package Service;
+
+import Core.ImageLibrary;
+import Diagnostics.Metrics;
+import IO.IoScheduler;
+import Images.ImageFileHistoryEntry;
+import Tags.Tag;
+import Tags.TagManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A local HTTP service answering read-only queries about an ImageLibrary, without the desktop
+ * application. Every request runs on its own virtual thread, and all responses are JSON streamed
+ * straight to the client.
+ *
+ * GET /tags                                  All existing tags.
+ * GET /images?tag=A&tag=B&under=DIR          Paths of all images with every given tag, optionally
+ *            &offset=0&limit=100             only those under DIR, one page at a time.
+ * GET /images?q=QUERY&under=DIR              Paths of all images matching a tag query such as
+ *            &offset=0&limit=100             "@beach & !@blurry", one page at a time.
+ * GET /image/tags?path=FILE                  The tags of one image.
+ * GET /image/history?path=FILE               The history of one image.
+ */
+public class QueryServer {
+
+    private static final String USAGE = "Usage: java Service.QueryServer [--data-dir DIR] [--port N]";
+
+    /* The largest page of images returned by a single request. */
+    private static final int MAX_LIMIT = 1000;
+    /* The page size used when a request does not give one. */
+    private static final int DEFAULT_LIMIT = 100;
+
+    /* The library being queried. */
+    private final ImageLibrary library;
+    /* The underlying HTTP server. */
+    private final HttpServer server;
+
+    /**
+     * Constructs a new QueryServer, listening on the loopback address only.
+     *
+     * @param library: The library being queried. It must not be modified while the server runs.
+     * @param port: The port to listen on, or 0 for any free port.
+     */
+    public QueryServer(ImageLibrary library, int port) throws IOException {
+        this.library = library;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/tags", this.handler(this::writeAllTags));
+        this.server.createContext("/images", this.handler(this::writeImages));
+        this.server.createContext("/image/tags", this.handler(this::writeImageTags));
+        this.server.createContext("/image/history", this.handler(this::writeImageHistory));
+        /* Every request runs on its own thread: a virtual one from Java 21 on. */
+        ThreadFactory threads = IoScheduler.newThreadFactory("query-");
+        this.server.setExecutor(task -> threads.newThread(task).start());
+    }
+
+    public static void main(String[] args) throws IOException {
+        File dataDir = new File(System.getProperty("user.dir"));
+        int port = 8207;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--data-dir")) {
+                    dataDir = new File(args[++i]);
+                } else if (args[i].equals("--port")) {
+                    port = Integer.parseInt(args[++i]);
+                } else {
+                    throw new IllegalArgumentException("unexpected argument " + args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println(e.getMessage() == null ? e.toString() : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Metrics.start(dataDir);
+        ImageLibrary library = new ImageLibrary(dataDir);
+        library.load();
+        QueryServer queryServer = new QueryServer(library, port);
+        queryServer.start();
+        System.out.println("Listening on http://localhost:" + queryServer.getPort());
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Stops the server, waiting up to a second for requests in progress.
+     */
+    public void stop() {
+        this.server.stop(1);
+    }
+
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * A request handler writing a JSON response.
+     */
+    private interface JsonResponse {
+
+        /**
+         * Writes the response to a request.
+         *
+         * @param parameters: All query parameters of the request, by name.
+         * @param json: Where the response is written.
+         * @throws IllegalArgumentException if the request parameters are not valid.
+         * @throws NotFoundException if the request is about an image that does not exist.
+         */
+        void write(Map<String, List<String>> parameters, JsonWriter json) throws IOException;
+    }
+
+    /**
+     * Thrown when a request is about an image that is not in the library.
+     */
+    private static class NotFoundException extends RuntimeException {
+
+        private static final long serialVersionUID = 5079213846532167742L;
+
+        NotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Helper that wraps a JsonResponse into an HttpHandler. Parameters are validated before any of
+     * the response is sent, so that errors can still be reported with a proper status code.
+     */
+    private HttpHandler handler(JsonResponse response) {
+        return exchange -> {
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    this.sendError(exchange, 405, "only GET is supported");
+                    return;
+                }
+                Map<String, List<String>> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+                StreamedResponse streamed = new StreamedResponse(exchange);
+                try {
+                    response.write(parameters, streamed.json());
+                } catch (IllegalArgumentException e) {
+                    this.sendError(exchange, 400, e.getMessage());
+                    return;
+                } catch (NotFoundException e) {
+                    this.sendError(exchange, 404, e.getMessage());
+                    return;
+                }
+                streamed.finish();
+            } catch (IOException e) {
+                /* The client went away; there is no one left to tell. */
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    /**
+     * A response whose headers are only sent once its body starts being written.
+     */
+    private static class StreamedResponse extends Writer {
+
+        private final HttpExchange exchange;
+        private Writer body;
+
+        StreamedResponse(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        JsonWriter json() {
+            return new JsonWriter(this);
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (this.body == null) {
+                this.exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                this.exchange.sendResponseHeaders(200, 0);
+                this.body = new BufferedWriter(new OutputStreamWriter(this.exchange.getResponseBody(),
+                        StandardCharsets.UTF_8), 8192);
+            }
+            this.body.write(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (this.body != null) {
+                this.body.flush();
+            }
+        }
+
+        /**
+         * Sends everything that was written, including the headers of an empty response.
+         */
+        void finish() throws IOException {
+            if (this.body == null) {
+                this.exchange.sendResponseHeaders(204, -1);
+            } else {
+                this.body.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.finish();
+        }
+    }
+
+    /**
+     * Writes all existing tags.
+     */
+    private void writeAllTags(Map<String, List<String>> parameters, JsonWriter json) throws IOException {
+        ArrayList<Tag> tags = this.library.getTagManager().getAllExistingTags();
+        json.beginObject().name("tags").beginArray();
+        for (Tag tag : tags) {
+            json.value(tag.getName());
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Writes one page of the images with all of the requested tags, or matching the requested query.
+     */
+    private void writeImages(Map<String, List<String>> parameters, JsonWriter json) throws IOException {
+        List<String> tagNames = parameters.getOrDefault("tag", new ArrayList<>());
+        String query = single(parameters, "q");
+        if (tagNames.isEmpty() && query == null) {
+            throw new IllegalArgumentException("at least one tag, or a query, is required");
+        }
+        String under = single(parameters, "under");
+        int offset = intParameter(parameters, "offset", 0);
+        int limit = Math.min(intParameter(parameters, "limit", DEFAULT_LIMIT), MAX_LIMIT);
+
+        List<File> files;
+        if (query != null) {
+            files = this.library.search(query, under == null ? null : new File(under));
+        } else {
+            TagManager tagManager = this.library.getTagManager();
+            Tag[] tags = new Tag[tagNames.size()];
+            for (int i = 0; i < tags.length; i++) {
+                tags[i] = tagManager.createTag(tagNames.get(i));
+            }
+            files = this.library.gatherFilesWithTags(tags, under == null ? null : new File(under));
+        }
+
+        json.beginObject();
+        json.name("total").value(files.size());
+        json.name("offset").value(offset);
+        json.name("images").beginArray();
+        for (int i = offset; i < files.size() && i < (long) offset + limit; i++) {
+            json.value(files.get(i).getPath());
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Writes the tags of a single image.
+     */
+    private void writeImageTags(Map<String, List<String>> parameters, JsonWriter json) throws IOException {
+        File file = this.requireImage(parameters);
+        ArrayList<Tag> tags = this.library.getImageFileManager(file).getImageTags(file);
+        json.beginObject().name("path").value(file.getPath()).name("tags").beginArray();
+        for (Tag tag : tags) {
+            json.value(tag.getName());
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Writes the history of a single image.
+     */
+    private void writeImageHistory(Map<String, List<String>> parameters, JsonWriter json) throws IOException {
+        File file = this.requireImage(parameters);
+        ArrayList<ImageFileHistoryEntry> history = this.library.getImageFileManager(file).getImageHistory(file);
+        json.beginObject().name("path").value(file.getPath()).name("history").beginArray();
+        for (ImageFileHistoryEntry entry : history) {
+            json.beginObject();
+            json.name("time").value(entry.getTimestamp().toString());
+            json.name("oldName").value(entry.getOldName());
+            json.name("name").value(entry.getDisplayName());
+            if (entry.hasTagChanges()) {
+                json.name("added").beginArray();
+                for (String tag : entry.getAddedTags()) {
+                    json.value(tag);
+                }
+                json.endArray().name("removed").beginArray();
+                for (String tag : entry.getRemovedTags()) {
+                    json.value(tag);
+                }
+                json.endArray();
+            }
+            json.endObject();
+        }
+        json.endArray().endObject();
+    }
+
+    /**
+     * Helper that returns the image named by the "path" parameter.
+     */
+    private File requireImage(Map<String, List<String>> parameters) {
+        String path = single(parameters, "path");
+        if (path == null) {
+            throw new IllegalArgumentException("the path parameter is required");
+        }
+        File file = new File(path);
+        if (this.library.getImageFileManager(file).findImage(file) == null) {
+            throw new NotFoundException("no image at " + path);
+        }
+        return file;
+    }
+
+    /**
+     * Helper that sends an error response with a JSON body.
+     */
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringWriter text = new StringWriter();
+        new JsonWriter(text).beginObject().name("error").value(message).endObject();
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    /**
+     * Helper that splits a raw query string into its decoded parameters.
+     */
+    private static Map<String, List<String>> parseQuery(String rawQuery) {
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals == -1 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals == -1 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        }
+        return parameters;
+    }
+
+    /**
+     * Helper that returns the single value of a parameter, or null if it is absent.
+     */
+    private static String single(Map<String, List<String>> parameters, String name) {
+        List<String> values = parameters.get(name);
+        if (values == null) {
+            return null;
+        }
+        if (values.size() > 1) {
+            throw new IllegalArgumentException("the " + name + " parameter can only be given once");
+        }
+        return values.get(0);
+    }
+
+    /**
+     * Helper that returns a non-negative integer parameter, or a default if it is absent.
+     */
+    private static int intParameter(Map<String, List<String>> parameters, String name, int defaultValue) {
+        String value = single(parameters, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            /* Reported below. */
+        }
+        throw new IllegalArgumentException("the " + name + " parameter must be a non-negative integer");
+    }
+}
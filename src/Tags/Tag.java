@@ -8,6 +8,8 @@ import java.io.Serializable;
 
 public class Tag implements Serializable {
 
+    private static final long serialVersionUID = 3837654888265424522L;
+
     /* The name belonging to this Tag. */
     private String tagName;
 
@@ -20,6 +22,13 @@ public class Tag implements Serializable {
         this.tagName = tagName;
     }
 
+    /**
+     * @return This tag's name, without the "@" prefix.
+     */
+    public String getName() {
+        return this.tagName;
+    }
+
     /**
      * Returns a string representation of this Tag.
      *
@@ -38,6 +47,16 @@ public class Tag implements Serializable {
      */
     @Override
     public boolean equals(Object other) {
-        return other instanceof Tag && other.toString().equals(this.toString());
+        return other instanceof Tag && ((Tag) other).tagName.equals(this.tagName);
+    }
+
+    /**
+     * Returns a hash code consistent with equals, so that Tags can be used as keys.
+     *
+     * @return The hash code of this Tag's name.
+     */
+    @Override
+    public int hashCode() {
+        return this.tagName.hashCode();
     }
 }
@@ -4,8 +4,13 @@ import Application.SaveFile;
 import Application.SaveOperation;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
+import java.util.function.Consumer;
 
 /**
  * A class that handles all tasks related to Tags.
@@ -15,16 +20,202 @@ public class TagManager extends Observable implements Observer, Serializable {
 
     /* An ArrayList of all available tags. */
     private ArrayList<Tag> allExistingTags;
+    /* Every tag in allExistingTags, keyed by its name, so that tag names can be interned. Never saved: a
+     * TagManager is filled again with the tags of the ImageFiles as they are loaded. */
+    private transient TagTable tagsByName;
+    /* Every tag in allExistingTags, by prefix, with how many images carry it. */
+    private transient TagTrie tagsByPrefix;
+    /* How much each tag, and each pair of tags, is used. */
+    private transient TagStatistics statistics;
+    /* The Tag of every tag id, in the order tag names were first given an id, deleted tags included, so
+     * that an id never changes meaning. Ids only last as long as this TagManager, and are never saved. */
+    private ArrayList<Tag> tagsById;
+    /* The id of every tag name given one. */
+    private HashMap<String, Integer> idsByName;
+    /* Told of every tag created, deleted, or whose usage count changes, or null. */
+    private transient Consumer<Tag> usageListener;
 
     /**
      * Constructs a new TagManager.
      */
     public TagManager() {
         this.allExistingTags = new ArrayList<>();
+        this.tagsByName = new TagTable();
+        this.tagsByPrefix = new TagTrie();
+        this.statistics = new TagStatistics();
+        this.tagsById = new ArrayList<>();
+        this.idsByName = new HashMap<>();
     }
 
-    public ArrayList<Tag> getAllExistingTags() {
-        return allExistingTags;
+    /**
+     * Sets what is told of every tag created, deleted, or whose usage count changes, such as a list of
+     * tags kept sorted by usage. It is called with this TagManager locked, so it should only take note
+     * of the tag.
+     *
+     * @param listener: Told of every such tag, or null for nothing.
+     */
+    public synchronized void setUsageListener(Consumer<Tag> listener) {
+        this.usageListener = listener;
+    }
+
+    /**
+     * @param tag: A tag.
+     * @return Whether this tag exists, that is it was created and not deleted since.
+     */
+    public synchronized boolean isExistingTag(Tag tag) {
+        return this.tagsByName.get(tag.getName(), 0, tag.getName().length()) != null;
+    }
+
+    /**
+     * @return A copy of all existing tags, in the order they were created.
+     */
+    public synchronized ArrayList<Tag> getAllExistingTags() {
+        return new ArrayList<>(this.allExistingTags);
+    }
+
+    /**
+     * Returns every existing tag whose name starts with a prefix.
+     *
+     * @param prefix: The start of the tag names being looked for.
+     * @return All matching tags.
+     */
+    public synchronized ArrayList<Tag> findTagsWithPrefix(String prefix) {
+        return this.tagsByPrefix.suggest(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the id of a tag, a small number standing for its name, giving it one if it has none yet.
+     * Tags with the same name share their id.
+     *
+     * @param tag: The tag being looked up.
+     * @return The id of this tag.
+     */
+    public synchronized int getTagId(Tag tag) {
+        Integer id = this.idsByName.get(tag.getName());
+        if (id == null) {
+            id = this.tagsById.size();
+            this.tagsById.add(tag);
+            this.idsByName.put(tag.getName(), id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a tag name, without giving it one if it has none yet.
+     *
+     * @param name: The name of the tag being looked up.
+     * @return The id of this name, or -1 if it was never given one.
+     */
+    public synchronized int findTagId(String name) {
+        Integer id = this.idsByName.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the ids of some tags, giving an id to those with none yet.
+     *
+     * @param tags: The tags being looked up.
+     * @return The ids of these tags, in increasing order, each once.
+     */
+    public synchronized int[] getTagIds(Tag[] tags) {
+        int[] ids = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            ids[i] = this.getTagId(tags[i]);
+        }
+        Arrays.sort(ids);
+        int size = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (size == 0 || ids[size - 1] != ids[i]) {
+                ids[size++] = ids[i];
+            }
+        }
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @param id: A tag id, as returned by getTagId.
+     * @return The tag with this id.
+     */
+    public synchronized Tag getTag(int id) {
+        return this.tagsById.get(id);
+    }
+
+    /**
+     * Suggests tags for a partially typed tag name.
+     *
+     * @param prefix: What the user has typed so far.
+     * @param limit: The largest number of tags suggested.
+     * @return The existing tags starting with prefix that are carried by the most images, the most used first.
+     */
+    public synchronized ArrayList<Tag> suggestTags(String prefix, int limit) {
+        return this.tagsByPrefix.suggest(prefix, limit);
+    }
+
+    /**
+     * Records a tag being added to an image. Called by the index of all images; the usage of tags
+     * that do not exist is not recorded.
+     *
+     * @param tag: The tag added.
+     * @param otherTags: The other tags of the image, whose pairs with this tag are counted.
+     * @param time: When the tag was added, in milliseconds since the epoch, or 0 if unknown.
+     */
+    public synchronized void recordTagAdded(Tag tag, List<Tag> otherTags, long time) {
+        if (this.tagsByName.get(tag.getName(), 0, tag.getName().length()) != null) {
+            this.statistics.recordAdded(tag, otherTags, time);
+            this.tagsByPrefix.setCount(tag, this.statistics.getCount(tag));
+            this.usageChanged(tag);
+        }
+    }
+
+    /**
+     * Records a tag being removed from an image. Called by the index of all images.
+     *
+     * @param tag: The tag removed.
+     * @param otherTags: The other tags of the image, whose pairs with this tag are no longer counted.
+     */
+    public synchronized void recordTagRemoved(Tag tag, List<Tag> otherTags) {
+        if (this.tagsByName.get(tag.getName(), 0, tag.getName().length()) != null) {
+            this.statistics.recordRemoved(tag, otherTags);
+            this.tagsByPrefix.setCount(tag, this.statistics.getCount(tag));
+            this.usageChanged(tag);
+        }
+    }
+
+    /**
+     * @param tag: The tag being looked up.
+     * @return The number of images carrying this tag.
+     */
+    public synchronized int getUsageCount(Tag tag) {
+        return this.statistics.getCount(tag);
+    }
+
+    /**
+     * @param tag: The tag being looked up.
+     * @return When this tag was last added to an image, in milliseconds since the epoch, or 0 if unknown.
+     */
+    public synchronized long getLastUsed(Tag tag) {
+        return this.statistics.getLastUsed(tag);
+    }
+
+    /**
+     * Returns the pairs of tags most often carried by the same images. Counts are approximate
+     * for pairs that are not among the most common ones.
+     *
+     * @param limit: The largest number of pairs returned.
+     * @return The most common pairs of tags, the most common first.
+     */
+    public synchronized ArrayList<TagPair> getTopTagPairs(int limit) {
+        return this.statistics.topPairs(limit);
+    }
+
+    /**
+     * @return All existing tags, those carried by the most images first, then by name.
+     */
+    public synchronized ArrayList<Tag> getTagsByUsage() {
+        ArrayList<Tag> sortedTags = new ArrayList<>(this.allExistingTags);
+        sortedTags.sort(Comparator.comparingInt((Tag tag) -> -this.statistics.getCount(tag))
+                .thenComparing(Tag::getName));
+        return sortedTags;
     }
 
     /**
@@ -44,9 +235,15 @@ public class TagManager extends Observable implements Observer, Serializable {
      *
      * @param newTag: The new Tag to be added.
      */
-    public void addTag(Tag newTag) {
-        if (!allExistingTags.contains(newTag)) {
+    public synchronized void addTag(Tag newTag) {
+        String name = newTag.getName();
+        if (this.tagsByName.get(name, 0, name.length()) == null) {
+            this.tagsByName.put(newTag);
+            this.tagsByPrefix.add(newTag);
             this.allExistingTags.add(newTag);
+            /* The id of the name now stands for the existing tag. */
+            this.tagsById.set(this.getTagId(newTag), newTag);
+            this.usageChanged(newTag);
         }
     }
 
@@ -56,11 +253,27 @@ public class TagManager extends Observable implements Observer, Serializable {
      * @param oldTag: The Tag to be removed.
      */
     public void deleteTag(Tag oldTag) {
-        this.allExistingTags.remove(oldTag);
+        synchronized (this) {
+            this.allExistingTags.remove(oldTag);
+            this.tagsByName.remove(oldTag);
+            this.tagsByPrefix.remove(oldTag);
+            this.statistics.forget(oldTag);
+            this.usageChanged(oldTag);
+        }
+        /* Observers are notified outside of the lock, since they lock the ImageFiles they update. */
         this.setChanged();
         this.notifyObservers(oldTag);
     }
 
+    /**
+     * Helper that tells the usage listener, if any, of a tag.
+     */
+    private void usageChanged(Tag tag) {
+        if (this.usageListener != null) {
+            this.usageListener.accept(tag);
+        }
+    }
+
     /**
      * If this Tag already exists, this will return the correct memory reference to it.
      * Otherwise, creates and returns a new Tag.
@@ -69,11 +282,22 @@ public class TagManager extends Observable implements Observer, Serializable {
      * @return the new/found tag
      */
     public Tag createTag(String newTagName) {
-        Tag newTag = new Tag(newTagName);
-        for (Tag oldTag : this.allExistingTags) {
-            if (oldTag.equals(newTag)) {
-                return oldTag;
-            }
-        } return newTag;
+        return this.createTag(newTagName, 0, newTagName.length());
+    }
+
+    /**
+     * Same as createTag(String), for a tag name found within a larger String such as a file name.
+     * The name is only copied out of the String if no Tag exists for it yet.
+     *
+     * @param source string containing the tag name
+     * @param start index of the first character of the tag name
+     * @param end index after the last character of the tag name
+     * @return the new/found tag
+     */
+    public synchronized Tag createTag(String source, int start, int end) {
+        Tag oldTag = this.tagsByName.get(source, start, end);
+        if (oldTag != null) {
+            return oldTag;
+        } return new Tag(source.substring(start, end));
     }
 }
@@ -0,0 +1,71 @@
+package Tags;
+
+/**
+ * Two different tags carried by the same images, with how many images carry both.
+ */
+public class TagPair {
+
+    /* The tags of this pair, ordered by name. */
+    private final Tag first;
+    private final Tag second;
+    /* The number of images carrying both tags. */
+    private int count;
+
+    /**
+     * Constructs a new TagPair, ordering its tags by name.
+     */
+    TagPair(Tag one, Tag other, int count) {
+        boolean inOrder = one.getName().compareTo(other.getName()) <= 0;
+        this.first = inOrder ? one : other;
+        this.second = inOrder ? other : one;
+        this.count = count;
+    }
+
+    public Tag getFirst() {
+        return this.first;
+    }
+
+    public Tag getSecond() {
+        return this.second;
+    }
+
+    /**
+     * @return The number of images carrying both tags.
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    void addToCount(int delta) {
+        this.count += delta;
+    }
+
+    /**
+     * @return Whether one of the tags of this pair is the given tag.
+     */
+    boolean contains(Tag tag) {
+        return this.first.equals(tag) || this.second.equals(tag);
+    }
+
+    @Override
+    public String toString() {
+        return this.first + " + " + this.second + " (" + this.count + ")";
+    }
+
+    /**
+     * Returns true iff both pairs are made of the same tags, whatever their counts.
+     *
+     * @param other: The object to compare this TagPair to.
+     * @return Whether both pairs have the same tags.
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof TagPair && ((TagPair) other).first.equals(this.first)
+                && ((TagPair) other).second.equals(this.second);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.first.hashCode() + this.second.hashCode();
+    }
+}
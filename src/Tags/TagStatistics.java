@@ -0,0 +1,136 @@
+package Tags;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Usage statistics of all tags, updated each time a tag is added to or removed from an image:
+ * how many images carry each tag, when each tag was last added to an image, and how many images
+ * carry each of the most common pairs of tags.
+ *
+ * Pair counts are approximate. Only the most common pairs are kept: whenever twice
+ * PAIR_CAPACITY pairs are being counted, all but the PAIR_CAPACITY most common are dropped,
+ * and a dropped pair starts counting from 0 again if it is seen later.
+ */
+class TagStatistics {
+
+    /* The number of tag pairs kept when the least common pairs are dropped. */
+    static final int PAIR_CAPACITY = 10000;
+
+    /* The number of images carrying each tag. */
+    private HashMap<Tag, Integer> counts;
+    /* When each tag was last added to an image, in milliseconds since the epoch. */
+    private HashMap<Tag, Long> lastUsed;
+    /* The number of images carrying both tags of each of the most common pairs. */
+    private HashMap<TagPair, TagPair> pairs;
+
+    TagStatistics() {
+        this.counts = new HashMap<>();
+        this.lastUsed = new HashMap<>();
+        this.pairs = new HashMap<>();
+    }
+
+    /**
+     * Records a tag being added to an image.
+     *
+     * @param tag: The tag added.
+     * @param otherTags: The other tags of the image whose pairs with this tag are counted.
+     * @param time: When the tag was added, or 0 if unknown.
+     */
+    void recordAdded(Tag tag, List<Tag> otherTags, long time) {
+        this.counts.merge(tag, 1, Integer::sum);
+        if (time > this.getLastUsed(tag)) {
+            this.lastUsed.put(tag, time);
+        }
+        for (Tag otherTag : otherTags) {
+            if (!otherTag.equals(tag)) {
+                this.addToPair(tag, otherTag, 1);
+            }
+        }
+        if (this.pairs.size() >= 2 * PAIR_CAPACITY) {
+            this.dropUncommonPairs();
+        }
+    }
+
+    /**
+     * Records a tag being removed from an image.
+     *
+     * @param tag: The tag removed.
+     * @param otherTags: The other tags of the image whose pairs with this tag are no longer counted.
+     */
+    void recordRemoved(Tag tag, List<Tag> otherTags) {
+        this.counts.computeIfPresent(tag, (key, count) -> count > 1 ? count - 1 : null);
+        for (Tag otherTag : otherTags) {
+            if (!otherTag.equals(tag)) {
+                this.addToPair(tag, otherTag, -1);
+            }
+        }
+    }
+
+    /**
+     * Forgets everything about a tag, such as when it is deleted.
+     *
+     * @param tag: The tag being forgotten.
+     */
+    void forget(Tag tag) {
+        this.counts.remove(tag);
+        this.lastUsed.remove(tag);
+        this.pairs.keySet().removeIf(pair -> pair.contains(tag));
+    }
+
+    int getCount(Tag tag) {
+        return this.counts.getOrDefault(tag, 0);
+    }
+
+    long getLastUsed(Tag tag) {
+        return this.lastUsed.getOrDefault(tag, 0L);
+    }
+
+    /**
+     * @param limit: The largest number of pairs returned.
+     * @return Copies of the most common pairs, the most common first.
+     */
+    ArrayList<TagPair> topPairs(int limit) {
+        ArrayList<TagPair> topPairs = new ArrayList<>(this.pairs.keySet());
+        topPairs.sort(Comparator.comparingInt(TagPair::getCount).reversed());
+        ArrayList<TagPair> copies = new ArrayList<>();
+        for (int i = 0; i < limit && i < topPairs.size(); i++) {
+            TagPair pair = topPairs.get(i);
+            copies.add(new TagPair(pair.getFirst(), pair.getSecond(), pair.getCount()));
+        }
+        return copies;
+    }
+
+    /**
+     * Helper that changes the count of a pair, forgetting it once no image carries both tags.
+     */
+    private void addToPair(Tag tag, Tag otherTag, int delta) {
+        TagPair key = new TagPair(tag, otherTag, 0);
+        TagPair pair = this.pairs.get(key);
+        if (pair == null) {
+            if (delta < 0) {
+                /* The pair was dropped, and its count is lost. */
+                return;
+            }
+            pair = key;
+            this.pairs.put(pair, pair);
+        }
+        pair.addToCount(delta);
+        if (pair.getCount() <= 0) {
+            this.pairs.remove(pair);
+        }
+    }
+
+    /**
+     * Helper that drops all but the PAIR_CAPACITY most common pairs.
+     */
+    private void dropUncommonPairs() {
+        ArrayList<TagPair> sortedPairs = new ArrayList<>(this.pairs.keySet());
+        sortedPairs.sort(Comparator.comparingInt(TagPair::getCount).reversed());
+        for (int i = PAIR_CAPACITY; i < sortedPairs.size(); i++) {
+            this.pairs.remove(sortedPairs.get(i));
+        }
+    }
+}
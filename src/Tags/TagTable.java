@@ -0,0 +1,127 @@
+package Tags;
+
+/**
+ * An open-addressing hash table of Tags keyed by their names. Unlike a HashMap, a Tag can be
+ * looked up from any region of a String, so that parsing a file name never has to copy a tag
+ * name out of it just to find the Tag that already exists.
+ */
+class TagTable {
+
+    /* The slots of this table; its length is always a power of two. */
+    private Tag[] slots;
+    /* The number of Tags in this table. */
+    private int size;
+
+    TagTable() {
+        this.slots = new Tag[16];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the Tag whose name is the region of source between start and end, if there is one.
+     *
+     * @param source: The String containing the tag name.
+     * @param start: The index of the first character of the tag name.
+     * @param end: The index after the last character of the tag name.
+     * @return The matching Tag, or null if this table does not contain one.
+     */
+    Tag get(String source, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+        int length = end - start;
+        int mask = this.slots.length - 1;
+        for (int i = mix(hash) & mask; this.slots[i] != null; i = (i + 1) & mask) {
+            if (matches(this.slots[i].getName(), source, start, length)) {
+                return this.slots[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a Tag that this table does not contain yet.
+     *
+     * @param newTag: The Tag to be added.
+     */
+    void put(Tag newTag) {
+        if ((this.size + 1) * 2 > this.slots.length) {
+            this.resize();
+        }
+        this.insert(newTag);
+        this.size++;
+    }
+
+    /**
+     * Removes a Tag from this table, shifting back any Tags that collided with it.
+     *
+     * @param oldTag: The Tag to be removed.
+     */
+    void remove(Tag oldTag) {
+        int mask = this.slots.length - 1;
+        int i = mix(oldTag.getName().hashCode()) & mask;
+        while (this.slots[i] != null && !this.slots[i].equals(oldTag)) {
+            i = (i + 1) & mask;
+        }
+        if (this.slots[i] == null) {
+            return;
+        }
+        this.slots[i] = null;
+        this.size--;
+        for (int j = (i + 1) & mask; this.slots[j] != null; j = (j + 1) & mask) {
+            Tag moved = this.slots[j];
+            this.slots[j] = null;
+            this.insert(moved);
+        }
+    }
+
+    /**
+     * Helper that places a Tag in the first free slot of its probe sequence.
+     */
+    private void insert(Tag tag) {
+        int mask = this.slots.length - 1;
+        int i = mix(tag.getName().hashCode()) & mask;
+        while (this.slots[i] != null) {
+            i = (i + 1) & mask;
+        }
+        this.slots[i] = tag;
+    }
+
+    /**
+     * Helper that doubles the number of slots in this table.
+     */
+    private void resize() {
+        Tag[] oldSlots = this.slots;
+        this.slots = new Tag[oldSlots.length * 2];
+        for (Tag tag : oldSlots) {
+            if (tag != null) {
+                this.insert(tag);
+            }
+        }
+    }
+
+    /**
+     * Helper that checks whether a tag name equals the region of source starting at start.
+     */
+    private static boolean matches(String name, String source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper that scrambles a String hash code, since similar tag names have nearly consecutive
+     * hash codes that would otherwise form long probe sequences.
+     */
+    private static int mix(int hash) {
+        int mixed = hash * 0x9E3779B9;
+        return mixed ^ (mixed >>> 16);
+    }
+}
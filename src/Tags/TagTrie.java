@@ -0,0 +1,306 @@
+package Tags;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * A compressed prefix trie of tag names, used to suggest tags as the user types.
+ *
+ * Every node is labelled with the characters between it and its parent, and remembers the
+ * highest usage count found anywhere below it, so that the most used tags starting with some
+ * prefix are found without visiting the tags that cannot be among them.
+ */
+class TagTrie {
+
+    /* The node of the empty prefix. */
+    private Node root;
+
+    TagTrie() {
+        this.root = new Node("");
+    }
+
+    /**
+     * Adds a tag, with a usage count of 0, if it is not in this trie already.
+     *
+     * @param tag: The tag being added.
+     */
+    void add(Tag tag) {
+        String name = tag.getName();
+        Node node = this.root;
+        int matched = 0;
+        while (matched < name.length()) {
+            Node child = node.child(name.charAt(matched));
+            if (child == null) {
+                child = new Node(name.substring(matched));
+                node.addChild(child);
+                node = child;
+                break;
+            }
+            int common = child.commonLength(name, matched);
+            if (common < child.label.length()) {
+                child = node.split(child, common);
+            }
+            node = child;
+            matched += common;
+        }
+        if (node.tag == null) {
+            node.tag = tag;
+            node.count = 0;
+            this.updateMaxCounts(this.pathTo(name));
+        }
+    }
+
+    /**
+     * Removes a tag, if it is in this trie.
+     *
+     * @param tag: The tag being removed.
+     */
+    void remove(Tag tag) {
+        Node[] path = this.pathTo(tag.getName());
+        if (path == null || path[path.length - 1].tag == null) {
+            return;
+        }
+        Node node = path[path.length - 1];
+        node.tag = null;
+        node.count = 0;
+        /* Removes nodes left without any tag, then merges a node left with a single child into it. */
+        for (int i = path.length - 1; i > 0; i--) {
+            Node current = path[i];
+            Node parent = path[i - 1];
+            if (current.tag == null && current.children.length == 0) {
+                parent.removeChild(current);
+            } else if (current.tag == null && current.children.length == 1) {
+                parent.replaceChild(current, current.merge());
+            }
+        }
+        this.updateMaxCounts(path);
+    }
+
+    /**
+     * Sets the usage count of a tag, if it is in this trie.
+     *
+     * @param tag: The tag being updated.
+     * @param count: The number of images carrying this tag.
+     */
+    void setCount(Tag tag, int count) {
+        Node[] path = this.pathTo(tag.getName());
+        if (path == null || path[path.length - 1].tag == null) {
+            return;
+        }
+        path[path.length - 1].count = count;
+        this.updateMaxCounts(path);
+    }
+
+    /**
+     * Returns the most used tags starting with a prefix, the most used first.
+     *
+     * @param prefix: The start of the tag names being looked for.
+     * @param limit: The largest number of tags returned.
+     * @return Up to limit tags starting with prefix.
+     */
+    ArrayList<Tag> suggest(String prefix, int limit) {
+        ArrayList<Tag> suggestions = new ArrayList<>();
+        Node node = this.root;
+        int matched = 0;
+        while (matched < prefix.length()) {
+            node = node.child(prefix.charAt(matched));
+            if (node == null) {
+                return suggestions;
+            }
+            int common = node.commonLength(prefix, matched);
+            if (common < node.label.length() && matched + common < prefix.length()) {
+                return suggestions;
+            }
+            matched += common;
+        }
+
+        /* Best first search: a node is only expanded once no tag it could contain can be beaten. */
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        long order = 0;
+        queue.add(new Candidate(node, false, node.maxCount, order++));
+        while (!queue.isEmpty() && suggestions.size() < limit) {
+            Candidate candidate = queue.poll();
+            if (candidate.isTag) {
+                suggestions.add(candidate.node.tag);
+                continue;
+            }
+            if (candidate.node.tag != null) {
+                queue.add(new Candidate(candidate.node, true, candidate.node.count, order++));
+            }
+            for (Node child : candidate.node.children) {
+                queue.add(new Candidate(child, false, child.maxCount, order++));
+            }
+        }
+        return suggestions;
+    }
+
+    /**
+     * Helper that returns every node from the root to the node of a name, or null if there is no such node.
+     */
+    private Node[] pathTo(String name) {
+        ArrayList<Node> path = new ArrayList<>();
+        Node node = this.root;
+        path.add(node);
+        int matched = 0;
+        while (matched < name.length()) {
+            node = node.child(name.charAt(matched));
+            if (node == null || !name.startsWith(node.label, matched)) {
+                return null;
+            }
+            path.add(node);
+            matched += node.label.length();
+        }
+        return path.toArray(new Node[0]);
+    }
+
+    /**
+     * Helper that recomputes the highest usage count below every node of a path, from the bottom up.
+     * Nodes removed from the trie along the way are updated too, which is harmless.
+     */
+    private void updateMaxCounts(Node[] path) {
+        for (int i = path.length - 1; i >= 0; i--) {
+            Node node = path[i];
+            int maxCount = node.tag == null ? -1 : node.count;
+            for (Node child : node.children) {
+                maxCount = Math.max(maxCount, child.maxCount);
+            }
+            node.maxCount = maxCount;
+        }
+    }
+
+    /**
+     * A node of the trie.
+     */
+    private static class Node {
+
+        /* The characters between this node and its parent. */
+        private String label;
+        /* The children of this node, sorted by the first character of their label. */
+        private Node[] children;
+        /* The tag whose name ends at this node, or null. */
+        private Tag tag;
+        /* The usage count of this node's tag. */
+        private int count;
+        /* The highest usage count of any tag at or below this node, or -1 if there is none. */
+        private int maxCount;
+
+        private Node(String label) {
+            this.label = label;
+            this.children = new Node[0];
+            this.maxCount = -1;
+        }
+
+        private Node child(char first) {
+            int low = 0;
+            int high = this.children.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char c = this.children[middle].label.charAt(0);
+                if (c < first) {
+                    low = middle + 1;
+                } else if (c > first) {
+                    high = middle - 1;
+                } else {
+                    return this.children[middle];
+                }
+            }
+            return null;
+        }
+
+        private void addChild(Node child) {
+            char first = child.label.charAt(0);
+            int index = 0;
+            while (index < this.children.length && this.children[index].label.charAt(0) < first) {
+                index++;
+            }
+            Node[] newChildren = new Node[this.children.length + 1];
+            System.arraycopy(this.children, 0, newChildren, 0, index);
+            newChildren[index] = child;
+            System.arraycopy(this.children, index, newChildren, index + 1, this.children.length - index);
+            this.children = newChildren;
+            this.maxCount = Math.max(this.maxCount, child.maxCount);
+        }
+
+        private void removeChild(Node child) {
+            Node[] newChildren = new Node[this.children.length - 1];
+            int next = 0;
+            for (Node current : this.children) {
+                if (current != child) {
+                    newChildren[next++] = current;
+                }
+            }
+            this.children = newChildren;
+        }
+
+        private void replaceChild(Node oldChild, Node newChild) {
+            for (int i = 0; i < this.children.length; i++) {
+                if (this.children[i] == oldChild) {
+                    this.children[i] = newChild;
+                }
+            }
+        }
+
+        /**
+         * Splits a child of this node, so that the first characters of its label become a node of their own.
+         *
+         * @return The new node, between this node and the child.
+         */
+        private Node split(Node child, int length) {
+            Node middle = new Node(child.label.substring(0, length));
+            child.label = child.label.substring(length);
+            middle.children = new Node[]{child};
+            middle.maxCount = child.maxCount;
+            this.replaceChild(child, middle);
+            return middle;
+        }
+
+        /**
+         * @return This node's only child, with this node's label in front of its own.
+         */
+        private Node merge() {
+            Node child = this.children[0];
+            child.label = this.label + child.label;
+            return child;
+        }
+
+        /**
+         * @return How many characters of this node's label match a name, starting at some index of the name.
+         */
+        private int commonLength(String name, int start) {
+            int length = Math.min(this.label.length(), name.length() - start);
+            int common = 0;
+            while (common < length && this.label.charAt(common) == name.charAt(start + common)) {
+                common++;
+            }
+            return common;
+        }
+    }
+
+    /**
+     * A tag, or a whole node, waiting to be looked at by suggest.
+     */
+    private static class Candidate implements Comparable<Candidate> {
+
+        private final Node node;
+        /* Whether this candidate is the tag of the node itself, rather than everything below it. */
+        private final boolean isTag;
+        private final int count;
+        /* Breaks ties between equal counts, so that shorter names come first. */
+        private final long order;
+
+        private Candidate(Node node, boolean isTag, int count, long order) {
+            this.node = node;
+            this.isTag = isTag;
+            this.count = count;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (this.count != other.count) {
+                return Integer.compare(other.count, this.count);
+            }
+            return Long.compare(this.order, other.order);
+        }
+    }
+}